@@ -18,7 +18,7 @@ package it.unipd.dei.dards;
 
 import it.unipd.dei.dards.analysis.MyFrenchAnalyzer;
 import it.unipd.dei.dards.index.DirectoryIndexer;
-import it.unipd.dei.dards.parse.LongEvalParser;
+import it.unipd.dei.dards.parse.StreamingLongEvalParser;
 import it.unipd.dei.dards.search.Searcher;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.search.similarities.*;
@@ -39,7 +39,11 @@ public class HelloFrench {
      * Main method of the class.
      *
      * @param args command line arguments. If provided, {@code args[0]} contains the path the the index directory;
-     *             {@code args[1]} contains the path to the run file.
+     *             {@code args[1]} contains the path to the run file. An optional trailing {@code --resume} resumes an
+     *             interrupted indexing from its last checkpoint, an optional trailing {@code --pipeline} indexes
+     *             with a multi-threaded pipeline instead of a single thread, and an optional trailing
+     *             {@code --warmup <file>} warms up the index with the topics of a past topic file once it is opened
+     *             for searching.
      * @throws Exception if something goes wrong while indexing and searching.
      */
     public static void main(String[] args) throws Exception {
@@ -49,34 +53,61 @@ public class HelloFrench {
         String docsPath = "../../input-test/test-collection/B-Long-September/French/Documents/Trec";
         String topics = "../../input-test/test-collection/B-Long-September/French/Queries/test09.tsv";
 
+        boolean resume = false;
+
+        boolean pipeline = false;
+
+        String warmupTopics = null;
+
         System.out.println("IF YOU RUN THIS JAR WITH A JDK DIFFERENT FROM 20 OR 17 YOU MIGHT ENCOUNTER SOME ERRORS");
 
         //comment this if-else statement if you want to use this class using your IDE instead of using the jar file
-        if(args.length ==4 ){
+        if(args.length >= 4 && args.length <= 8){
             try{
                 docsPath=args[0];
                 expectedDocs=Integer.parseInt(args[1]);
                 topics=args[2];
                 expectedTopics=Integer.parseInt(args[3]);
+
+                for (int k = 4; k < args.length; k++) {
+                    if (args[k].equals("--resume")) {
+                        resume = true;
+                    } else if (args[k].equals("--pipeline")) {
+                        pipeline = true;
+                    } else if (args[k].equals("--warmup") && k + 1 < args.length) {
+                        warmupTopics = args[++k];
+                    } else {
+                        throw new IllegalArgumentException(String.format("Unknown option %s.", args[k]));
+                    }
+                }
             }catch (Exception e){
-                System.out.println("Usage must be: java -jar <jar-file-name> <path-to-documents-folder> <number-of-expected-documents> <path-to-queries-file> <number-of-queries>");
+                System.out.println("Usage must be: java -jar <jar-file-name> <path-to-documents-folder> <number-of-expected-documents> <path-to-queries-file> <number-of-queries> [--resume] [--pipeline] [--warmup <path-to-past-queries-file>]");
                 System.out.println("Usage example: java -jar .\\dards-1.00-jar-with-dependencies.jar D:\\input\\French\\Documents\\Trec 1570734 D:\\input\\French\\Queries\\train.tsv 672");
                 System.out.println("NOTE THAT:");
                 System.out.println("<path-to-documents-folder> must be a path to a folder containing the documents in txt files");
                 System.out.println("<path-to-queries-file> must be a path to a file ending with tsv extension (the extension must be specified)");
+                System.out.println("--resume continues an interrupted indexing from its last checkpoint instead of starting over");
+                System.out.println("--pipeline indexes with concurrent threads reading, parsing and indexing files");
+                System.out.println("--warmup replays a sample of past queries before searching, so that the first queries are not slower");
                 return;
             }
         }else{
-            System.out.println("Usage must be: java -jar <jar-file-name> <path-to-documents-folder> <number-of-expected-documents> <path-to-queries-file> <number-of-queries>");
+            System.out.println("Usage must be: java -jar <jar-file-name> <path-to-documents-folder> <number-of-expected-documents> <path-to-queries-file> <number-of-queries> [--resume] [--pipeline] [--warmup <path-to-past-queries-file>]");
             System.out.println("Usage example: java -jar .\\dards-1.00-jar-with-dependencies.jar D:\\input\\French\\Documents\\Trec 1570734 D:\\input\\French\\Queries\\train.tsv 672");
             System.out.println("NOTE THAT:");
             System.out.println("<path-to-documents-folder> must be a path to a folder containing the documents in txt files");
             System.out.println("<path-to-queries-file> must be a path to a file ending with tsv extension (the extension must be specified)");
+            System.out.println("--resume continues an interrupted indexing from its last checkpoint instead of starting over");
+            System.out.println("--pipeline indexes with concurrent threads reading, parsing and indexing files");
+            System.out.println("--warmup replays a sample of past queries before searching, so that the first queries are not slower");
             return;
         }
 
 
         final int ramBuffer = 256;
+
+        // number of indexed files after which the index is committed, so that indexing can be resumed
+        final int checkpointFiles = 10;
         //final String docsPath = "../../input/French/Documents/Trec";
 
 
@@ -102,16 +133,32 @@ public class HelloFrench {
 
         final int maxDocsRetrieved = 1000;
 
+        // topics are searched concurrently, the run is still written in topic order
+        final int searchThreads = Runtime.getRuntime().availableProcessors();
+
+        // number of past topics replayed to warm up the index before searching
+        final int warmupTopicsSample = 100;
+
 
 
         // indexing
         final DirectoryIndexer i = new DirectoryIndexer(a, sim, ramBuffer, indexPath, docsPath, extension, charsetName,
-                                                        expectedDocs, LongEvalParser.class);
-        i.index();
+                                                        expectedDocs, StreamingLongEvalParser.class, resume);
+        i.setCheckpointInterval(checkpointFiles);
+        if (pipeline) {
+            // a few threads are enough to read files; analysis is the costly stage
+            i.index(2, 2, Math.max(1, Runtime.getRuntime().availableProcessors() - 2), 1024);
+        } else {
+            i.index();
+        }
 
         // searching
         final Searcher s = new Searcher(a, sim, indexPath, topics, expectedTopics, runID, runPath, maxDocsRetrieved);
-        s.search();
+        if (warmupTopics != null) {
+            // preload the compound files, where the index keeps most of its data, and replay the past topics
+            s.warmUp(warmupTopics, warmupTopicsSample, "cfs");
+        }
+        s.search(searchThreads);
 
     }
 
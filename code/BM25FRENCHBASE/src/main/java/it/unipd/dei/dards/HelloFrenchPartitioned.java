@@ -0,0 +1,160 @@
+/*
+ * Copyright 2021-2022 University of Padua, Italy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.unipd.dei.dards;
+
+
+import it.unipd.dei.dards.analysis.MyFrenchAnalyzer;
+import it.unipd.dei.dards.index.DirectoryIndexer;
+import it.unipd.dei.dards.index.IndexMerger;
+import it.unipd.dei.dards.parse.StreamingLongEvalParser;
+import it.unipd.dei.dards.search.Searcher;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.search.similarities.*;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Builds the same index as {@link HelloFrench} by splitting the LongEval corpus across independent processes (or
+ * machines sharing the same storage), each one indexing a partition of the files into its own sub-index, and by
+ * finally merging the sub-indexes and searching the merged index.
+ * <p>
+ * Partitions are computed deterministically from the list of files, so every process only needs to know its own
+ * partition number and the total number of partitions.
+ *
+ * @author DARDS
+ * @version 1.0
+ * @since 1.0
+ */
+public class HelloFrenchPartitioned {
+
+    /**
+     * Prints the usage of the command.
+     */
+    private static void printUsage() {
+        System.out.println("Usage must be one of:");
+        System.out.println("java -cp <jar-file-name> it.unipd.dei.dards.HelloFrenchPartitioned index <path-to-documents-folder> <partition> <number-of-partitions>");
+        System.out.println("java -cp <jar-file-name> it.unipd.dei.dards.HelloFrenchPartitioned merge <number-of-partitions> <number-of-expected-documents> <path-to-queries-file> <number-of-queries>");
+        System.out.println("Usage example (on each of the 4 machines, with <partition> going from 0 to 3): java -cp .\\dards-1.00-jar-with-dependencies.jar it.unipd.dei.dards.HelloFrenchPartitioned index D:\\input\\French\\Documents\\Trec 0 4");
+        System.out.println("Usage example (once all the partitions are indexed): java -cp .\\dards-1.00-jar-with-dependencies.jar it.unipd.dei.dards.HelloFrenchPartitioned merge 4 1570734 D:\\input\\French\\Queries\\train.tsv 672");
+        System.out.println("NOTE THAT:");
+        System.out.println("<path-to-documents-folder> must be a path to a folder containing the documents in txt files");
+        System.out.println("<path-to-queries-file> must be a path to a file ending with tsv extension (the extension must be specified)");
+        System.out.println("all the processes must be run from the same (shared) working directory, where sub-indexes are written");
+    }
+
+    /**
+     * Returns the path of the sub-index for the given partition.
+     *
+     * @param indexPath the path of the merged index.
+     * @param partition the partition.
+     * @return the path of the sub-index.
+     */
+    private static String subIndexPath(final String indexPath, final int partition) {
+        return String.format("%s-part%d", indexPath, partition);
+    }
+
+    /**
+     * Main method of the class.
+     *
+     * @param args command line arguments. {@code args[0]} is either {@code index} or {@code merge}; see {@link
+     *             #printUsage()} for the remaining ones.
+     * @throws Exception if something goes wrong while indexing, merging and searching.
+     */
+    public static void main(String[] args) throws Exception {
+
+        System.out.println("IF YOU RUN THIS JAR WITH A JDK DIFFERENT FROM 20 OR 17 YOU MIGHT ENCOUNTER SOME ERRORS");
+
+        final int ramBuffer = 256;
+
+        final String indexPath = "index-BM25FRENCHBASE";
+
+        final String extension = "txt";
+
+        final String charsetName = StandardCharsets.UTF_8.name();
+
+        final Analyzer a = new MyFrenchAnalyzer();
+
+        final Similarity sim = new BM25Similarity();
+
+        final String runPath = ".";
+
+        final String runID = "DARDS_BM25FRENCHBASE";
+
+        final int maxDocsRetrieved = 1000;
+
+        // topics are searched concurrently, the run is still written in topic order
+        final int searchThreads = Runtime.getRuntime().availableProcessors();
+
+        if (args.length == 4 && args[0].equals("index")) {
+
+            final String docsPath;
+            final int partition;
+            final int partitions;
+
+            try {
+                docsPath = args[1];
+                partition = Integer.parseInt(args[2]);
+                partitions = Integer.parseInt(args[3]);
+            } catch (Exception e) {
+                printUsage();
+                return;
+            }
+
+            // the expected number of documents of a partition is not known in advance and it is checked when merging
+            final DirectoryIndexer i = new DirectoryIndexer(a, sim, ramBuffer, subIndexPath(indexPath, partition),
+                                                            docsPath, extension, charsetName, Long.MAX_VALUE,
+                                                            StreamingLongEvalParser.class);
+            i.selectPartition(partition, partitions);
+            i.index();
+
+        } else if (args.length == 5 && args[0].equals("merge")) {
+
+            final int partitions;
+            final int expectedDocs;
+            final String topics;
+            final int expectedTopics;
+
+            try {
+                partitions = Integer.parseInt(args[1]);
+                expectedDocs = Integer.parseInt(args[2]);
+                topics = args[3];
+                expectedTopics = Integer.parseInt(args[4]);
+            } catch (Exception e) {
+                printUsage();
+                return;
+            }
+
+            final String[] subIndexPaths = new String[partitions];
+            for (int p = 0; p < partitions; p++) {
+                subIndexPaths[p] = subIndexPath(indexPath, p);
+            }
+
+            // merging
+            final IndexMerger m = new IndexMerger(a, sim, ramBuffer, indexPath, expectedDocs, subIndexPaths);
+            m.merge();
+
+            // searching
+            final Searcher s = new Searcher(a, sim, indexPath, topics, expectedTopics, runID, runPath,
+                                            maxDocsRetrieved);
+            s.search(searchThreads);
+
+        } else {
+            printUsage();
+        }
+
+    }
+
+}
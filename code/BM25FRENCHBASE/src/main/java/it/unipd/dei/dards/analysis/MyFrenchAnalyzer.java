@@ -37,7 +37,7 @@ import java.io.Reader;
 import java.util.Arrays;
 
 import static it.unipd.dei.dards.analysis.AnalyzerUtil.consumeTokenStream;
-import static it.unipd.dei.dards.analysis.AnalyzerUtil.loadStopList;
+import static it.unipd.dei.dards.analysis.ResourceRegistry.stopList;
 
 /**
  * French analyzer to parse LongEval query and documents.
@@ -63,11 +63,11 @@ public class MyFrenchAnalyzer extends Analyzer {
 
 
 
-        TokenStream  tokens= new ElisionFilter(source, loadStopList("french-arcticles.txt"));
+        TokenStream  tokens= new ElisionFilter(source, stopList("french-arcticles.txt"));
         tokens = new LowerCaseFilter(tokens);
-        //tokens = new StopFilter(tokens, loadStopList("snowball.txt"));
-        //tokens = new StopFilter(tokens, loadStopList("smart.txt"));
-        tokens = new StopFilter(tokens, loadStopList("stopwords-fr.txt"));
+        //tokens = new StopFilter(tokens, stopList("snowball.txt"));
+        //tokens = new StopFilter(tokens, stopList("smart.txt"));
+        tokens = new StopFilter(tokens, stopList("stopwords-fr.txt"));
 
         tokens = new ASCIIFoldingFilter(tokens); //needed because of the french accents
         //tokens = new FrenchMinimalStemFilter(tokens); //the worst
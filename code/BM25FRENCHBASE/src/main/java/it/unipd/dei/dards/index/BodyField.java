@@ -46,6 +46,15 @@ public class BodyField extends Field {
         BODY_TYPE.setStored(false);
     }
 
+    /**
+     * The type of the document body field, when the body is also stored
+     */
+    private static final FieldType STORED_BODY_TYPE = new FieldType(BODY_TYPE);
+
+    static {
+        STORED_BODY_TYPE.setStored(true);
+    }
+
 
     /**
      * Create a new field for the body of a document.
@@ -65,4 +74,14 @@ public class BodyField extends Field {
         super(ParsedDocument.FIELDS.BODY, value, BODY_TYPE);
     }
 
+    /**
+     * Create a new field for the body of a document.
+     *
+     * @param value  the contents of the body of a document.
+     * @param stored whether the contents of the body have to be stored, besides being indexed.
+     */
+    public BodyField(final String value, final boolean stored) {
+        super(ParsedDocument.FIELDS.BODY, value, stored ? STORED_BODY_TYPE : BODY_TYPE);
+    }
+
 }
@@ -27,17 +27,29 @@ import org.apache.lucene.analysis.en.KStemFilterFactory;
 import org.apache.lucene.analysis.standard.StandardTokenizerFactory;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.search.similarities.*;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Indexes documents processing a whole directory tree.
@@ -53,6 +65,26 @@ public class DirectoryIndexer {
      */
     private static final int MBYTE = 1024 * 1024;
 
+    /**
+     * The key of the commit user data listing the files already indexed, one per line.
+     */
+    private static final String INDEXED_FILES = "indexed.files";
+
+    /**
+     * Marker put in the queue of files to be read to signal that no more files will follow.
+     */
+    private static final Path END_OF_FILES = Paths.get("");
+
+    /**
+     * Marker put in the queue of files to be parsed to signal that no more files will follow.
+     */
+    private static final PendingFile END_OF_CONTENTS = new PendingFile("", ByteBuffer.allocate(0));
+
+    /**
+     * Marker put in the queue of documents to be written to signal that no more documents will follow.
+     */
+    private static final PendingDocument END_OF_DOCS = new PendingDocument(new Document(), END_OF_CONTENTS);
+
     /**
      * The index writer.
      */
@@ -91,17 +123,104 @@ public class DirectoryIndexer {
     /**
      * The total number of indexed files.
      */
-    private long filesCount;
+    private final AtomicLong filesCount = new AtomicLong();
 
     /**
      * The total number of indexed documents.
      */
-    private long docsCount;
+    private final AtomicLong docsCount = new AtomicLong();
 
     /**
      * The total number of indexed bytes
      */
-    private long bytesCount;
+    private final AtomicLong bytesCount = new AtomicLong();
+
+    /**
+     * The files to be indexed when only a partition of the documents directory is indexed, {@code null} when the
+     * whole directory is indexed.
+     */
+    private Set<Path> partitionFiles = null;
+
+    /**
+     * The files already indexed, as paths relative to the documents directory. They are recorded in the commit user
+     * data, so that an interrupted indexing can be resumed skipping them.
+     */
+    private final Set<String> indexedFiles = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The number of indexed files after which the index is committed; zero to commit only at the end.
+     */
+    private int checkpointFiles = 0;
+
+    /**
+     * Indicates whether documents replace the ones with the same identifier instead of being just added, as needed
+     * when resuming an index which may contain some of the documents of files not yet recorded.
+     */
+    private boolean replaceDocuments = false;
+
+    /**
+     * A file going through the stages of {@link #index(int, int, int, int)}.
+     */
+    private static final class PendingFile {
+
+        /**
+         * The path of the file relative to the documents directory.
+         */
+        private final String name;
+
+        /**
+         * The contents of the file.
+         */
+        private final ByteBuffer contents;
+
+        /**
+         * The number of documents of the file not yet added to the index, plus one while the file is being parsed.
+         */
+        private final AtomicInteger pending = new AtomicInteger(1);
+
+        /**
+         * Creates a new pending file.
+         *
+         * @param name     the path of the file relative to the documents directory.
+         * @param contents the contents of the file.
+         */
+        private PendingFile(final String name, final ByteBuffer contents) {
+            this.name = name;
+            this.contents = contents;
+        }
+    }
+
+    /**
+     * A document waiting to be added to the index by {@link #index(int, int, int, int)}.
+     */
+    private static final class PendingDocument {
+
+        /**
+         * The document to be added to the index.
+         */
+        private final Document doc;
+
+        /**
+         * The file of the document.
+         */
+        private final PendingFile file;
+
+        /**
+         * Creates a new pending document.
+         *
+         * @param doc  the document to be added to the index.
+         * @param file the file of the document.
+         */
+        private PendingDocument(final Document doc, final PendingFile file) {
+            this.doc = doc;
+            this.file = file;
+        }
+    }
+
+    /**
+     * Indicates whether the body of the documents has to be stored, besides being indexed.
+     */
+    private boolean storeBody = false;
 
     /**
      * Creates a new indexer.
@@ -122,6 +241,35 @@ public class DirectoryIndexer {
                             final String indexPath, final String docsPath, final String extension,
                             final String charsetName, final long expectedDocs,
                             final Class<? extends DocumentParser> dpCls) {
+        this(analyzer, similarity, ramBufferSizeMB, indexPath, docsPath, extension, charsetName, expectedDocs, dpCls,
+             false);
+    }
+
+    /**
+     * Creates a new indexer, possibly resuming a previously interrupted indexing.
+     * <p>
+     * When resuming, the existing index is opened in append mode and the files recorded in its last commit are
+     * skipped. If no index exists yet, a new one is created. An index with documents but no record of their files,
+     * e.g. one built by {@link IndexMerger}, cannot be resumed, since all of its documents would be added again.
+     *
+     * @param analyzer        the {@code Analyzer} to be used.
+     * @param similarity      the {@code Similarity} to be used.
+     * @param ramBufferSizeMB the size in megabytes of the RAM buffer for indexing documents.
+     * @param indexPath       the directory where to store the index.
+     * @param docsPath        the directory from which documents have to be read.
+     * @param extension       the extension of the files to be indexed.
+     * @param charsetName     the name of the charset used for encoding documents.
+     * @param expectedDocs    the total number of documents expected to be indexed
+     * @param dpCls           the class of the {@code DocumentParser} to be used.
+     * @param resume          whether to resume the indexing from the last commit of an existing index.
+     * @throws NullPointerException     if any of the parameters is {@code null}.
+     * @throws IllegalArgumentException if any of the parameters assumes invalid values or the index cannot be
+     *                                  resumed.
+     */
+    public DirectoryIndexer(final Analyzer analyzer, final Similarity similarity, final int ramBufferSizeMB,
+                            final String indexPath, final String docsPath, final String extension,
+                            final String charsetName, final long expectedDocs,
+                            final Class<? extends DocumentParser> dpCls, final boolean resume) {
 
         if (dpCls == null) {
             throw new NullPointerException("Document parser class cannot be null.");
@@ -144,7 +292,7 @@ public class DirectoryIndexer {
         final IndexWriterConfig iwc = new IndexWriterConfig(analyzer);
         iwc.setSimilarity(similarity);
         iwc.setRAMBufferSizeMB(ramBufferSizeMB);
-        iwc.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+        iwc.setOpenMode(resume ? IndexWriterConfig.OpenMode.CREATE_OR_APPEND : IndexWriterConfig.OpenMode.CREATE);
         iwc.setCommitOnClose(true);
         iwc.setUseCompoundFile(true);
 
@@ -230,12 +378,6 @@ public class DirectoryIndexer {
         }
         this.expectedDocs = expectedDocs;
 
-        this.docsCount = 0;
-
-        this.bytesCount = 0;
-
-        this.filesCount = 0;
-
         try {
             writer = new IndexWriter(FSDirectory.open(indexDir), iwc);
         } catch (IOException e) {
@@ -243,10 +385,151 @@ public class DirectoryIndexer {
                                                              indexDir.toAbsolutePath().toString(), e.getMessage()), e);
         }
 
+        if (resume) {
+
+            boolean recorded = false;
+
+            for (Map.Entry<String, String> e : writer.getLiveCommitData()) {
+                if (INDEXED_FILES.equals(e.getKey())) {
+                    recorded = true;
+                    if (!e.getValue().isEmpty()) {
+                        indexedFiles.addAll(List.of(e.getValue().split("\n")));
+                    }
+                }
+            }
+
+            // without the record of the indexed files, every document would be added a second time
+            if (!recorded && writer.getDocStats().numDocs > 0) {
+
+                final IllegalArgumentException e = new IllegalArgumentException(String.format(
+                        "Unable to resume indexing in directory %s: its %d document(s) have been indexed without recording their files.",
+                        indexDir.toAbsolutePath().toString(), writer.getDocStats().numDocs));
+
+                try {
+                    writer.rollback();
+                } catch (IOException ioe) {
+                    e.addSuppressed(ioe);
+                }
+
+                throw e;
+            }
+
+            docsCount.set(writer.getDocStats().numDocs);
+            filesCount.set(indexedFiles.size());
+
+            // the pipeline commits documents of files still being indexed, which are indexed again when resuming
+            replaceDocuments = docsCount.get() > 0;
+
+            System.out.printf("Resuming indexing: %d document(s) (%d files) already indexed.%n", docsCount.get(),
+                              filesCount.get());
+        }
+
         this.start = System.currentTimeMillis();
 
     }
 
+    /**
+     * Sets how often the index is committed while running {@link #index()} or {@link #index(int, int, int, int)}.
+     * <p>
+     * Each commit records the files indexed so far, so that an interrupted indexing can be resumed from the last
+     * commit instead of starting over.
+     *
+     * @param checkpointFiles the number of indexed files after which the index is committed; zero to commit only at
+     *                        the end.
+     * @throws IllegalArgumentException if {@code checkpointFiles} is less than zero.
+     */
+    public void setCheckpointInterval(final int checkpointFiles) {
+
+        if (checkpointFiles < 0) {
+            throw new IllegalArgumentException("Checkpoint interval cannot be less than zero.");
+        }
+
+        this.checkpointFiles = checkpointFiles;
+    }
+
+    /**
+     * Sets whether the body of the documents has to be stored, besides being indexed.
+     * <p>
+     * A stored body has to be materialized as a {@code String}, so documents whose body is streamed by the
+     * {@code DocumentParser} (see {@link ParsedDocument#isStreamed()}) are analyzed straight from their source only
+     * when the body is not stored.
+     *
+     * @param storeBody whether the body of the documents has to be stored.
+     */
+    public void setStoreBody(final boolean storeBody) {
+        this.storeBody = storeBody;
+    }
+
+    /**
+     * Restricts indexing to one partition of the files in the documents directory.
+     * <p>
+     * Files are sorted by their path relative to the documents directory and assigned to partitions in a round-robin
+     * fashion, so that every process (or machine) working on the same collection computes the same partitions and
+     * each file ends up in exactly one of them.
+     *
+     * @param partition  the partition to be indexed, starting from zero.
+     * @param partitions the total number of partitions.
+     * @throws IllegalArgumentException if {@code partition} is not between zero and {@code partitions} - 1.
+     * @throws IOException              if something goes wrong while listing the documents directory.
+     */
+    public void selectPartition(final int partition, final int partitions) throws IOException {
+
+        if (partitions <= 0) {
+            throw new IllegalArgumentException("The number of partitions cannot be less than or equal to zero.");
+        }
+
+        if (partition < 0 || partition >= partitions) {
+            throw new IllegalArgumentException(
+                    String.format("Partition must be between 0 and %d; %d found instead.", partitions - 1, partition));
+        }
+
+        final List<String> names = new ArrayList<>();
+
+        Files.walkFileTree(docsDir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (file.getFileName().toString().endsWith(extension)) {
+                    names.add(relativeName(file));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        names.sort(null);
+
+        partitionFiles = new HashSet<>();
+
+        for (int i = partition; i < names.size(); i += partitions) {
+            partitionFiles.add(docsDir.resolve(names.get(i)));
+        }
+
+        System.out.printf("Partition %d of %d: %d file(s) out of %d.%n", partition + 1, partitions,
+                          partitionFiles.size(), names.size());
+    }
+
+    /**
+     * Returns the path of the given file relative to the documents directory, using "/" as separator so that it does
+     * not depend on the platform.
+     *
+     * @param file the file.
+     * @return the relative path of the file.
+     */
+    private String relativeName(final Path file) {
+        return docsDir.relativize(file).toString().replace('\\', '/');
+    }
+
+    /**
+     * Checks whether the given file has to be indexed.
+     *
+     * @param file the file to check.
+     * @return {@code true} if the file has the expected extension, belongs to the selected partition, if any, and has
+     * not already been indexed.
+     */
+    private boolean accept(final Path file) {
+        return file.getFileName().toString().endsWith(extension) && (partitionFiles == null || partitionFiles.contains(
+                file)) && !indexedFiles.contains(relativeName(file));
+    }
+
     /**
      * Indexes the documents.
      *
@@ -259,56 +542,314 @@ public class DirectoryIndexer {
         Files.walkFileTree(docsDir, new SimpleFileVisitor<Path>() {
             @Override
             public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                if (file.getFileName().toString().endsWith(extension)) {
+                if (accept(file)) {
 
-                    DocumentParser dp = DocumentParser.create(dpCls, Files.newBufferedReader(file, cs));
+                    DocumentParser dp = DocumentParser.create(dpCls, file, cs);
 
-                    bytesCount += Files.size(file);
+                    bytesCount.addAndGet(Files.size(file));
 
-                    filesCount += 1;
-
-                    Document doc = null;
+                    filesCount.incrementAndGet();
 
                     for (ParsedDocument pd : dp) {
 
-                        doc = new Document();
+                        addDocument(toDocument(pd));
+
+                        countDocument();
+                    }
+
+                    // the file is complete, so the commit does not contain any partially indexed file
+                    fileIndexed(relativeName(file), filesCount.get());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
 
-                        // add the document identifier
-                        doc.add(new StringField(ParsedDocument.FIELDS.ID, pd.getIdentifier(), Field.Store.YES));
+        close();
+    }
 
-                        // add the document body
-                        doc.add(new BodyField(pd.getBody()));
-                        //System.out.println(pd.getIdentifier());
-                        //System.out.println(pd.getBody());
+    /**
+     * Indexes the documents using a pipeline of three stages, each one running on its own pool of threads.
+     * <p>
+     * The first stage reads the whole contents of the files into memory, the second one parses their documents with
+     * the {@code DocumentParser}, created with {@link DocumentParser#create(Class, ByteBuffer, Charset)}, and the third
+     * one analyzes the parsed documents and adds them to the index. So the I/O is done by the first stage only, while
+     * the others keep the CPUs busy. Stages are connected by bounded queues, so that a slow stage blocks the previous
+     * ones instead of letting them fill up the memory: since whole files are queued, at most one file per parser
+     * thread waits to be parsed, whatever the size of the queues.
+     * <p>
+     * Since files and documents are processed concurrently, the order in which documents are added to the index (and
+     * thus their internal identifiers) may differ from the one of {@link #index()}. Any {@code DocumentParser} can be
+     * used, including the ones which stream the body of the documents to the analyzer: their documents keep the
+     * contents of their file in memory until they have been added to the index.
+     * <p>
+     * A file is recorded as indexed once its last document has been added, and checkpoints are committed as in
+     * {@link #index()}. Since the other files keep being indexed meanwhile, a checkpoint may also contain some of their
+     * documents: when resuming, such files are indexed again and their documents replace the ones with the same
+     * identifier.
+     *
+     * @param readerThreads the number of threads reading files.
+     * @param parserThreads the number of threads parsing files.
+     * @param writerThreads the number of threads analyzing documents and adding them to the index.
+     * @param queueSize     the capacity of each of the queues between the stages.
+     * @throws IllegalArgumentException if any of the parameters is less than or equal to zero.
+     * @throws IOException              if something goes wrong while indexing.
+     */
+    public void index(final int readerThreads, final int parserThreads, final int writerThreads,
+                      final int queueSize) throws IOException {
 
-                        writer.addDocument(doc);
+        if (readerThreads <= 0 || parserThreads <= 0 || writerThreads <= 0) {
+            throw new IllegalArgumentException("The number of threads of each stage cannot be less than or equal to zero.");
+        }
 
-                        docsCount++;
+        if (queueSize <= 0) {
+            throw new IllegalArgumentException("Queue size cannot be less than or equal to zero.");
+        }
 
-                        // print progress every 10000 indexed documents
-                        if (docsCount % 10000 == 0) {
-                            System.out.printf("%d document(s) (%d files, %d Mbytes) indexed in %d seconds.%n",
-                                              docsCount, filesCount, bytesCount / MBYTE,
-                                              (System.currentTimeMillis() - start) / 1000);
+        System.out.printf("%n#### Start indexing (%d reader, %d parser, %d writer thread(s)) ####%n", readerThreads,
+                          parserThreads, writerThreads);
+
+        final BlockingQueue<Path> files = new ArrayBlockingQueue<>(queueSize);
+        final BlockingQueue<PendingFile> contents = new ArrayBlockingQueue<>(Math.min(queueSize, parserThreads));
+        final BlockingQueue<PendingDocument> docs = new ArrayBlockingQueue<>(queueSize);
+
+        // the number of files whose documents have all been added to the index
+        final AtomicLong completedFiles = new AtomicLong();
+
+        final AtomicInteger activeReaders = new AtomicInteger(readerThreads);
+        final AtomicInteger activeParsers = new AtomicInteger(parserThreads);
+
+        final ExecutorService pool = Executors.newFixedThreadPool(1 + readerThreads + parserThreads + writerThreads);
+        final CompletionService<Void> stages = new ExecutorCompletionService<>(pool);
+
+        // walks the directory tree and feeds the readers
+        stages.submit(() -> {
+            Files.walkFileTree(docsDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (accept(file)) {
+                        try {
+                            files.put(file);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return FileVisitResult.TERMINATE;
                         }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
 
+            for (int i = 0; i < readerThreads; i++) {
+                files.put(END_OF_FILES);
+            }
+            return null;
+        });
+
+        // reads files and feeds the parsers
+        for (int i = 0; i < readerThreads; i++) {
+            stages.submit(() -> {
+                for (Path file = files.take(); file != END_OF_FILES; file = files.take()) {
+
+                    final byte[] bytes = Files.readAllBytes(file);
+
+                    contents.put(new PendingFile(relativeName(file), ByteBuffer.wrap(bytes).asReadOnlyBuffer()));
+
+                    bytesCount.addAndGet(bytes.length);
+
+                    filesCount.incrementAndGet();
+                }
+
+                // the last reader to finish tells the parsers that no more files will follow
+                if (activeReaders.decrementAndGet() == 0) {
+                    for (int j = 0; j < parserThreads; j++) {
+                        contents.put(END_OF_CONTENTS);
                     }
+                }
+                return null;
+            });
+        }
+
+        // parses the documents of the files and feeds the writers
+        for (int i = 0; i < parserThreads; i++) {
+            stages.submit(() -> {
+                for (PendingFile pf = contents.take(); pf != END_OF_CONTENTS; pf = contents.take()) {
 
+                    for (ParsedDocument pd : DocumentParser.create(dpCls, pf.contents, cs)) {
+                        pf.pending.incrementAndGet();
+                        docs.put(new PendingDocument(toDocument(pd), pf));
+                    }
+
+                    // the writers may have already added all the documents of the file
+                    if (pf.pending.decrementAndGet() == 0) {
+                        fileIndexed(pf.name, completedFiles.incrementAndGet());
+                    }
                 }
-                return FileVisitResult.CONTINUE;
+
+                // the last parser to finish tells the writers that no more documents will follow
+                if (activeParsers.decrementAndGet() == 0) {
+                    for (int j = 0; j < writerThreads; j++) {
+                        docs.put(END_OF_DOCS);
+                    }
+                }
+                return null;
+            });
+        }
+
+        // analyzes documents and adds them to the index
+        for (int i = 0; i < writerThreads; i++) {
+            stages.submit(() -> {
+                for (PendingDocument pd = docs.take(); pd != END_OF_DOCS; pd = docs.take()) {
+
+                    addDocument(pd.doc);
+
+                    countDocument();
+
+                    if (pd.file.pending.decrementAndGet() == 0) {
+                        fileIndexed(pd.file.name, completedFiles.incrementAndGet());
+                    }
+                }
+                return null;
+            });
+        }
+
+        try {
+            for (int i = 0, n = 1 + readerThreads + parserThreads + writerThreads; i < n; i++) {
+                stages.take().get();
             }
-        });
+        } catch (ExecutionException e) {
+            writer.rollback();
+            throw new IOException(String.format("Unable to index documents: %s.", e.getCause().getMessage()),
+                                  e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writer.rollback();
+            throw new IOException("Indexing interrupted.", e);
+        } finally {
+            // wakes up any stage still blocked on a queue after a failure
+            pool.shutdownNow();
+        }
+
+        close();
+    }
+
+    /**
+     * Creates the Lucene {@code Document} to be indexed for the given parsed document.
+     *
+     * @param pd the parsed document.
+     * @return the document to be added to the index.
+     */
+    private Document toDocument(final ParsedDocument pd) {
+        return toDocument(pd, storeBody);
+    }
+
+    /**
+     * Creates the Lucene {@code Document} to be indexed for the given parsed document.
+     *
+     * @param pd        the parsed document.
+     * @param storeBody whether the body of the document has to be stored, besides being indexed.
+     * @return the document to be added to the index.
+     */
+    static Document toDocument(final ParsedDocument pd, final boolean storeBody) {
+
+        final Document doc = new Document();
+
+        // add the document identifier
+        doc.add(new StringField(ParsedDocument.FIELDS.ID, pd.getIdentifier(), Field.Store.YES));
+
+        // and its doc values, so that searching resolves hits to identifiers without reading stored fields
+        doc.add(new SortedDocValuesField(ParsedDocument.FIELDS.ID, new BytesRef(pd.getIdentifier())));
+
+        // add the document body, letting the analyzer read it straight from its source when it is streamed
+        if (storeBody) {
+            doc.add(new BodyField(pd.getBody(), true));
+        } else if (pd.isStreamed()) {
+            doc.add(new BodyField(pd.getBodyReader()));
+        } else {
+            doc.add(new BodyField(pd.getBody()));
+        }
+
+        return doc;
+    }
+
+    /**
+     * Adds a document to the index, replacing the documents with the same identifier if needed.
+     *
+     * @param doc the document to be added.
+     * @throws IOException if something goes wrong while adding the document.
+     */
+    private void addDocument(final Document doc) throws IOException {
+        if (replaceDocuments) {
+            writer.updateDocument(new Term(ParsedDocument.FIELDS.ID, doc.get(ParsedDocument.FIELDS.ID)), doc);
+        } else {
+            writer.addDocument(doc);
+        }
+    }
+
+    /**
+     * Records a file whose documents have all been added to the index, committing a checkpoint if it is due.
+     *
+     * @param name  the path of the file relative to the documents directory.
+     * @param files the number of files indexed so far, this one included.
+     * @throws IOException if something goes wrong while committing the index.
+     */
+    private void fileIndexed(final String name, final long files) throws IOException {
+
+        indexedFiles.add(name);
+
+        if (checkpointFiles > 0 && files % checkpointFiles == 0) {
+            commit();
+
+            System.out.printf("Checkpoint: %d file(s) committed, %d document(s) indexed so far.%n",
+                              indexedFiles.size(), docsCount.get());
+        }
+    }
+
+    /**
+     * Counts a newly indexed document and prints progress every 10000 indexed documents.
+     */
+    private void countDocument() {
+
+        final long count = docsCount.incrementAndGet();
+
+        if (count % 10000 == 0) {
+            System.out.printf("%d document(s) (%d files, %d Mbytes) indexed in %d seconds.%n", count,
+                              filesCount.get(), bytesCount.get() / MBYTE,
+                              (System.currentTimeMillis() - start) / 1000);
+        }
+    }
+
+    /**
+     * Commits the index, recording the files indexed so far in the commit user data.
+     *
+     * @throws IOException if something goes wrong while committing the index.
+     */
+    private synchronized void commit() throws IOException {
+
+        writer.setLiveCommitData(Map.of(INDEXED_FILES, String.join("\n", indexedFiles)).entrySet());
 
         writer.commit();
+    }
+
+    /**
+     * Commits and closes the index writer, checking the number of indexed documents.
+     *
+     * @throws IOException if something goes wrong while committing the index.
+     */
+    private void close() throws IOException {
+
+        commit();
+
+        // documents replaced when resuming are counted twice
+        docsCount.set(writer.getDocStats().numDocs);
 
         writer.close();
 
-        if (docsCount != expectedDocs) {
-            System.out.printf("Expected to index %d documents; %d indexed instead.%n", expectedDocs, docsCount);
+        // the expected number of documents refers to the whole collection, not to a single partition
+        if (partitionFiles == null && docsCount.get() != expectedDocs) {
+            System.out.printf("Expected to index %d documents; %d indexed instead.%n", expectedDocs, docsCount.get());
         }
 
-        System.out.printf("%d document(s) (%d files, %d Mbytes) indexed in %d seconds.%n", docsCount, filesCount,
-                          bytesCount / MBYTE, (System.currentTimeMillis() - start) / 1000);
+        System.out.printf("%d document(s) (%d files, %d Mbytes) indexed in %d seconds.%n", docsCount.get(),
+                          filesCount.get(), bytesCount.get() / MBYTE, (System.currentTimeMillis() - start) / 1000);
 
         System.out.printf("#### Indexing complete ####%n");
     }
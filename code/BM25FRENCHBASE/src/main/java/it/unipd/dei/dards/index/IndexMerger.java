@@ -0,0 +1,194 @@
+/*
+ *  Copyright 2021-2022 University of Padua, Italy
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unipd.dei.dards.index;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Merges the sub-indexes produced by independent (partitioned) runs of {@link DirectoryIndexer} into a single index.
+ *
+ * @author DARDS
+ * @version 1.00
+ * @since 1.00
+ */
+public class IndexMerger {
+
+    /**
+     * The index writer of the merged index.
+     */
+    private final IndexWriter writer;
+
+    /**
+     * The directories of the sub-indexes to be merged.
+     */
+    private final Directory[] subIndexes;
+
+    /**
+     * The total number of documents expected in the merged index.
+     */
+    private final long expectedDocs;
+
+    /**
+     * Creates a new merger.
+     *
+     * @param analyzer        the {@code Analyzer} used to create the sub-indexes.
+     * @param similarity      the {@code Similarity} used to create the sub-indexes.
+     * @param ramBufferSizeMB the size in megabytes of the RAM buffer for indexing documents.
+     * @param indexPath       the directory where to store the merged index.
+     * @param expectedDocs    the total number of documents expected in the merged index.
+     * @param subIndexPaths   the directories containing the sub-indexes to be merged.
+     * @throws NullPointerException     if any of the parameters is {@code null}.
+     * @throws IllegalArgumentException if any of the parameters assumes invalid values.
+     */
+    public IndexMerger(final Analyzer analyzer, final Similarity similarity, final int ramBufferSizeMB,
+                       final String indexPath, final long expectedDocs, final String... subIndexPaths) {
+
+        if (analyzer == null) {
+            throw new NullPointerException("Analyzer cannot be null.");
+        }
+
+        if (similarity == null) {
+            throw new NullPointerException("Similarity cannot be null.");
+        }
+
+        if (ramBufferSizeMB <= 0) {
+            throw new IllegalArgumentException("RAM buffer size cannot be less than or equal to zero.");
+        }
+
+        if (expectedDocs <= 0) {
+            throw new IllegalArgumentException(
+                    "The expected number of documents to be indexed cannot be less than or equal to zero.");
+        }
+        this.expectedDocs = expectedDocs;
+
+        if (subIndexPaths == null) {
+            throw new NullPointerException("Sub-index paths cannot be null.");
+        }
+
+        if (subIndexPaths.length == 0) {
+            throw new IllegalArgumentException("At least one sub-index must be provided.");
+        }
+
+        subIndexes = new Directory[subIndexPaths.length];
+
+        for (int i = 0; i < subIndexPaths.length; i++) {
+
+            final Path subIndexDir = Paths.get(subIndexPaths[i]);
+
+            if (!Files.isReadable(subIndexDir) || !Files.isDirectory(subIndexDir)) {
+                throw new IllegalArgumentException(
+                        String.format("Sub-index directory %s cannot be read.", subIndexDir.toAbsolutePath().toString()));
+            }
+
+            try {
+                subIndexes[i] = FSDirectory.open(subIndexDir);
+            } catch (IOException e) {
+                throw new IllegalArgumentException(String.format("Unable to open sub-index directory %s: %s.",
+                                                                 subIndexDir.toAbsolutePath().toString(),
+                                                                 e.getMessage()), e);
+            }
+        }
+
+        final IndexWriterConfig iwc = new IndexWriterConfig(analyzer);
+        iwc.setSimilarity(similarity);
+        iwc.setRAMBufferSizeMB(ramBufferSizeMB);
+        iwc.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+        iwc.setCommitOnClose(true);
+        iwc.setUseCompoundFile(true);
+
+        if (indexPath == null) {
+            throw new NullPointerException("Index path cannot be null.");
+        }
+
+        if (indexPath.isEmpty()) {
+            throw new IllegalArgumentException("Index path cannot be empty.");
+        }
+
+        final Path indexDir = Paths.get(indexPath);
+
+        // if the directory does not already exist, create it
+        if (Files.notExists(indexDir)) {
+            try {
+                Files.createDirectory(indexDir);
+            } catch (Exception e) {
+                throw new IllegalArgumentException(
+                        String.format("Unable to create directory %s: %s.", indexDir.toAbsolutePath().toString(),
+                                      e.getMessage()), e);
+            }
+        }
+
+        if (!Files.isWritable(indexDir)) {
+            throw new IllegalArgumentException(
+                    String.format("Index directory %s cannot be written.", indexDir.toAbsolutePath().toString()));
+        }
+
+        try {
+            writer = new IndexWriter(FSDirectory.open(indexDir), iwc);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(String.format("Unable to create the index writer in directory %s: %s.",
+                                                             indexDir.toAbsolutePath().toString(), e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Merges the sub-indexes.
+     *
+     * @throws IOException if something goes wrong while merging.
+     */
+    public void merge() throws IOException {
+
+        System.out.printf("%n#### Start merging %d sub-index(es) ####%n", subIndexes.length);
+
+        final long start = System.currentTimeMillis();
+
+        final long docsCount;
+
+        try {
+            writer.addIndexes(subIndexes);
+
+            writer.commit();
+
+            docsCount = writer.getDocStats().numDocs;
+        } finally {
+            writer.close();
+
+            for (Directory d : subIndexes) {
+                d.close();
+            }
+        }
+
+        if (docsCount != expectedDocs) {
+            System.out.printf("Expected to index %d documents; %d indexed instead.%n", expectedDocs, docsCount);
+        }
+
+        System.out.printf("%d document(s) merged in %d seconds.%n", docsCount,
+                          (System.currentTimeMillis() - start) / 1000);
+
+        System.out.printf("#### Merging complete ####%n");
+    }
+
+}
@@ -0,0 +1,538 @@
+/*
+ *  Copyright 2021-2022 University of Padua, Italy
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unipd.dei.dards.index;
+
+import it.unipd.dei.dards.analysis.MyFrenchAnalyzer;
+import it.unipd.dei.dards.parse.ParsedDocument;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.ControlledRealTimeReopenThread;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.FSDirectory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An index which can be searched while documents are added, updated and deleted (near-real-time search).
+ * <p>
+ * Searchers are handed out by a {@code SearcherManager} over the {@code IndexWriter}, which is refreshed in the
+ * background by a {@code ControlledRealTimeReopenThread}: changes become visible within the given staleness, or as
+ * soon as possible for callers waiting for them with {@link #waitForGeneration(Change)}. Merges run on a single
+ * background thread, with automatic I/O throttling, so that indexing steals as little as possible from the queries
+ * being searched.
+ * <p>
+ * The whole index can also be replaced by a freshly built one with {@link #swap(String)}: searches started before the
+ * swap keep their searcher over the old index, while the next ones get the new index.
+ * <p>
+ * The index is thread-safe. Every searcher obtained with {@link #acquire()} has to be given back with
+ * {@link #release(IndexSearcher)}.
+ *
+ * @author DARDS
+ * @version 1.00
+ * @since 1.00
+ */
+public class LiveIndex implements Closeable {
+
+    /**
+     * The analyzer used for indexing documents.
+     */
+    private final Analyzer analyzer;
+
+    /**
+     * The similarity used for indexing and searching documents.
+     */
+    private final Similarity similarity;
+
+    /**
+     * The size in megabytes of the RAM buffer for indexing documents.
+     */
+    private final int ramBufferSizeMB;
+
+    /**
+     * The maximum time, in seconds, before a change becomes visible to searches.
+     */
+    private final double maxStaleSec;
+
+    /**
+     * The index currently searched and updated.
+     */
+    private final AtomicReference<Generation> current = new AtomicReference<>();
+
+    /**
+     * Held for reading while updating the index and for writing while swapping it.
+     */
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+    /**
+     * Opens an index for near-real-time search, creating it if it does not exist.
+     *
+     * @param analyzer        the {@code Analyzer} to be used.
+     * @param similarity      the {@code Similarity} to be used.
+     * @param ramBufferSizeMB the size in megabytes of the RAM buffer for indexing documents.
+     * @param indexPath       the directory of the index.
+     * @param maxStaleSec     the maximum time, in seconds, before a change becomes visible to searches.
+     * @throws NullPointerException     if any of the parameters is {@code null}.
+     * @throws IllegalArgumentException if any of the parameters assumes invalid values.
+     * @throws IOException              if the index cannot be opened.
+     */
+    public LiveIndex(final Analyzer analyzer, final Similarity similarity, final int ramBufferSizeMB,
+                     final String indexPath, final double maxStaleSec) throws IOException {
+
+        if (analyzer == null) {
+            throw new NullPointerException("Analyzer cannot be null.");
+        }
+
+        if (similarity == null) {
+            throw new NullPointerException("Similarity cannot be null.");
+        }
+
+        if (ramBufferSizeMB <= 0) {
+            throw new IllegalArgumentException("RAM buffer size cannot be less than or equal to zero.");
+        }
+
+        if (maxStaleSec <= 0) {
+            throw new IllegalArgumentException("The maximum staleness cannot be less than or equal to zero.");
+        }
+
+        this.analyzer = analyzer;
+        this.similarity = similarity;
+        this.ramBufferSizeMB = ramBufferSizeMB;
+        this.maxStaleSec = maxStaleSec;
+
+        current.set(open(indexPath, IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+    }
+
+    /**
+     * Opens an index, together with its searcher manager and the thread refreshing it.
+     *
+     * @param indexPath the directory of the index.
+     * @param mode      how to open the index.
+     * @return the opened index.
+     * @throws NullPointerException     if {@code indexPath} is {@code null}.
+     * @throws IllegalArgumentException if {@code indexPath} is empty.
+     * @throws IOException              if the index cannot be opened.
+     */
+    private Generation open(final String indexPath, final IndexWriterConfig.OpenMode mode) throws IOException {
+
+        if (indexPath == null) {
+            throw new NullPointerException("Index path cannot be null.");
+        }
+
+        if (indexPath.isEmpty()) {
+            throw new IllegalArgumentException("Index path cannot be empty.");
+        }
+
+        final Path indexDir = Paths.get(indexPath);
+        Files.createDirectories(indexDir);
+
+        // a single merge thread, throttled when merges would compete with searches for I/O
+        final ConcurrentMergeScheduler cms = new ConcurrentMergeScheduler();
+        cms.setMaxMergesAndThreads(6, 1);
+        cms.enableAutoIOThrottle();
+
+        final IndexWriterConfig iwc = new IndexWriterConfig(analyzer);
+        iwc.setSimilarity(similarity);
+        iwc.setRAMBufferSizeMB(ramBufferSizeMB);
+        iwc.setOpenMode(mode);
+        iwc.setCommitOnClose(true);
+        iwc.setUseCompoundFile(true);
+        iwc.setMergeScheduler(cms);
+
+        final IndexWriter writer = new IndexWriter(FSDirectory.open(indexDir), iwc);
+
+        try {
+            final SearcherManager manager = new SearcherManager(writer, new SearcherFactory() {
+                @Override
+                public IndexSearcher newSearcher(final IndexReader reader, final IndexReader previousReader) {
+                    final IndexSearcher s = new IndexSearcher(reader);
+                    s.setSimilarity(similarity);
+                    return s;
+                }
+            });
+
+            final ControlledRealTimeReopenThread<IndexSearcher> reopener = new ControlledRealTimeReopenThread<>(
+                    writer, manager, maxStaleSec, Math.min(maxStaleSec, 0.025));
+            reopener.setName("live-index-reopen");
+            reopener.setDaemon(true);
+            reopener.start();
+
+            System.out.printf("Live index %s opened with %d document(s).%n", indexDir.toAbsolutePath(),
+                              writer.getDocStats().numDocs);
+
+            return new Generation(indexDir, writer, manager, reopener);
+
+        } catch (IOException | RuntimeException e) {
+            writer.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a searcher over the latest visible version of the index, to be given back with
+     * {@link #release(IndexSearcher)}.
+     *
+     * @return a searcher over the index.
+     * @throws IOException if something goes wrong while refreshing the searcher.
+     */
+    public IndexSearcher acquire() throws IOException {
+
+        while (true) {
+
+            final Generation g = current.get();
+
+            if (g == null) {
+                throw new AlreadyClosedException("Live index is closed.");
+            }
+
+            try {
+                return g.manager.acquire();
+            } catch (AlreadyClosedException e) {
+                // the index has just been swapped: try again with the new one, unless it has been closed
+                if (current.get() == g) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gives back a searcher obtained with {@link #acquire()}.
+     * <p>
+     * Releasing a searcher only decreases the reference count of its reader, which is what
+     * {@code SearcherManager.release} does, so searchers acquired before a swap are released in the same way.
+     *
+     * @param searcher the searcher to give back.
+     * @throws IOException if something goes wrong while closing a reader no longer used.
+     */
+    public void release(final IndexSearcher searcher) throws IOException {
+        searcher.getIndexReader().decRef();
+    }
+
+    /**
+     * Adds a document, or replaces the documents with its identifier.
+     *
+     * @param pd the parsed document.
+     * @return the change to wait for before searching it, see {@link #waitForGeneration(Change)}.
+     * @throws NullPointerException   if {@code pd} is {@code null}.
+     * @throws AlreadyClosedException if the index is closed.
+     * @throws IOException            if something goes wrong while indexing the document.
+     */
+    public Change updateDocument(final ParsedDocument pd) throws IOException {
+
+        if (pd == null) {
+            throw new NullPointerException("Parsed document cannot be null.");
+        }
+
+        swapLock.readLock().lock();
+        try {
+            final Generation g = current();
+            return new Change(g, g.writer.updateDocument(new Term(ParsedDocument.FIELDS.ID, pd.getIdentifier()),
+                                                         DirectoryIndexer.toDocument(pd, false)));
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Deletes the documents with the given identifier.
+     *
+     * @param id the identifier of the documents.
+     * @return the change to wait for before searching it, see {@link #waitForGeneration(Change)}.
+     * @throws NullPointerException   if {@code id} is {@code null}.
+     * @throws AlreadyClosedException if the index is closed.
+     * @throws IOException            if something goes wrong while deleting the documents.
+     */
+    public Change deleteDocument(final String id) throws IOException {
+
+        if (id == null) {
+            throw new NullPointerException("Document identifier cannot be null.");
+        }
+
+        swapLock.readLock().lock();
+        try {
+            final Generation g = current();
+            return new Change(g, g.writer.deleteDocuments(new TermQuery(new Term(ParsedDocument.FIELDS.ID, id))));
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Waits until the given change, and the ones done before it, are visible to searches.
+     * <p>
+     * A change refers to the index it was done on: if that index is swapped out or closed, either before or while
+     * waiting, this method returns at once, since the change will never be visible to searches.
+     *
+     * @param change the change returned by {@link #updateDocument(ParsedDocument)} or
+     *               {@link #deleteDocument(String)}.
+     * @throws NullPointerException if {@code change} is {@code null}.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void waitForGeneration(final Change change) throws InterruptedException {
+
+        if (change == null) {
+            throw new NullPointerException("Change cannot be null.");
+        }
+
+        // a closed reopen thread considers every generation as reached
+        change.index.reopener.waitForGeneration(change.generation);
+    }
+
+    /**
+     * Makes the changes done so far durable.
+     *
+     * @throws AlreadyClosedException if the index is closed.
+     * @throws IOException            if something goes wrong while committing.
+     */
+    public void commit() throws IOException {
+
+        swapLock.readLock().lock();
+        try {
+            current().writer.commit();
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the index with a freshly built one, for instance by {@link DirectoryIndexer}.
+     * <p>
+     * The new index is opened and searchable before it replaces the old one, so that searches never wait; the old
+     * index is committed and closed, and its files are left where they are. Documents updated in the old index after
+     * the new one was built are not carried over.
+     *
+     * @param indexPath the directory of the new index.
+     * @throws NullPointerException     if {@code indexPath} is {@code null}.
+     * @throws IllegalArgumentException if {@code indexPath} is empty or is the directory of the current index.
+     * @throws AlreadyClosedException   if the index is closed.
+     * @throws IOException              if the new index cannot be opened or the old one cannot be closed.
+     */
+    public void swap(final String indexPath) throws IOException {
+
+        if (indexPath != null && Paths.get(indexPath).toAbsolutePath().normalize().equals(
+                current().path.toAbsolutePath().normalize())) {
+            throw new IllegalArgumentException(
+                    String.format("%s is already the current index.", Paths.get(indexPath).toAbsolutePath()));
+        }
+
+        final long start = System.currentTimeMillis();
+
+        final Generation fresh = open(indexPath, IndexWriterConfig.OpenMode.APPEND);
+
+        final Generation old;
+
+        swapLock.writeLock().lock();
+        try {
+            old = current.get();
+            if (old != null) {
+                current.set(fresh);
+            }
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+
+        // closed while the new index was being opened
+        if (old == null) {
+            fresh.close();
+            throw new AlreadyClosedException("Live index is closed.");
+        }
+
+        old.close();
+
+        System.out.printf("Live index swapped from %s to %s in %d ms.%n", old.path.toAbsolutePath(),
+                          fresh.path.toAbsolutePath(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Commits and closes the index. Searchers still acquired remain usable until released.
+     *
+     * @throws IOException if something goes wrong while closing the index.
+     */
+    @Override
+    public void close() throws IOException {
+
+        final Generation g;
+
+        swapLock.writeLock().lock();
+        try {
+            g = current.getAndSet(null);
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+
+        if (g != null) {
+            g.close();
+        }
+    }
+
+    /**
+     * Returns the index currently searched and updated.
+     *
+     * @return the index currently searched and updated.
+     * @throws AlreadyClosedException if the index is closed.
+     */
+    private Generation current() {
+
+        final Generation g = current.get();
+
+        if (g == null) {
+            throw new AlreadyClosedException("Live index is closed.");
+        }
+
+        return g;
+    }
+
+    /**
+     * A change done on an index, to be waited for with {@link #waitForGeneration(Change)}.
+     * <p>
+     * Sequence numbers are meaningful only within the index writer which assigned them, so a change keeps both.
+     */
+    public static final class Change {
+
+        /**
+         * The index the change was done on.
+         */
+        private final Generation index;
+
+        /**
+         * The sequence number assigned to the change by the index writer.
+         */
+        private final long generation;
+
+        /**
+         * Creates a new change.
+         *
+         * @param index      the index the change was done on.
+         * @param generation the sequence number assigned to the change by the index writer.
+         */
+        private Change(final Generation index, final long generation) {
+            this.index = index;
+            this.generation = generation;
+        }
+
+        /**
+         * Returns the sequence number assigned to the change by the index writer.
+         *
+         * @return the sequence number assigned to the change by the index writer.
+         */
+        public long getGeneration() {
+            return generation;
+        }
+    }
+
+    /**
+     * An index, with its searcher manager and the thread refreshing it.
+     */
+    private static final class Generation implements Closeable {
+
+        /**
+         * The directory of the index.
+         */
+        private final Path path;
+
+        /**
+         * The index writer.
+         */
+        private final IndexWriter writer;
+
+        /**
+         * The searcher manager.
+         */
+        private final SearcherManager manager;
+
+        /**
+         * The thread refreshing the searcher manager.
+         */
+        private final ControlledRealTimeReopenThread<IndexSearcher> reopener;
+
+        /**
+         * Creates a new index generation.
+         *
+         * @param path     the directory of the index.
+         * @param writer   the index writer.
+         * @param manager  the searcher manager.
+         * @param reopener the thread refreshing the searcher manager.
+         */
+        private Generation(final Path path, final IndexWriter writer, final SearcherManager manager,
+                           final ControlledRealTimeReopenThread<IndexSearcher> reopener) {
+            this.path = path;
+            this.writer = writer;
+            this.manager = manager;
+            this.reopener = reopener;
+        }
+
+        /**
+         * Stops refreshing, then closes the searcher manager and the index writer.
+         *
+         * @throws IOException if something goes wrong while closing the index.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                reopener.close();
+            } finally {
+                try {
+                    manager.close();
+                } finally {
+                    writer.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Main method of the class. Just for testing purposes.
+     *
+     * @param args command line arguments: the directory of the index.
+     * @throws Exception if something goes wrong while indexing.
+     */
+    public static void main(String[] args) throws Exception {
+
+        final String indexPath = args.length > 0 ? args[0] : "code/experiment/index-live-french";
+
+        try (LiveIndex live = new LiveIndex(new MyFrenchAnalyzer(), new BM25Similarity(), 256, indexPath, 1.0)) {
+
+            final Change change = live.updateDocument(new ParsedDocument("doc000000001", "Maison à vendre à Paris"));
+            live.waitForGeneration(change);
+
+            final IndexSearcher s = live.acquire();
+            try {
+                System.out.printf("%d document(s) searchable.%n", s.getIndexReader().numDocs());
+            } finally {
+                live.release(s);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,558 @@
+/*
+ *  Copyright 2021-2022 University of Padua, Italy
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unipd.dei.dards.index;
+
+import it.unipd.dei.dards.analysis.MyFrenchAnalyzer;
+import it.unipd.dei.dards.parse.DocumentParser;
+import it.unipd.dei.dards.parse.LongEvalParser;
+import it.unipd.dei.dards.parse.ParsedDocument;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Brings an index up to date with a new snapshot of a document collection, such as the successive LongEval
+ * snapshots of the same French web collection, touching only the documents which changed.
+ * <p>
+ * Each document is indexed together with a fingerprint of its body, stored as the doc values of the
+ * {@link #FINGERPRINT} field. When indexing a snapshot, the fingerprints of the documents already in the index are
+ * loaded by identifier and each document of the snapshot is:
+ * <ul>
+ *     <li>added, if its identifier is not in the index;</li>
+ *     <li>replaced with {@code updateDocument}, if its fingerprint changed;</li>
+ *     <li>skipped without being analyzed, if its fingerprint did not change.</li>
+ * </ul>
+ * Documents in the index but not in the snapshot are deleted. The time taken thus depends on the churn between the
+ * snapshots, plus reading and fingerprinting the snapshot, rather than on the size of the collection.
+ * <p>
+ * Indexing the first snapshot into an empty directory builds the same index as {@link DirectoryIndexer}, with the
+ * fingerprints in addition. Documents indexed without a fingerprint are replaced the first time they are seen.
+ * <p>
+ * Deleted and replaced documents still count in the term statistics until their segments are merged, so scores on an
+ * updated index can slightly differ from the ones on an index rebuilt from scratch.
+ *
+ * @author DARDS
+ * @version 1.00
+ * @since 1.00
+ */
+public class SnapshotIndexer {
+
+    /**
+     * The name of the field holding the fingerprint of the body of a document.
+     */
+    public static final String FINGERPRINT = "fingerprint";
+
+    /**
+     * The key of the commit user data recording the last snapshot indexed.
+     */
+    private static final String SNAPSHOT = "snapshot";
+
+    /**
+     * One megabyte.
+     */
+    private static final int MBYTE = 1024 * 1024;
+
+    /**
+     * The index writer.
+     */
+    private final IndexWriter writer;
+
+    /**
+     * The class of the {@code DocumentParser} to be used.
+     */
+    private final Class<? extends DocumentParser> dpCls;
+
+    /**
+     * The directory of the snapshot to be indexed.
+     */
+    private final Path docsDir;
+
+    /**
+     * The extension of the files to be indexed.
+     */
+    private final String extension;
+
+    /**
+     * The charset used for encoding documents.
+     */
+    private final Charset cs;
+
+    /**
+     * The digest computing the fingerprints.
+     */
+    private final MessageDigest digest;
+
+    /**
+     * The buffer of characters of the body being fingerprinted.
+     */
+    private final char[] chars = new char[8192];
+
+    /**
+     * The buffer of bytes of the body being fingerprinted, two for each character.
+     */
+    private final ByteBuffer bytes = ByteBuffer.allocate(2 * chars.length);
+
+    /**
+     * The number of documents added.
+     */
+    private long added = 0;
+
+    /**
+     * The number of documents replaced.
+     */
+    private long changed = 0;
+
+    /**
+     * The number of documents unchanged.
+     */
+    private long unchanged = 0;
+
+    /**
+     * The number of documents deleted.
+     */
+    private long deleted = 0;
+
+    /**
+     * Creates a new snapshot indexer, creating the index if it does not exist.
+     *
+     * @param analyzer        the {@code Analyzer} to be used.
+     * @param similarity      the {@code Similarity} to be used.
+     * @param ramBufferSizeMB the size in megabytes of the RAM buffer for indexing documents.
+     * @param indexPath       the directory of the index to be brought up to date.
+     * @param docsPath        the directory of the snapshot to be indexed.
+     * @param extension       the extension of the files to be indexed.
+     * @param charsetName     the name of the charset used for encoding documents.
+     * @param dpCls           the class of the {@code DocumentParser} to be used.
+     * @throws NullPointerException     if any of the parameters is {@code null}.
+     * @throws IllegalArgumentException if any of the parameters assumes invalid values.
+     */
+    public SnapshotIndexer(final Analyzer analyzer, final Similarity similarity, final int ramBufferSizeMB,
+                           final String indexPath, final String docsPath, final String extension,
+                           final String charsetName, final Class<? extends DocumentParser> dpCls) {
+
+        if (dpCls == null) {
+            throw new NullPointerException("Document parser class cannot be null.");
+        }
+
+        this.dpCls = dpCls;
+
+        if (analyzer == null) {
+            throw new NullPointerException("Analyzer cannot be null.");
+        }
+
+        if (similarity == null) {
+            throw new NullPointerException("Similarity cannot be null.");
+        }
+
+        if (ramBufferSizeMB <= 0) {
+            throw new IllegalArgumentException("RAM buffer size cannot be less than or equal to zero.");
+        }
+
+        final IndexWriterConfig iwc = new IndexWriterConfig(analyzer);
+        iwc.setSimilarity(similarity);
+        iwc.setRAMBufferSizeMB(ramBufferSizeMB);
+        iwc.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        iwc.setCommitOnClose(true);
+        iwc.setUseCompoundFile(true);
+
+        if (indexPath == null) {
+            throw new NullPointerException("Index path cannot be null.");
+        }
+
+        if (indexPath.isEmpty()) {
+            throw new IllegalArgumentException("Index path cannot be empty.");
+        }
+
+        final Path indexDir = Paths.get(indexPath);
+
+        // if the directory does not already exist, create it
+        if (Files.notExists(indexDir)) {
+            try {
+                Files.createDirectory(indexDir);
+            } catch (Exception e) {
+                throw new IllegalArgumentException(
+                        String.format("Unable to create directory %s: %s.", indexDir.toAbsolutePath().toString(),
+                                      e.getMessage()), e);
+            }
+        }
+
+        if (!Files.isWritable(indexDir)) {
+            throw new IllegalArgumentException(
+                    String.format("Index directory %s cannot be written.", indexDir.toAbsolutePath().toString()));
+        }
+
+        if (docsPath == null) {
+            throw new NullPointerException("Documents path cannot be null.");
+        }
+
+        if (docsPath.isEmpty()) {
+            throw new IllegalArgumentException("Documents path cannot be empty.");
+        }
+
+        docsDir = Paths.get(docsPath);
+        if (!Files.isReadable(docsDir) || !Files.isDirectory(docsDir)) {
+            throw new IllegalArgumentException(
+                    String.format("Documents directory %s cannot be read.", docsDir.toAbsolutePath().toString()));
+        }
+
+        if (extension == null) {
+            throw new NullPointerException("File extension cannot be null.");
+        }
+
+        if (extension.isEmpty()) {
+            throw new IllegalArgumentException("File extension cannot be empty.");
+        }
+        this.extension = extension;
+
+        if (charsetName == null) {
+            throw new NullPointerException("Charset name cannot be null.");
+        }
+
+        try {
+            cs = Charset.forName(charsetName);
+        } catch (Exception e) {
+            throw new IllegalArgumentException(
+                    String.format("Unable to create the charset %s: %s.", charsetName, e.getMessage()), e);
+        }
+
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+
+        try {
+            writer = new IndexWriter(FSDirectory.open(indexDir), iwc);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(String.format("Unable to create the index writer in directory %s: %s.",
+                                                             indexDir.toAbsolutePath().toString(), e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Indexes the snapshot, adding, replacing and deleting only the documents which changed since the last one.
+     *
+     * @throws IllegalStateException if the index has been built without the doc values of the identifiers; it is
+     *                               left untouched.
+     * @throws IOException           if something goes wrong while indexing.
+     */
+    public void index() throws IOException {
+
+        System.out.printf("%n#### Start indexing snapshot %s ####%n", docsDir.toAbsolutePath());
+
+        final long start = System.currentTimeMillis();
+
+        try {
+            for (Map.Entry<String, String> e : writer.getLiveCommitData()) {
+                if (SNAPSHOT.equals(e.getKey())) {
+                    System.out.printf("Previous snapshot: %s.%n", e.getValue());
+                }
+            }
+
+            final Map<String, Long> previous = loadFingerprints();
+
+            System.out.printf("%d fingerprint(s) loaded in %d seconds.%n", previous.size(),
+                              (System.currentTimeMillis() - start) / 1000);
+
+            Files.walkFileTree(docsDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (file.getFileName().toString().endsWith(extension)) {
+                        for (ParsedDocument pd : DocumentParser.create(dpCls, file, cs)) {
+                            index(pd, previous);
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+
+            // what is left was not in the snapshot
+            for (String id : previous.keySet()) {
+                writer.deleteDocuments(new Term(ParsedDocument.FIELDS.ID, id));
+                deleted++;
+            }
+
+            writer.setLiveCommitData(Map.of(SNAPSHOT, docsDir.toAbsolutePath().toString()).entrySet());
+
+            writer.commit();
+
+        } catch (IOException | RuntimeException e) {
+            writer.rollback();
+            throw e;
+        }
+
+        final long docs = writer.getDocStats().numDocs;
+
+        writer.close();
+
+        final long touched = added + changed + deleted;
+
+        System.out.printf(
+                "%d document(s) added, %d replaced, %d deleted and %d unchanged (%.2f%% churn) in %d seconds.%n",
+                added, changed, deleted, unchanged, 100.0 * touched / Math.max(1, touched + unchanged),
+                (System.currentTimeMillis() - start) / 1000);
+
+        System.out.printf("%d document(s) in the index.%n", docs);
+
+        System.out.printf("#### Indexing snapshot complete ####%n");
+    }
+
+    /**
+     * Returns the number of documents added by the last snapshot indexed.
+     *
+     * @return the number of documents added.
+     */
+    public long getAdded() {
+        return added;
+    }
+
+    /**
+     * Returns the number of documents replaced by the last snapshot indexed.
+     *
+     * @return the number of documents replaced.
+     */
+    public long getChanged() {
+        return changed;
+    }
+
+    /**
+     * Returns the number of documents left unchanged by the last snapshot indexed.
+     *
+     * @return the number of documents unchanged.
+     */
+    public long getUnchanged() {
+        return unchanged;
+    }
+
+    /**
+     * Returns the number of documents deleted by the last snapshot indexed.
+     *
+     * @return the number of documents deleted.
+     */
+    public long getDeleted() {
+        return deleted;
+    }
+
+    /**
+     * Indexes a document of the snapshot, unless it is unchanged.
+     *
+     * @param pd       the parsed document.
+     * @param previous the fingerprints of the documents in the index not yet seen in the snapshot, {@code null} for
+     *                 the documents indexed without one; the document is removed from it.
+     * @throws IOException if something goes wrong while indexing the document.
+     */
+    private void index(final ParsedDocument pd, final Map<String, Long> previous) throws IOException {
+
+        final String id = pd.getIdentifier();
+        final long fingerprint = fingerprint(pd);
+
+        if (!previous.containsKey(id)) {
+            writer.addDocument(toDocument(pd, fingerprint));
+            added++;
+        } else {
+            final Long old = previous.remove(id);
+
+            if (old != null && old == fingerprint) {
+                unchanged++;
+            } else {
+                writer.updateDocument(new Term(ParsedDocument.FIELDS.ID, id), toDocument(pd, fingerprint));
+                changed++;
+            }
+        }
+
+        final long count = added + changed + unchanged;
+
+        if (count % 10000 == 0) {
+            System.out.printf("%d document(s) read: %d added, %d replaced, %d unchanged.%n", count, added, changed,
+                              unchanged);
+        }
+    }
+
+    /**
+     * Creates the Lucene {@code Document} to be indexed for the given parsed document, with its fingerprint.
+     *
+     * @param pd          the parsed document.
+     * @param fingerprint the fingerprint of the body of the document.
+     * @return the document to be added to the index.
+     */
+    private static Document toDocument(final ParsedDocument pd, final long fingerprint) {
+
+        final Document doc = DirectoryIndexer.toDocument(pd, false);
+
+        doc.add(new NumericDocValuesField(FINGERPRINT, fingerprint));
+
+        return doc;
+    }
+
+    /**
+     * Loads the fingerprints of the documents in the index.
+     * <p>
+     * Documents are found through the postings of their identifier, the same ones used to replace and delete them, so
+     * that no document is missed whatever its doc values.
+     *
+     * @return the fingerprint of each document in the index by identifier, {@code null} for the documents indexed
+     * without one.
+     * @throws IllegalStateException if the index has been built without the doc values of the identifiers.
+     * @throws IOException           if something goes wrong while reading the index.
+     */
+    private Map<String, Long> loadFingerprints() throws IOException {
+
+        final Map<String, Long> fingerprints = new HashMap<>();
+
+        try (DirectoryReader reader = DirectoryReader.open(writer)) {
+
+            // the documents to add carry the doc values, which cannot be added to a field indexed without them
+            final FieldInfo fi = FieldInfos.getMergedFieldInfos(reader).fieldInfo(ParsedDocument.FIELDS.ID);
+
+            if (fi != null && fi.getDocValuesType() != DocValuesType.SORTED) {
+                throw new IllegalStateException(String.format(
+                        "Unable to update index %s: its identifiers have no sorted doc values, rebuild it from scratch.",
+                        ((FSDirectory) writer.getDirectory()).getDirectory().toAbsolutePath().toString()));
+            }
+
+            for (LeafReaderContext ctx : reader.leaves()) {
+
+                final LeafReader leaf = ctx.reader();
+                final Terms terms = leaf.terms(ParsedDocument.FIELDS.ID);
+
+                if (terms == null) {
+                    continue;
+                }
+
+                final Bits live = leaf.getLiveDocs();
+
+                // postings come in identifier order, while doc values must be read in document order
+                final String[] ids = new String[leaf.maxDoc()];
+
+                final TermsEnum te = terms.iterator();
+                PostingsEnum pe = null;
+
+                for (BytesRef term = te.next(); term != null; term = te.next()) {
+
+                    pe = te.postings(pe, PostingsEnum.NONE);
+
+                    for (int doc = pe.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = pe.nextDoc()) {
+                        if (live == null || live.get(doc)) {
+                            ids[doc] = term.utf8ToString();
+                        }
+                    }
+                }
+
+                final NumericDocValues fps = DocValues.getNumeric(leaf, FINGERPRINT);
+
+                for (int doc = 0; doc < ids.length; doc++) {
+                    if (ids[doc] != null) {
+                        fingerprints.put(ids[doc], fps.advanceExact(doc) ? fps.longValue() : null);
+                    }
+                }
+            }
+        }
+
+        return fingerprints;
+    }
+
+    /**
+     * Returns the fingerprint of the body of a document: the first eight bytes of the SHA-256 digest of its
+     * characters.
+     *
+     * @param pd the parsed document.
+     * @return the fingerprint of the body of the document.
+     * @throws IOException if the body of the document cannot be read.
+     */
+    private long fingerprint(final ParsedDocument pd) throws IOException {
+
+        digest.reset();
+
+        try (Reader in = pd.getBodyReader()) {
+            for (int n = in.read(chars); n >= 0; n = in.read(chars)) {
+
+                bytes.clear();
+                for (int i = 0; i < n; i++) {
+                    bytes.putChar(chars[i]);
+                }
+
+                digest.update(bytes.array(), 0, bytes.position());
+            }
+        }
+
+        return ByteBuffer.wrap(digest.digest()).getLong();
+    }
+
+    /**
+     * Main method of the class. Just for testing purposes.
+     *
+     * @param args command line arguments: the directory of the index and the one of the snapshot. Both are required,
+     *             since the index is updated in place.
+     * @throws Exception if something goes wrong while indexing.
+     */
+    public static void main(String[] args) throws Exception {
+
+        // no default index: updating the one of the experiments by mistake would lose it
+        if (args.length != 2) {
+            System.out.println("Usage must be: SnapshotIndexer <path-to-index-folder> <path-to-snapshot-documents-folder>");
+            System.out.println("NOTE THAT the index is updated in place: pass a copy to keep the original one.");
+            return;
+        }
+
+        final String indexPath = args[0];
+        final String docsPath = args[1];
+
+        final SnapshotIndexer i = new SnapshotIndexer(new MyFrenchAnalyzer(), new BM25Similarity(0.95f, 0.77f), 256,
+                                                      indexPath, docsPath, "txt", StandardCharsets.UTF_8.name(),
+                                                      LongEvalParser.class);
+
+        i.index();
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ *  Copyright 2021-2022 University of Padua, Italy
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unipd.dei.dards.parse;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * A {@code Reader} which decodes the bytes of a {@code ByteBuffer}, e.g. a slice of a memory-mapped file, a chunk at a
+ * time.
+ *
+ * @author DARDS
+ * @version 1.00
+ * @since 1.00
+ */
+public class ByteBufferReader extends Reader {
+
+    /**
+     * The size of the buffer for the decoded characters.
+     */
+    private static final int BUFFER_SIZE = 1024;
+
+    /**
+     * The bytes to be decoded.
+     */
+    private final ByteBuffer in;
+
+    /**
+     * The decoder for the bytes.
+     */
+    private final CharsetDecoder decoder;
+
+    /**
+     * The decoded characters not yet read.
+     */
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+    /**
+     * Indicates whether the decoder has been flushed, i.e. all the bytes have been decoded.
+     */
+    private boolean flushed = false;
+
+    /**
+     * Creates a new reader.
+     *
+     * @param in the bytes to be decoded.
+     * @param cs the charset used for encoding the bytes.
+     * @throws NullPointerException if {@code in} and/or {@code cs} are {@code null}.
+     */
+    public ByteBufferReader(final ByteBuffer in, final Charset cs) {
+
+        if (in == null) {
+            throw new NullPointerException("Byte buffer cannot be null.");
+        }
+
+        if (cs == null) {
+            throw new NullPointerException("Charset cannot be null.");
+        }
+
+        this.in = in;
+
+        decoder = cs.newDecoder().onMalformedInput(CodingErrorAction.REPORT).onUnmappableCharacter(
+                CodingErrorAction.REPORT);
+
+        chars.flip();
+    }
+
+    @Override
+    public int read(final char[] cbuf, final int off, final int len) throws IOException {
+
+        if (len == 0) {
+            return 0;
+        }
+
+        if (!chars.hasRemaining()) {
+
+            if (flushed) {
+                return -1;
+            }
+
+            chars.clear();
+
+            CoderResult r = decoder.decode(in, chars, true);
+            if (r.isError()) {
+                r.throwException();
+            }
+
+            if (!in.hasRemaining()) {
+                r = decoder.flush(chars);
+                if (r.isError()) {
+                    r.throwException();
+                }
+                flushed = !r.isOverflow();
+            }
+
+            chars.flip();
+
+            if (!chars.hasRemaining()) {
+                return -1;
+            }
+        }
+
+        final int n = Math.min(len, chars.remaining());
+        chars.get(cbuf, off, n);
+
+        return n;
+    }
+
+    @Override
+    public void close() {
+        // nothing to release: the bytes are owned by the caller
+    }
+
+}
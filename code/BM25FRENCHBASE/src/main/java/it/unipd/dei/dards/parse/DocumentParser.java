@@ -18,6 +18,11 @@ package it.unipd.dei.dards.parse;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -57,6 +62,14 @@ public abstract class DocumentParser
         this.in = in;
     }
 
+    /**
+     * Creates a new document parser which does not read its document(s) through a {@code Reader}, e.g. because it
+     * accesses the file directly.
+     */
+    protected DocumentParser() {
+        this.in = Reader.nullReader();
+    }
+
 
     @Override
     public final Iterator<it.unipd.dei.dards.parse.ParsedDocument> iterator() {
@@ -152,6 +165,94 @@ public abstract class DocumentParser
 
     }
 
+    /**
+     * Creates a new {@code DocumentParser} for the given file.
+     * <p>
+     * If the {@code DocumentParser} has a two-parameters constructor which takes the {@code Path} of the file and its
+     * {@code Charset} as input, it is used to let the parser access the file directly; otherwise, the parser is
+     * created with a {@code Reader} to the file as in {@link #create(Class, Reader)}.
+     *
+     * @param cls  the class of the document parser to be instantiated.
+     * @param file the file containing the document(s) to be parsed.
+     * @param cs   the charset used for encoding the file.
+     * @return a new instance of {@code DocumentParser} for the given class.
+     * @throws NullPointerException  if any of the parameters is {@code null}.
+     * @throws IllegalStateException if something goes wrong in instantiating the class.
+     * @throws IOException           if the file cannot be opened.
+     */
+    public static final DocumentParser create(Class<? extends DocumentParser> cls, Path file, Charset cs)
+            throws IOException {
+
+        if (cls == null) {
+            throw new NullPointerException("Document parser class cannot be null.");
+        }
+
+        if (file == null) {
+            throw new NullPointerException("File cannot be null.");
+        }
+
+        if (cs == null) {
+            throw new NullPointerException("Charset cannot be null.");
+        }
+
+        try {
+            return cls.getConstructor(Path.class, Charset.class).newInstance(file, cs);
+        } catch (NoSuchMethodException e) {
+            return create(cls, Files.newBufferedReader(file, cs));
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(String.format("Unable to instantiate document parser %s.", cls.getName()),
+                                            e.getCause());
+        } catch (Exception e) {
+            throw new IllegalStateException(String.format("Unable to instantiate document parser %s.", cls.getName()),
+                                            e);
+        }
+    }
+
+    /**
+     * Creates a new {@code DocumentParser} for the contents of a file already read.
+     * <p>
+     * If the {@code DocumentParser} has a two-parameters constructor which takes a {@code ByteBuffer} with the contents
+     * and their {@code Charset} as input, it is used to let the parser work on the bytes directly; otherwise, the
+     * parser is created with a {@code Reader} decoding the contents as in {@link #create(Class, Reader)}.
+     *
+     * @param cls      the class of the document parser to be instantiated.
+     * @param contents the contents of the file containing the document(s) to be parsed, which must not be modified
+     *                 while parsing.
+     * @param cs       the charset used for encoding the file.
+     * @return a new instance of {@code DocumentParser} for the given class.
+     * @throws NullPointerException  if any of the parameters is {@code null}.
+     * @throws IllegalStateException if something goes wrong in instantiating the class.
+     */
+    public static final DocumentParser create(Class<? extends DocumentParser> cls, ByteBuffer contents, Charset cs) {
+
+        if (cls == null) {
+            throw new NullPointerException("Document parser class cannot be null.");
+        }
+
+        if (contents == null) {
+            throw new NullPointerException("File contents cannot be null.");
+        }
+
+        if (cs == null) {
+            throw new NullPointerException("Charset cannot be null.");
+        }
+
+        try {
+            return cls.getConstructor(ByteBuffer.class, Charset.class).newInstance(contents, cs);
+        } catch (NoSuchMethodException e) {
+            return create(cls, new ByteBufferReader(contents, cs));
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(String.format("Unable to instantiate document parser %s.", cls.getName()),
+                                            e.getCause());
+        } catch (Exception e) {
+            throw new IllegalStateException(String.format("Unable to instantiate document parser %s.", cls.getName()),
+                                            e);
+        }
+    }
+
     /**
      * Performs the actual parsing of the document.
      *
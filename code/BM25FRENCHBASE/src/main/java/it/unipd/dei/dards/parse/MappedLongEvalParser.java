@@ -0,0 +1,515 @@
+/*
+ *  Copyright 2021-2022 University of Padua, Italy
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unipd.dei.dards.parse;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Provides a parser for the LongEval corpus which memory-maps the whole file and looks for the {@code <DOC>},
+ * {@code </DOC>} and {@code <DOCNO>} boundaries directly on its bytes.
+ * <p>
+ * Only the bytes of each document are decoded, into buffers reused across documents, and markup tags are stripped
+ * while copying the decoded characters, so that the body {@code String} is the only per-document allocation besides
+ * the identifier. It produces the same documents as {@link LongEvalParser}, but it must be created with
+ * {@link DocumentParser#create(Class, Path, Charset)} or {@link DocumentParser#create(Class, ByteBuffer, Charset)} and
+ * it requires a charset where markup characters are encoded as single ASCII bytes, e.g. UTF-8.
+ *
+ * @author DARDS
+ * @version 1.00
+ * @since 1.00
+ */
+public class MappedLongEvalParser extends DocumentParser {
+
+    /**
+     * The initial size of the buffers for the body element.
+     */
+    private static final int BODY_SIZE = 1024 * 8;
+
+    /**
+     * The tag starting a document.
+     */
+    private static final byte[] DOC_START = "<DOC>".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The tag ending a document.
+     */
+    private static final byte[] DOC_END = "</DOC>".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The tag starting the document identifier.
+     */
+    private static final byte[] DOCNO = "<DOCNO>".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The memory-mapped file.
+     */
+    protected final ByteBuffer buf;
+
+    /**
+     * The charset used for encoding the file.
+     */
+    protected final Charset cs;
+
+    /**
+     * The decoder for the bytes of the documents.
+     */
+    private final CharsetDecoder decoder;
+
+    /**
+     * The decoded characters of the current document.
+     */
+    private CharBuffer chars = CharBuffer.allocate(BODY_SIZE);
+
+    /**
+     * The characters of the body of the current document, without markup tags.
+     */
+    private char[] body = new char[BODY_SIZE];
+
+    /**
+     * The position in the file where to start looking for the next document.
+     */
+    private int pos = 0;
+
+    /**
+     * Indicates whether {@link #document} has been parsed but not yet returned.
+     */
+    private boolean pending = false;
+
+    /**
+     * The currently parsed document
+     */
+    private ParsedDocument document = null;
+
+
+    /**
+     * Creates a new LongEval Corpus document parser.
+     *
+     * @param file the file containing the document(s) to be parsed.
+     * @param cs   the charset used for encoding the file.
+     * @throws NullPointerException     if {@code file} and/or {@code cs} are {@code null}.
+     * @throws IllegalArgumentException if the file is too large to be mapped.
+     * @throws IOException              if the file cannot be mapped.
+     */
+    public MappedLongEvalParser(final Path file, final Charset cs) throws IOException {
+        this(map(file), cs);
+    }
+
+    /**
+     * Creates a new LongEval Corpus document parser over the contents of a file already read, e.g. by the reading stage
+     * of {@code DirectoryIndexer}.
+     *
+     * @param contents the contents of the file, from its position to its limit, which must not be modified while
+     *                 parsing.
+     * @param cs       the charset used for encoding the file.
+     * @throws NullPointerException if {@code contents} and/or {@code cs} are {@code null}.
+     */
+    public MappedLongEvalParser(final ByteBuffer contents, final Charset cs) {
+
+        if (contents == null) {
+            throw new NullPointerException("File contents cannot be null.");
+        }
+
+        if (cs == null) {
+            throw new NullPointerException("Charset cannot be null.");
+        }
+
+        // documents are looked for by absolute positions, starting from zero
+        buf = contents.slice();
+
+        this.cs = cs;
+
+        decoder = cs.newDecoder().onMalformedInput(CodingErrorAction.REPORT).onUnmappableCharacter(
+                CodingErrorAction.REPORT);
+    }
+
+
+    /**
+     * Memory-maps a file.
+     *
+     * @param file the file to be mapped.
+     * @return the mapped file.
+     * @throws NullPointerException     if {@code file} is {@code null}.
+     * @throws IllegalArgumentException if the file is too large to be mapped.
+     * @throws IOException              if the file cannot be mapped.
+     */
+    private static ByteBuffer map(final Path file) throws IOException {
+
+        if (file == null) {
+            throw new NullPointerException("File cannot be null.");
+        }
+
+        // the mapping stays valid after the channel is closed
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+
+            if (ch.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(
+                        String.format("File %s is too large to be mapped.", file.toAbsolutePath().toString()));
+            }
+
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+
+        if (pending) {
+            return true;
+        }
+
+        if (!next) {
+            return false;
+        }
+
+        final int limit = buf.limit();
+
+        int docStart = -1;
+        String id = null;
+
+        while (pos < limit) {
+
+            final int lineStart = pos;
+            int lineEnd = lineStart;
+
+            while (lineEnd < limit && buf.get(lineEnd) != '\n' && buf.get(lineEnd) != '\r') {
+                lineEnd++;
+            }
+
+            // skip the line terminator, either \n, \r or \r\n as BufferedReader#readLine does
+            pos = lineEnd + 1;
+            if (lineEnd < limit && buf.get(lineEnd) == '\r' && pos < limit && buf.get(pos) == '\n') {
+                pos++;
+            }
+
+            if (docStart < 0) {
+                if (startsWith(lineStart, lineEnd, DOC_START)) {
+                    docStart = lineStart;
+                } else {
+                    continue;
+                }
+            }
+
+            if (startsWith(lineStart, lineEnd, DOC_END)) {
+
+                // a document without identifier cannot be indexed: look for the next one
+                if (id == null) {
+                    docStart = -1;
+                    continue;
+                }
+
+                document = createDocument(id, docStart, lineEnd);
+                pending = true;
+
+                return true;
+            }
+
+            final String lineId = parseIdentifier(lineStart, lineEnd);
+            if (lineId != null) {
+                id = lineId;
+            }
+        }
+
+        next = false;
+
+        return false;
+    }
+
+    @Override
+    protected final ParsedDocument parse() {
+
+        if (!hasNext()) {
+            throw new IllegalStateException("No more documents to parse.");
+        }
+
+        final ParsedDocument current = document;
+
+        pending = false;
+
+        // let the caller know whether there are more documents, so that the parser can be closed
+        hasNext();
+
+        return current;
+    }
+
+    /**
+     * Creates the parsed document for the given bytes of the file.
+     *
+     * @param id    the document identifier.
+     * @param start the start of the document, i.e. of its {@code <DOC>} line.
+     * @param end   the end of the document, i.e. of its {@code </DOC>} line, exclusive.
+     * @return the parsed document.
+     */
+    protected ParsedDocument createDocument(final String id, final int start, final int end) {
+
+        final int n = decodeBody(start, end);
+
+        return new ParsedDocument(id, n > 0 ? new String(body, 0, n) : "#");
+    }
+
+    /**
+     * Checks whether the given line starts with the given tag.
+     *
+     * @param start the start of the line.
+     * @param end   the end of the line, exclusive.
+     * @param tag   the tag to look for.
+     * @return {@code true} if the line starts with the tag.
+     */
+    private boolean startsWith(final int start, final int end, final byte[] tag) {
+
+        if (end - start < tag.length) {
+            return false;
+        }
+
+        for (int i = 0; i < tag.length; i++) {
+            if (buf.get(start + i) != tag[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Looks for the document identifier in the given line, i.e. the first non-blank token following {@code <DOCNO>}
+     * and followed by another tag.
+     *
+     * @param start the start of the line.
+     * @param end   the end of the line, exclusive.
+     * @return the document identifier, or {@code null} if the line does not contain it.
+     */
+    private String parseIdentifier(final int start, final int end) {
+
+        for (int i = start, last = end - DOCNO.length; i <= last; i++) {
+
+            if (!startsWith(i, end, DOCNO)) {
+                continue;
+            }
+
+            int idStart = i + DOCNO.length;
+            while (idStart < end && isBlank(buf.get(idStart))) {
+                idStart++;
+            }
+
+            int idEnd = idStart;
+            while (idEnd < end && !isBlank(buf.get(idEnd)) && buf.get(idEnd) != '<') {
+                idEnd++;
+            }
+
+            int tag = idEnd;
+            while (tag < end && isBlank(buf.get(tag))) {
+                tag++;
+            }
+
+            if (idEnd == idStart || tag == end || buf.get(tag) != '<') {
+                return null;
+            }
+
+            final byte[] id = new byte[idEnd - idStart];
+            buf.get(idStart, id);
+
+            return new String(id, cs);
+        }
+
+        return null;
+    }
+
+    /**
+     * Checks whether the given byte is a blank character, as {@code \s} in regular expressions.
+     *
+     * @param b the byte to check.
+     * @return {@code true} if the byte is a blank character.
+     */
+    private static boolean isBlank(final byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+    }
+
+    /**
+     * Decodes the given document into {@link #body}, replacing markup tags and line terminators with spaces.
+     *
+     * @param start the start of the document.
+     * @param end   the end of the document, exclusive.
+     * @return the number of characters of the body.
+     */
+    private int decodeBody(final int start, final int end) {
+
+        final int size = (int) Math.ceil((end - start) * (double) decoder.maxCharsPerByte());
+
+        if (chars.capacity() < size) {
+            chars = CharBuffer.allocate(size);
+        }
+
+        if (body.length < size) {
+            body = new char[size];
+        }
+
+        chars.clear();
+        decoder.reset();
+
+        try {
+            final ByteBuffer in = buf.slice(start, end - start);
+
+            CoderResult r = decoder.decode(in, chars, true);
+            if (r.isError()) {
+                r.throwException();
+            }
+
+            r = decoder.flush(chars);
+            if (r.isError()) {
+                r.throwException();
+            }
+        } catch (CharacterCodingException e) {
+            throw new IllegalStateException("Unable to parse the document.", e);
+        }
+
+        final char[] c = chars.array();
+        final int len = chars.position();
+
+        // position of the next '>', used to know whether a '<' opens a tag; len when there are no more '>'
+        int gt = -1;
+        int n = 0;
+
+        for (int i = 0; i < len; i++) {
+
+            char ch = c[i];
+
+            if (ch == '<') {
+                if (gt < i) {
+                    gt = i + 1;
+                    while (gt < len && c[gt] != '>') {
+                        gt++;
+                    }
+                }
+
+                if (gt < len) {
+                    // the whole tag, line terminators included, becomes a single space
+                    body[n++] = ' ';
+                    i = gt;
+                    continue;
+                }
+            } else if (ch == '\r') {
+                if (i + 1 < len && c[i + 1] == '\n') {
+                    i++;
+                }
+                ch = ' ';
+            } else if (ch == '\n') {
+                ch = ' ';
+            }
+
+            body[n++] = ch;
+        }
+
+        return n;
+    }
+
+
+    /**
+     * Main method of the class. Compares the throughput and the allocated memory of this parser with those of
+     * {@link LongEvalParser} and {@link StreamingLongEvalParser}, reading the body of every document through
+     * {@link ParsedDocument#getBodyReader()}.
+     * <p>
+     * Each parser parses all the files in the given directory for a number of warm-up rounds, to let the JIT compile
+     * it, and then for a number of measured rounds, whose average figures are reported.
+     *
+     * @param args command line arguments: the documents directory, the number of warm-up rounds and the number of
+     *             measured rounds.
+     * @throws Exception if something goes wrong while parsing.
+     */
+    public static void main(String[] args) throws Exception {
+
+        final Path docsDir = Paths.get(args.length > 0 ? args[0] : "./input/French/Documents/Trec");
+        final int warmup = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        final int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        final List<Path> files;
+        try (Stream<Path> s = Files.walk(docsDir)) {
+            files = s.filter(f -> f.getFileName().toString().endsWith("txt")).sorted().collect(Collectors.toList());
+        }
+
+        long bytes = 0;
+        for (Path f : files) {
+            bytes += Files.size(f);
+        }
+
+        final com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        System.out.printf("%d file(s), %d Mbytes, %d warm-up and %d measured round(s).%n", files.size(),
+                          bytes / (1024 * 1024), warmup, rounds);
+
+        final char[] cbuf = new char[1024];
+
+        for (Class<? extends DocumentParser> cls : List.of(LongEvalParser.class, MappedLongEvalParser.class,
+                                                           StreamingLongEvalParser.class)) {
+
+            long docs = 0;
+            long chars = 0;
+            long time = 0;
+            long allocated = 0;
+
+            for (int r = 0; r < warmup + rounds; r++) {
+
+                final long startAllocated = mx.getCurrentThreadAllocatedBytes();
+                final long start = System.nanoTime();
+
+                docs = 0;
+                chars = 0;
+
+                for (Path f : files) {
+                    for (ParsedDocument d : DocumentParser.create(cls, f, StandardCharsets.UTF_8)) {
+                        docs++;
+                        try (Reader in = d.getBodyReader()) {
+                            for (int n = in.read(cbuf); n >= 0; n = in.read(cbuf)) {
+                                chars += n;
+                            }
+                        }
+                    }
+                }
+
+                if (r >= warmup) {
+                    time += System.nanoTime() - start;
+                    allocated += mx.getCurrentThreadAllocatedBytes() - startAllocated;
+                }
+            }
+
+            final double seconds = time / 1e9 / rounds;
+
+            System.out.printf(
+                    "%-24s %d document(s), %d body chars: %.3f s/round, %.0f docs/s, %.2f Mbytes/s, %.1f Kbytes allocated/doc%n",
+                    cls.getSimpleName(), docs, chars, seconds, docs / seconds, bytes / (1024.0 * 1024.0) / seconds,
+                    allocated / 1024.0 / rounds / docs);
+        }
+
+    }
+
+}
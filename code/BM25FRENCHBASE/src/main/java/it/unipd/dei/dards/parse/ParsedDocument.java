@@ -20,6 +20,12 @@ import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 import org.apache.lucene.document.Field;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.function.Supplier;
+
 /**
  * Represents a parsed document to be indexed.
  *
@@ -56,10 +62,15 @@ public class ParsedDocument {
     private final String id;
 
     /**
-     * The body of the document.
+     * The body of the document, {@code null} if the body is streamed from {@link #bodySource}.
      */
     private final String body;
 
+    /**
+     * The source of readers over the body of the document, {@code null} if the body is kept in {@link #body}.
+     */
+    private final Supplier<Reader> bodySource;
+
     /**
      * Creates a new parsed document
      *
@@ -89,6 +100,36 @@ public class ParsedDocument {
         }
 
         this.body = body;
+        this.bodySource = null;
+    }
+
+    /**
+     * Creates a new parsed document whose body is not kept in memory but streamed from its source, e.g. a slice of a
+     * memory-mapped file, every time it is needed.
+     *
+     * @param id         the unique document identifier.
+     * @param bodySource the source of readers over the body of the document, each one reading it from its beginning.
+     * @throws NullPointerException  if {@code id} and/or {@code bodySource} are {@code null}.
+     * @throws IllegalStateException if {@code id} is empty.
+     */
+    public ParsedDocument(final String id, final Supplier<Reader> bodySource) {
+
+        if (id == null) {
+            throw new NullPointerException("Document identifier cannot be null.");
+        }
+
+        if (id.isEmpty()) {
+            throw new IllegalStateException("Document identifier cannot be empty.");
+        }
+
+        this.id = id;
+
+        if (bodySource == null) {
+            throw new NullPointerException("Document body source cannot be null.");
+        }
+
+        this.body = null;
+        this.bodySource = bodySource;
     }
 
     /**
@@ -102,18 +143,56 @@ public class ParsedDocument {
 
     /**
      * Returns the body of the document.
+     * <p>
+     * If the body is streamed, it is read in full into a new {@code String}: use {@link #getBodyReader()} to avoid
+     * it.
      *
      * @return the body of the document.
+     * @throws UncheckedIOException if the streamed body cannot be read.
      */
     public String getBody() {
-        return body;
+
+        if (body != null) {
+            return body;
+        }
+
+        final StringBuilder sb = new StringBuilder();
+
+        try (Reader in = bodySource.get()) {
+            final char[] buf = new char[1024];
+            for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+                sb.append(buf, 0, n);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Unable to read the body of document %s.", id), e);
+        }
+
+        return sb.length() > 0 ? sb.toString() : "#";
+    }
+
+    /**
+     * Returns a new reader over the body of the document.
+     *
+     * @return a new reader over the body of the document.
+     */
+    public Reader getBodyReader() {
+        return body != null ? new StringReader(body) : bodySource.get();
+    }
+
+    /**
+     * Indicates whether the body of the document is streamed from its source instead of being kept in memory.
+     *
+     * @return {@code true} if the body of the document is streamed.
+     */
+    public boolean isStreamed() {
+        return bodySource != null;
     }
 
 
     @Override
     public final String toString() {
         ToStringBuilder tsb = new ToStringBuilder(this, ToStringStyle.MULTI_LINE_STYLE).append("identifier", id).append(
-                "body", body);
+                "body", getBody());
 
         return tsb.toString();
     }
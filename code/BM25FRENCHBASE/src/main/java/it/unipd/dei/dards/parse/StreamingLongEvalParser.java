@@ -0,0 +1,71 @@
+/*
+ *  Copyright 2021-2022 University of Padua, Italy
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unipd.dei.dards.parse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+
+/**
+ * Provides a parser for the LongEval corpus which, like {@link MappedLongEvalParser}, memory-maps the whole file, but
+ * never materializes the body of the documents.
+ * <p>
+ * Each {@link ParsedDocument} streams its body from the mapped bytes through a {@link TagStripCharFilter}, so that the
+ * analyzer reads it directly from the file, a chunk at a time, with no per-document copy of the text.
+ *
+ * @author DARDS
+ * @version 1.00
+ * @since 1.00
+ */
+public class StreamingLongEvalParser extends MappedLongEvalParser {
+
+    /**
+     * Creates a new LongEval Corpus document parser.
+     *
+     * @param file the file containing the document(s) to be parsed.
+     * @param cs   the charset used for encoding the file.
+     * @throws NullPointerException     if {@code file} and/or {@code cs} are {@code null}.
+     * @throws IllegalArgumentException if the file is too large to be mapped.
+     * @throws IOException              if the file cannot be mapped.
+     */
+    public StreamingLongEvalParser(final Path file, final Charset cs) throws IOException {
+        super(file, cs);
+    }
+
+    /**
+     * Creates a new LongEval Corpus document parser over the contents of a file already read.
+     *
+     * @param contents the contents of the file, from its position to its limit, which must not be modified until the
+     *                 bodies of its documents have been read.
+     * @param cs       the charset used for encoding the file.
+     * @throws NullPointerException if {@code contents} and/or {@code cs} are {@code null}.
+     */
+    public StreamingLongEvalParser(final ByteBuffer contents, final Charset cs) {
+        super(contents, cs);
+    }
+
+    @Override
+    protected ParsedDocument createDocument(final String id, final int start, final int end) {
+
+        // the slice is read-only and independent of the parser position, so it can be read at any time
+        final ByteBuffer slice = buf.slice(start, end - start);
+
+        return new ParsedDocument(id, () -> new TagStripCharFilter(new ByteBufferReader(slice.duplicate(), cs)));
+    }
+
+}
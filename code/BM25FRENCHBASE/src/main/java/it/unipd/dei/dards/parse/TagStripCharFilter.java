@@ -0,0 +1,276 @@
+/*
+ *  Copyright 2021-2022 University of Padua, Italy
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unipd.dei.dards.parse;
+
+import org.apache.lucene.analysis.charfilter.BaseCharFilter;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A {@code CharFilter} which streams the body of a document replacing every markup tag, i.e. every match of
+ * {@code <[^>]*>}, and every line terminator with a single space.
+ * <p>
+ * It produces the same text as the {@code replaceAll("<[^>]*>", " ")} applied by {@link LongEvalParser} to the lines
+ * of a document joined with spaces, but without ever holding the whole body in memory: only the characters of the
+ * tag currently being skipped are buffered, up to {@link #MAX_TAG_LENGTH} of them. A {@code <} not closed within that
+ * many characters, as in malformed pages, is kept as text together with the characters following it, and tags are
+ * looked for again right after it; so the text differs from the one of the regular expression only for tags longer
+ * than that.
+ *
+ * @author DARDS
+ * @version 1.00
+ * @since 1.00
+ */
+public class TagStripCharFilter extends BaseCharFilter {
+
+    /**
+     * The size of the buffer for reading the input.
+     */
+    private static final int BUFFER_SIZE = 1024;
+
+    /**
+     * The maximum number of characters looked at, after a {@code <}, for its closing {@code >}.
+     */
+    static final int MAX_TAG_LENGTH = 8192;
+
+    /**
+     * The buffer for reading the input.
+     */
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    /**
+     * The position of the next character to be read from {@link #buffer}.
+     */
+    private int bufferPos = 0;
+
+    /**
+     * The number of characters in {@link #buffer}.
+     */
+    private int bufferLen = 0;
+
+    /**
+     * The characters following a {@code <} without a closing {@code >} within {@link #MAX_TAG_LENGTH} characters, to
+     * be returned as they are.
+     */
+    private final StringBuilder unclosed = new StringBuilder();
+
+    /**
+     * The position of the next character to be returned from {@link #unclosed}.
+     */
+    private int unclosedPos = 0;
+
+    /**
+     * Indicates whether the input has been read up to its end while looking for a closing {@code >}, so that no
+     * more tags can be found.
+     */
+    private boolean noMoreTags = false;
+
+    /**
+     * The number of characters returned so far.
+     */
+    private int outputPos = 0;
+
+    /**
+     * The difference between the number of characters read from the input and those returned so far.
+     */
+    private int diff = 0;
+
+    /**
+     * Creates a new tag-stripping filter.
+     *
+     * @param in the reader to the body to be filtered.
+     */
+    public TagStripCharFilter(final Reader in) {
+        super(in);
+    }
+
+    @Override
+    public int read(final char[] cbuf, final int off, final int len) throws IOException {
+
+        int n = 0;
+
+        while (n < len) {
+
+            final int c = nextOutput();
+
+            if (c < 0) {
+                break;
+            }
+
+            cbuf[off + n++] = (char) c;
+        }
+
+        return n == 0 && len > 0 ? -1 : n;
+    }
+
+    /**
+     * Returns the next filtered character.
+     *
+     * @return the next filtered character, or -1 at the end of the input.
+     * @throws IOException if something goes wrong while reading the input.
+     */
+    private int nextOutput() throws IOException {
+
+        final int c = nextRaw();
+
+        if (c < 0) {
+            return c;
+        }
+
+        if (c == '<' && !noMoreTags) {
+
+            // the characters still pending from a previous unclosed '<' are the first ones of this tag
+            unclosed.delete(0, unclosedPos);
+            unclosedPos = 0;
+
+            // the number of characters of the tag between '<' and '>'
+            int scanned = 0;
+
+            int t = -1;
+            while (scanned < MAX_TAG_LENGTH) {
+
+                if (scanned < unclosed.length()) {
+                    t = unclosed.charAt(scanned);
+                } else if ((t = nextInput()) >= 0) {
+                    unclosed.append((char) t);
+                } else {
+                    break;
+                }
+
+                if (t == '>') {
+                    break;
+                }
+
+                scanned++;
+            }
+
+            if (t == '>') {
+                // the whole tag, '<' and '>' included, becomes a single space
+                unclosedPos = scanned + 1;
+                return replace(scanned + 2);
+            }
+
+            // no closing '>' up to the end of the input: no more tags can be found
+            if (t < 0) {
+                noMoreTags = true;
+            }
+
+            // the '<' is kept and the following characters are returned as they are
+            outputPos++;
+            return c;
+        }
+
+        if (c == '\r') {
+            if (peekRaw() == '\n') {
+                nextRaw();
+                return replace(2);
+            }
+            return replace(1);
+        }
+
+        if (c == '\n') {
+            return replace(1);
+        }
+
+        outputPos++;
+
+        return c;
+    }
+
+    /**
+     * Returns a space replacing the given number of input characters and records the corresponding offset
+     * correction.
+     *
+     * @param length the number of replaced input characters.
+     * @return a space.
+     */
+    private int replace(final int length) {
+
+        outputPos++;
+
+        if (length > 1) {
+            diff += length - 1;
+            addOffCorrectMap(outputPos, diff);
+        }
+
+        return ' ';
+    }
+
+    /**
+     * Returns the next unfiltered character, either from a pending unclosed tag or from the input.
+     *
+     * @return the next unfiltered character, or -1 at the end of the input.
+     * @throws IOException if something goes wrong while reading the input.
+     */
+    private int nextRaw() throws IOException {
+
+        if (unclosedPos < unclosed.length()) {
+            return unclosed.charAt(unclosedPos++);
+        }
+
+        return nextInput();
+    }
+
+    /**
+     * Returns the next unfiltered character without consuming it.
+     *
+     * @return the next unfiltered character, or -1 at the end of the input.
+     * @throws IOException if something goes wrong while reading the input.
+     */
+    private int peekRaw() throws IOException {
+
+        if (unclosedPos < unclosed.length()) {
+            return unclosed.charAt(unclosedPos);
+        }
+
+        return fill() ? buffer[bufferPos] : -1;
+    }
+
+    /**
+     * Returns the next character of the input.
+     *
+     * @return the next character of the input, or -1 at its end.
+     * @throws IOException if something goes wrong while reading the input.
+     */
+    private int nextInput() throws IOException {
+        return fill() ? buffer[bufferPos++] : -1;
+    }
+
+    /**
+     * Reads more input if all the buffered characters have been consumed.
+     *
+     * @return {@code true} if there are characters to be consumed, {@code false} at the end of the input.
+     * @throws IOException if something goes wrong while reading the input.
+     */
+    private boolean fill() throws IOException {
+
+        while (bufferPos == bufferLen) {
+
+            bufferLen = input.read(buffer, 0, BUFFER_SIZE);
+            bufferPos = 0;
+
+            if (bufferLen < 0) {
+                bufferLen = 0;
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+}
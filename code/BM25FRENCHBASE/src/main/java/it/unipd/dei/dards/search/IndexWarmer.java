@@ -0,0 +1,303 @@
+/*
+ *  Copyright 2021-2022 University of Padua, Italy
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unipd.dei.dards.search;
+
+import com.univocity.parsers.tsv.TsvParser;
+import com.univocity.parsers.tsv.TsvParserSettings;
+import it.unipd.dei.dards.analysis.MyFrenchAnalyzer;
+import it.unipd.dei.dards.parse.ParsedDocument;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.MMapDirectory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Warms up an index before it is searched, so that the first topics are not slower than the following ones.
+ * <p>
+ * Warming up has two independent steps:
+ * <ul>
+ *     <li>{@link #preload(Path, String...)} loads selected index files into the page cache, by opening them through an
+ *     {@code MMapDirectory} which preloads their mapped pages. Any reader of the same files, whatever directory it was
+ *     opened with, then finds them in memory;</li>
+ *     <li>{@link #replay(String, int)} searches a sample of a past topic file twice, which brings postings, norms and
+ *     the terms index into memory and lets the JIT compile the scoring code, and reports the latency of the first,
+ *     cold, pass against the one of the second, warm, pass.</li>
+ * </ul>
+ *
+ * @author DARDS
+ * @version 1.00
+ * @since 1.00
+ */
+public class IndexWarmer {
+
+    /**
+     * The searcher to warm up.
+     */
+    private final IndexSearcher searcher;
+
+    /**
+     * The query parser for the topics replayed.
+     */
+    private final QueryParser qp;
+
+    /**
+     * The collector of the hits of the topics replayed.
+     */
+    private final RunCollector hits;
+
+    /**
+     * The maximum number of documents retrieved for each topic.
+     */
+    private final int maxDocsRetrieved;
+
+    /**
+     * The latency of each topic replayed in the cold pass, in nanoseconds.
+     */
+    private long[] coldTimes = new long[0];
+
+    /**
+     * The latency of each topic replayed in the warm pass, in nanoseconds.
+     */
+    private long[] warmTimes = new long[0];
+
+    /**
+     * Creates a new warmer.
+     *
+     * @param searcher         the searcher to warm up.
+     * @param analyzer         the {@code Analyzer} used for the topics.
+     * @param maxDocsRetrieved the maximum number of documents retrieved for each topic.
+     * @throws NullPointerException     if {@code searcher} or {@code analyzer} are {@code null}.
+     * @throws IllegalArgumentException if {@code maxDocsRetrieved} is less than or equal to zero.
+     */
+    public IndexWarmer(final IndexSearcher searcher, final Analyzer analyzer, final int maxDocsRetrieved) {
+
+        if (searcher == null) {
+            throw new NullPointerException("Index searcher cannot be null.");
+        }
+
+        if (analyzer == null) {
+            throw new NullPointerException("Analyzer cannot be null.");
+        }
+
+        this.searcher = searcher;
+        this.qp = new QueryParser(ParsedDocument.FIELDS.BODY, analyzer);
+        this.hits = new RunCollector(maxDocsRetrieved);
+        this.maxDocsRetrieved = maxDocsRetrieved;
+    }
+
+    /**
+     * Loads the files of an index with the given extensions into the page cache.
+     * <p>
+     * Indexes written with compound files keep most of their data in {@code cfs} files, so those are the ones to
+     * preload; otherwise the terms index is in {@code tip} files, the terms dictionary in {@code tim} files, the
+     * postings in {@code doc} files and the norms in {@code nvd} files.
+     *
+     * @param indexDir   the directory of the index.
+     * @param extensions the extensions of the files to preload, or none to preload all the files.
+     * @return the number of bytes preloaded.
+     * @throws NullPointerException if {@code indexDir} is {@code null}.
+     * @throws IOException          if the files cannot be read.
+     */
+    public static long preload(final Path indexDir, final String... extensions) throws IOException {
+
+        if (indexDir == null) {
+            throw new NullPointerException("Index directory cannot be null.");
+        }
+
+        final Set<String> selected = new HashSet<>(Arrays.asList(extensions));
+
+        final long start = System.currentTimeMillis();
+
+        long bytes = 0;
+        int files = 0;
+
+        try (MMapDirectory dir = new MMapDirectory(indexDir)) {
+
+            dir.setPreload((name, context) -> true);
+
+            for (String name : dir.listAll()) {
+
+                if (!selected.isEmpty() && !selected.contains(IndexFileNames.getExtension(name))) {
+                    continue;
+                }
+
+                // opening the input maps the file and loads its pages; the pages stay cached once it is closed
+                try (IndexInput in = dir.openInput(name, IOContext.READONCE)) {
+                    bytes += in.length();
+                    files++;
+                }
+            }
+        }
+
+        System.out.printf(Locale.ENGLISH, "%d file(s), %.1f MB, preloaded from %s in %d ms.%n", files,
+                          bytes / (1024.0 * 1024.0), indexDir.toAbsolutePath(), System.currentTimeMillis() - start);
+
+        return bytes;
+    }
+
+    /**
+     * Searches a sample of the topics of a past topic file twice, reporting the latency of the cold and warm passes.
+     * <p>
+     * The sample is spread evenly over the topic file, which has the same tab-separated format as the topics searched.
+     *
+     * @param topicsFile the past topic file.
+     * @param sampleSize the number of topics to replay, or zero to replay all of them.
+     * @throws NullPointerException     if {@code topicsFile} is {@code null}.
+     * @throws IllegalArgumentException if {@code sampleSize} is less than zero.
+     * @throws IOException              if something goes wrong while searching.
+     * @throws ParseException           if something goes wrong while parsing the topics.
+     */
+    public void replay(final String topicsFile, final int sampleSize) throws IOException, ParseException {
+
+        if (topicsFile == null) {
+            throw new NullPointerException("Topics file cannot be null.");
+        }
+
+        if (sampleSize < 0) {
+            throw new IllegalArgumentException("The number of topics to replay cannot be less than zero.");
+        }
+
+        final TsvParserSettings settings = new TsvParserSettings();
+        settings.getFormat().setLineSeparator("\n");
+        final List<String[]> rows = new TsvParser(settings).parseAll(new File(topicsFile));
+
+        final int n = sampleSize == 0 ? rows.size() : Math.min(sampleSize, rows.size());
+
+        final Query[] queries = new Query[n];
+        for (int i = 0; i < n; i++) {
+            queries[i] = Searcher.buildQuery(rows.get((int) ((long) i * rows.size() / n))[1], qp);
+        }
+
+        System.out.printf("%n#### Start warming up with %d topic(s) of %s ####%n", n, topicsFile);
+
+        final long start = System.currentTimeMillis();
+
+        coldTimes = time(queries);
+        warmTimes = time(queries);
+
+        report("cold", coldTimes);
+        report("warm", warmTimes);
+
+        System.out.printf("Warm-up completed in %d ms.%n", System.currentTimeMillis() - start);
+
+        System.out.printf("#### Warming up complete ####%n");
+    }
+
+    /**
+     * Returns the latency of each topic replayed in the cold pass.
+     *
+     * @return the latency of each topic replayed in the cold pass, in nanoseconds.
+     */
+    public long[] getColdTimes() {
+        return coldTimes.clone();
+    }
+
+    /**
+     * Returns the latency of each topic replayed in the warm pass.
+     *
+     * @return the latency of each topic replayed in the warm pass, in nanoseconds.
+     */
+    public long[] getWarmTimes() {
+        return warmTimes.clone();
+    }
+
+    /**
+     * Searches each query once, scoring it as the topics searched by {@link Searcher} are, on the slices of the index
+     * in parallel if the searcher has an executor.
+     *
+     * @param queries the queries to search.
+     * @return the latency of each query, in nanoseconds.
+     * @throws IOException if something goes wrong while searching.
+     */
+    private long[] time(final Query[] queries) throws IOException {
+
+        final long[] times = new long[queries.length];
+
+        for (int i = 0; i < queries.length; i++) {
+            hits.reset();
+            final long t = System.nanoTime();
+            Searcher.score(searcher, queries[i], hits, maxDocsRetrieved);
+            times[i] = System.nanoTime() - t;
+        }
+
+        return times;
+    }
+
+    /**
+     * Prints the mean and percentiles of the latency of a pass.
+     *
+     * @param pass  the name of the pass.
+     * @param times the latency of each topic, in nanoseconds.
+     */
+    private static void report(final String pass, final long[] times) {
+
+        final long[] sorted = times.clone();
+        Arrays.sort(sorted);
+
+        System.out.printf(Locale.ENGLISH, "%s: mean %.3f ms, p50 %.3f ms, p95 %.3f ms, max %.3f ms.%n", pass,
+                          Arrays.stream(times).average().orElse(0) / 1E6, Searcher.percentile(sorted, 0.50) / 1E6,
+                          Searcher.percentile(sorted, 0.95) / 1E6, Searcher.percentile(sorted, 1) / 1E6);
+    }
+
+    /**
+     * Main method of the class. Just for testing purposes.
+     *
+     * @param args command line arguments: the directory of the index, the past topic file and the sample size.
+     * @throws Exception if something goes wrong while warming up.
+     */
+    public static void main(String[] args) throws Exception {
+
+        final Path indexDir = Paths.get(args.length > 0 ? args[0] : "code/experiment/index-base-french");
+        final String topics = args.length > 1 ? args[1] : "./input/French/Queries/train.tsv";
+        final int sampleSize = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+        if (!Files.isDirectory(indexDir)) {
+            throw new IllegalArgumentException(
+                    String.format("%s expected to be a directory containing an index.", indexDir.toAbsolutePath()));
+        }
+
+        preload(indexDir, "cfs", "tip", "tim", "doc", "nvd");
+
+        try (DirectoryReader reader = DirectoryReader.open(FSDirectory.open(indexDir))) {
+
+            final IndexSearcher searcher = new IndexSearcher(reader);
+            searcher.setSimilarity(new BM25Similarity(0.95f, 0.77f));
+
+            new IndexWarmer(searcher, new MyFrenchAnalyzer(), 1000).replay(topics, sampleSize);
+        }
+    }
+
+}
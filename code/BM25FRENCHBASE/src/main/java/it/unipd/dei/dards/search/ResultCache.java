@@ -0,0 +1,477 @@
+/*
+ *  Copyright 2021-2022 University of Padua, Italy
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unipd.dei.dards.search;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.util.StringHelper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Caches the hits of the queries searched, so that a query searched again is not scored.
+ * <p>
+ * Hits are keyed by the similarity, the maximum number of documents retrieved, the version, generation and identifier
+ * of the index commit being searched and the analyzed query, so that they are reused only when scoring the query would
+ * give exactly the same hits. The most recently used entries are kept in memory; if a spill directory is given, the
+ * entries evicted from memory and the ones still there when the cache is closed are written to it, one file per entry,
+ * and read back when missing from memory, so that hits are reused across runs and topic sets.
+ * <p>
+ * Similarities are identified by their {@code toString()}: a similarity which does not override it gets a different
+ * key in each run, so its hits are never read back from disk.
+ * <p>
+ * The cache is thread-safe. Files are read and written without holding its lock, so that threads searching
+ * concurrently wait for each other only while looking up and updating the entries in memory.
+ *
+ * @author DARDS
+ * @version 1.00
+ * @since 1.00
+ */
+public class ResultCache {
+
+    /**
+     * The magic number identifying a file of cached hits.
+     */
+    private static final int MAGIC = 0x52435348;
+
+    /**
+     * The extension of the files of cached hits.
+     */
+    private static final String EXTENSION = ".hits";
+
+    /**
+     * The part of the keys identifying the similarity, the number of documents retrieved and the index commit.
+     */
+    private final String prefix;
+
+    /**
+     * The directory where to spill the entries, or {@code null} if they are kept in memory only.
+     */
+    private final Path spillDir;
+
+    /**
+     * The entries in memory, from the least recently used one.
+     */
+    private final LinkedHashMap<String, Hits> entries;
+
+    /**
+     * The entries evicted from memory and not yet spilled.
+     */
+    private final List<Map.Entry<String, Hits>> evicted = new ArrayList<>();
+
+    /**
+     * The number of queries found in memory.
+     */
+    private long memoryHits = 0;
+
+    /**
+     * The number of queries found on disk.
+     */
+    private long diskHits = 0;
+
+    /**
+     * The number of queries not found.
+     */
+    private long misses = 0;
+
+    /**
+     * Creates a new result cache.
+     *
+     * @param reader           the reader of the index commit being searched.
+     * @param similarity       the similarity scoring the queries.
+     * @param maxDocsRetrieved the maximum number of documents retrieved for each query.
+     * @param maxEntries       the maximum number of entries kept in memory.
+     * @param spillPath        the directory where to spill the entries, or {@code null} to keep them in memory only.
+     * @throws NullPointerException     if {@code reader} or {@code similarity} are {@code null}.
+     * @throws IllegalArgumentException if {@code maxEntries} is less than or equal to zero.
+     * @throws IOException              if the index commit or the spill directory cannot be accessed.
+     */
+    public ResultCache(final DirectoryReader reader, final Similarity similarity, final int maxDocsRetrieved,
+                       final int maxEntries, final String spillPath) throws IOException {
+
+        if (reader == null) {
+            throw new NullPointerException("Index reader cannot be null.");
+        }
+
+        if (similarity == null) {
+            throw new NullPointerException("Similarity cannot be null.");
+        }
+
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException(
+                    "The maximum number of cached queries cannot be less than or equal to zero.");
+        }
+
+        final IndexCommit commit = reader.getIndexCommit();
+        final byte[] commitId = SegmentInfos.readCommit(reader.directory(), commit.getSegmentsFileName()).getId();
+
+        prefix = String.format("%s|%d|%d|%d|%s|", similarity, maxDocsRetrieved, reader.getVersion(),
+                               commit.getGeneration(), StringHelper.idToString(commitId));
+
+        if (spillPath != null) {
+            spillDir = Paths.get(spillPath);
+            Files.createDirectories(spillDir);
+        } else {
+            spillDir = null;
+        }
+
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Hits> eldest) {
+
+                if (size() <= maxEntries) {
+                    return false;
+                }
+
+                // spilled once the lock has been released
+                if (spillDir != null) {
+                    evicted.add(Map.entry(eldest.getKey(), eldest.getValue()));
+                }
+
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns the key of a query.
+     *
+     * @param q the analyzed query.
+     * @return the key of the query.
+     */
+    public String key(final Query q) {
+        return prefix + q.toString();
+    }
+
+    /**
+     * Returns the cached hits of a query.
+     *
+     * @param key the key of the query.
+     * @return the hits of the query, or {@code null} if they are not cached.
+     */
+    public Hits get(final String key) {
+
+        synchronized (this) {
+
+            final Hits h = entries.get(key);
+
+            if (h != null) {
+                memoryHits++;
+                return h;
+            }
+        }
+
+        final Hits h = load(key);
+
+        final List<Map.Entry<String, Hits>> spilled;
+
+        synchronized (this) {
+
+            if (h == null) {
+                misses++;
+                return null;
+            }
+
+            diskHits++;
+            entries.put(key, h);
+            spilled = takeEvicted();
+        }
+
+        spill(spilled);
+
+        return h;
+    }
+
+    /**
+     * Caches the hits of a query.
+     *
+     * @param key  the key of the query.
+     * @param hits the hits of the query.
+     */
+    public void put(final String key, final Hits hits) {
+
+        final List<Map.Entry<String, Hits>> spilled;
+
+        synchronized (this) {
+            entries.put(key, hits);
+            spilled = takeEvicted();
+        }
+
+        spill(spilled);
+    }
+
+    /**
+     * Returns the fraction of queries whose hits were cached.
+     *
+     * @return the fraction of queries whose hits were cached, or 0 if no query has been looked up.
+     */
+    public synchronized double getHitRate() {
+        final long lookups = memoryHits + diskHits + misses;
+        return lookups == 0 ? 0 : (double) (memoryHits + diskHits) / lookups;
+    }
+
+    /**
+     * Prints the number of queries found in memory, found on disk and not found.
+     */
+    public synchronized void report() {
+        System.out.printf(Locale.ENGLISH,
+                          "Result cache: %d hit(s) in memory, %d on disk, %d miss(es), hit rate %.2f%%, %d entries in memory.%n",
+                          memoryHits, diskHits, misses, 100 * getHitRate(), entries.size());
+    }
+
+    /**
+     * Spills the entries still in memory, if there is a spill directory.
+     */
+    public void close() {
+
+        if (spillDir == null) {
+            return;
+        }
+
+        final List<Map.Entry<String, Hits>> spilled;
+
+        synchronized (this) {
+            spilled = takeEvicted();
+            spilled.addAll(entries.entrySet());
+        }
+
+        spill(spilled);
+    }
+
+    /**
+     * Returns the entries evicted from memory and not yet spilled, forgetting them. To be called holding the lock.
+     *
+     * @return the entries evicted from memory and not yet spilled.
+     */
+    private List<Map.Entry<String, Hits>> takeEvicted() {
+
+        final List<Map.Entry<String, Hits>> taken = new ArrayList<>(evicted);
+
+        evicted.clear();
+
+        return taken;
+    }
+
+    /**
+     * Writes entries to the spill directory.
+     *
+     * @param spilled the entries to be written.
+     */
+    private void spill(final List<Map.Entry<String, Hits>> spilled) {
+        for (Map.Entry<String, Hits> e : spilled) {
+            spill(e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * Returns the file of an entry.
+     *
+     * @param key the key of the entry.
+     * @return the file of the entry.
+     */
+    private Path file(final String key) {
+
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+
+            final StringBuilder name = new StringBuilder(2 * digest.length + EXTENSION.length());
+            for (byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+
+            return spillDir.resolve(name.append(EXTENSION).toString());
+
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Writes an entry to the spill directory, if there is one and the entry is not already there.
+     * <p>
+     * Failures are only reported: the entry is simply not cached on disk.
+     *
+     * @param key  the key of the entry.
+     * @param hits the hits of the entry.
+     */
+    private void spill(final String key, final Hits hits) {
+
+        if (spillDir == null) {
+            return;
+        }
+
+        final Path file = file(key);
+
+        if (Files.exists(file)) {
+            return;
+        }
+
+        Path tmp = null;
+
+        try {
+            // a name of its own, since another thread may be spilling the same entry
+            tmp = Files.createTempFile(spillDir, file.getFileName().toString(), ".tmp");
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+
+                final byte[] k = key.getBytes(StandardCharsets.UTF_8);
+
+                out.writeInt(MAGIC);
+                out.writeInt(k.length);
+                out.write(k);
+                out.writeInt(hits.docs.length);
+
+                for (int doc : hits.docs) {
+                    out.writeInt(doc);
+                }
+
+                for (float score : hits.scores) {
+                    out.writeFloat(score);
+                }
+            }
+
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } catch (IOException e) {
+            System.out.printf("Unable to spill cached hits to %s: %s.%n", file.toAbsolutePath(), e.getMessage());
+
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                    // nothing else to do: the file is just left behind
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads an entry from the spill directory.
+     * <p>
+     * Files which cannot be read or belong to another key, in the unlikely case of a collision of their names, are
+     * ignored.
+     *
+     * @param key the key of the entry.
+     * @return the hits of the entry, or {@code null} if it is not on disk.
+     */
+    private Hits load(final String key) {
+
+        if (spillDir == null) {
+            return null;
+        }
+
+        final Path file = file(key);
+
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+
+            final byte[] k = new byte[in.readInt()];
+            in.readFully(k);
+
+            if (!Arrays.equals(k, key.getBytes(StandardCharsets.UTF_8))) {
+                return null;
+            }
+
+            final int n = in.readInt();
+            final int[] docs = new int[n];
+            final float[] scores = new float[n];
+
+            for (int i = 0; i < n; i++) {
+                docs[i] = in.readInt();
+            }
+
+            for (int i = 0; i < n; i++) {
+                scores[i] = in.readFloat();
+            }
+
+            return new Hits(docs, scores);
+
+        } catch (IOException | RuntimeException e) {
+            System.out.printf("Unable to read cached hits from %s: %s.%n", file.toAbsolutePath(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * The hits of a query, from the best one.
+     *
+     * @author DARDS
+     * @version 1.00
+     * @since 1.00
+     */
+    public static final class Hits {
+
+        /**
+         * The documents of the hits.
+         */
+        final int[] docs;
+
+        /**
+         * The scores of the hits.
+         */
+        final float[] scores;
+
+        /**
+         * Creates new hits.
+         *
+         * @param docs   the documents of the hits, from the best one.
+         * @param scores the scores of the hits, parallel to {@code docs}.
+         */
+        Hits(final int[] docs, final float[] scores) {
+            this.docs = docs;
+            this.scores = scores;
+        }
+
+        /**
+         * Returns the number of hits.
+         *
+         * @return the number of hits.
+         */
+        public int size() {
+            return docs.length;
+        }
+    }
+
+}
@@ -0,0 +1,372 @@
+/*
+ *  Copyright 2021-2022 University of Padua, Italy
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unipd.dei.dards.search;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.Scorable;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * Collects the top scoring documents of a query and writes them as lines of a run, without creating {@code TopDocs}
+ * or {@code ScoreDoc} objects.
+ * <p>
+ * The hits are kept in a heap made of two parallel arrays, documents and scores, with the worst hit on top. Hits are
+ * ranked as {@code IndexSearcher.search(Query, int)} does, by decreasing score and then by increasing document
+ * number, and once the heap is full the scorer is told that documents scoring less than the worst hit can be skipped.
+ * <p>
+ * The collector can be reused for another query once its hits have been written or it has been reset.
+ *
+ * @author DARDS
+ * @version 1.00
+ * @since 1.00
+ */
+public class RunCollector extends SimpleCollector {
+
+    /**
+     * The maximum number of hits to collect.
+     */
+    private final int numHits;
+
+    /**
+     * The documents of the hits, as a heap with the worst hit on top.
+     */
+    private final int[] docs;
+
+    /**
+     * The scores of the hits, parallel to {@link #docs}.
+     */
+    private final float[] scores;
+
+    /**
+     * The bytes of the identifier of the document being written.
+     */
+    private final BytesRef scratch = new BytesRef();
+
+    /**
+     * The number of hits collected.
+     */
+    private int size;
+
+    /**
+     * Whether the hits are sorted from the best one instead of being a heap.
+     */
+    private boolean sorted;
+
+    /**
+     * The number of the first document of the current segment.
+     */
+    private int docBase;
+
+    /**
+     * The scorer of the current segment.
+     */
+    private Scorable scorer;
+
+    /**
+     * The minimum competitive score last given to the scorer of the current segment.
+     */
+    private float minCompetitiveScore;
+
+    /**
+     * Creates a new collector.
+     *
+     * @param numHits the maximum number of hits to collect.
+     * @throws IllegalArgumentException if {@code numHits} is less than or equal to zero.
+     */
+    public RunCollector(final int numHits) {
+
+        if (numHits <= 0) {
+            throw new IllegalArgumentException(
+                    "The maximum number of hits to collect cannot be less than or equal to zero.");
+        }
+
+        this.numHits = numHits;
+        this.docs = new int[numHits];
+        this.scores = new float[numHits];
+    }
+
+    /**
+     * Returns a manager which collects each slice of the index with its own collector and then merges their hits.
+     *
+     * @param numHits the maximum number of hits to collect.
+     * @return the collector manager.
+     */
+    public static CollectorManager<RunCollector, RunCollector> manager(final int numHits) {
+        return new CollectorManager<>() {
+
+            @Override
+            public RunCollector newCollector() {
+                return new RunCollector(numHits);
+            }
+
+            @Override
+            public RunCollector reduce(final Collection<RunCollector> collectors) {
+
+                final Iterator<RunCollector> it = collectors.iterator();
+                final RunCollector merged = it.next();
+
+                while (it.hasNext()) {
+                    final RunCollector c = it.next();
+                    for (int i = 0; i < c.size; i++) {
+                        merged.insert(c.docs[i], c.scores[i]);
+                    }
+                }
+
+                return merged;
+            }
+        };
+    }
+
+    /**
+     * Discards the hits collected so far.
+     */
+    public void reset() {
+        size = 0;
+        sorted = false;
+    }
+
+    /**
+     * Returns the number of hits collected.
+     *
+     * @return the number of hits collected.
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public ScoreMode scoreMode() {
+        return ScoreMode.TOP_SCORES;
+    }
+
+    @Override
+    protected void doSetNextReader(final LeafReaderContext context) {
+        docBase = context.docBase;
+    }
+
+    @Override
+    public void setScorer(final Scorable scorer) throws IOException {
+
+        this.scorer = scorer;
+        minCompetitiveScore = 0;
+
+        updateMinCompetitiveScore();
+    }
+
+    @Override
+    public void collect(final int doc) throws IOException {
+
+        if (insert(docBase + doc, scorer.score())) {
+            updateMinCompetitiveScore();
+        }
+    }
+
+    /**
+     * Writes the hits collected, from the best one, as lines of a run and discards them.
+     *
+     * @param topic the UTF-8 bytes of the identifier of the topic.
+     * @param ids   the resolver of the identifiers of the documents.
+     * @param lines the lines where to append the hits.
+     * @throws IOException if something goes wrong while reading the identifiers of the documents.
+     */
+    public void write(final byte[] topic, final IdResolver ids, final RunWriter.Lines lines) throws IOException {
+
+        sort();
+
+        for (int i = 0; i < size; i++) {
+            lines.add(topic, ids.get(docs[i], scratch), i, scores[i]);
+        }
+
+        reset();
+    }
+
+    /**
+     * Returns a copy of the hits collected, to be cached. No more hits can be collected until the collector is reset.
+     *
+     * @return a copy of the hits collected, from the best one.
+     */
+    public ResultCache.Hits hits() {
+
+        sort();
+
+        return new ResultCache.Hits(Arrays.copyOf(docs, size), Arrays.copyOf(scores, size));
+    }
+
+    /**
+     * Replaces the hits collected with cached ones, to be written as if they had been collected.
+     *
+     * @param hits the cached hits.
+     * @throws IllegalArgumentException if there are more cached hits than the maximum number of hits to collect.
+     */
+    public void load(final ResultCache.Hits hits) {
+
+        if (hits.size() > numHits) {
+            throw new IllegalArgumentException(
+                    String.format("%d cached hits exceed the maximum number of hits %d.", hits.size(), numHits));
+        }
+
+        System.arraycopy(hits.docs, 0, docs, 0, hits.size());
+        System.arraycopy(hits.scores, 0, scores, 0, hits.size());
+
+        size = hits.size();
+        sorted = true;
+    }
+
+    /**
+     * Sorts the hits from the best one, if they are still a heap.
+     */
+    private void sort() {
+
+        if (sorted) {
+            return;
+        }
+
+        final int n = size;
+
+        // sort the heap in place: each time the worst hit left is moved right after the ones still in the heap
+        while (size > 1) {
+            swap(0, --size);
+            downHeap(0);
+        }
+
+        size = n;
+        sorted = true;
+    }
+
+    /**
+     * Adds a hit, if it is better than the worst one collected so far or there is still room for it.
+     *
+     * @param doc   the document of the hit.
+     * @param score the score of the hit.
+     * @return {@code true} if the hit has been added, {@code false} otherwise.
+     */
+    private boolean insert(final int doc, final float score) {
+
+        if (size < numHits) {
+            docs[size] = doc;
+            scores[size] = score;
+            upHeap(size++);
+            return true;
+        }
+
+        if (!worse(docs[0], scores[0], doc, score)) {
+            return false;
+        }
+
+        docs[0] = doc;
+        scores[0] = score;
+        downHeap(0);
+
+        return true;
+    }
+
+    /**
+     * Tells the scorer that documents scoring less than the worst hit can be skipped, once the heap is full.
+     *
+     * @throws IOException if something goes wrong while updating the scorer.
+     */
+    private void updateMinCompetitiveScore() throws IOException {
+
+        // hits scoring as the worst one are still competitive, since they can have a smaller document number
+        if (size == numHits && scores[0] > minCompetitiveScore) {
+            minCompetitiveScore = scores[0];
+            scorer.setMinCompetitiveScore(minCompetitiveScore);
+        }
+    }
+
+    /**
+     * Indicates whether a hit is ranked after another one.
+     *
+     * @param doc1   the document of the first hit.
+     * @param score1 the score of the first hit.
+     * @param doc2   the document of the second hit.
+     * @param score2 the score of the second hit.
+     * @return {@code true} if the first hit is ranked after the second one, {@code false} otherwise.
+     */
+    private static boolean worse(final int doc1, final float score1, final int doc2, final float score2) {
+        return score1 < score2 || (score1 == score2 && doc1 > doc2);
+    }
+
+    /**
+     * Moves a hit up the heap until its parent is worse than it.
+     *
+     * @param i the position of the hit.
+     */
+    private void upHeap(int i) {
+
+        while (i > 0) {
+
+            final int parent = (i - 1) >>> 1;
+
+            if (!worse(docs[i], scores[i], docs[parent], scores[parent])) {
+                return;
+            }
+
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    /**
+     * Moves a hit down the heap until it is worse than its children.
+     *
+     * @param i the position of the hit.
+     */
+    private void downHeap(int i) {
+
+        for (int child = 2 * i + 1; child < size; child = 2 * i + 1) {
+
+            // the worse of the two children
+            if (child + 1 < size && worse(docs[child + 1], scores[child + 1], docs[child], scores[child])) {
+                child++;
+            }
+
+            if (!worse(docs[child], scores[child], docs[i], scores[i])) {
+                return;
+            }
+
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    /**
+     * Swaps two hits.
+     *
+     * @param i the position of the first hit.
+     * @param j the position of the second hit.
+     */
+    private void swap(final int i, final int j) {
+
+        final int doc = docs[i];
+        docs[i] = docs[j];
+        docs[j] = doc;
+
+        final float score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+
+}
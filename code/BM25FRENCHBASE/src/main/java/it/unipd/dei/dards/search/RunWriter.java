@@ -0,0 +1,360 @@
+/*
+ *  Copyright 2021-2022 University of Padua, Italy
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unipd.dei.dards.search;
+
+import org.apache.lucene.util.BytesRef;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Writes a run in the TREC format, one line {@code " topic Q0 document rank score runID"} per retrieved document.
+ * <p>
+ * Lines are formatted by {@link Lines} straight into a reusable array of UTF-8 bytes, without going through a
+ * {@code Formatter}, and written to the run file through a {@code FileChannel}. Scores are printed with six decimals,
+ * rounded half up as {@code String.format("%.6f", score)} does, so the run is identical to the one written with
+ * {@code printf}.
+ * <p>
+ * The writer is not thread-safe, but each thread can fill its own {@link Lines} and hand them to the writer.
+ *
+ * @author DARDS
+ * @version 1.00
+ * @since 1.00
+ */
+public class RunWriter implements Closeable {
+
+    /**
+     * The initial capacity of the lines, enough for about one thousand lines.
+     */
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    /**
+     * The number of decimals of the scores.
+     */
+    private static final int DECIMALS = 6;
+
+    /**
+     * Ten to the power of {@link #DECIMALS}.
+     */
+    private static final long SCALE = 1_000_000L;
+
+    /**
+     * The largest binary exponent of a score whose scaled value still fits in a {@code long}.
+     */
+    private static final int MAX_EXACT_SHIFT = 63 - 24 - 20;
+
+    /**
+     * What is printed in place of a missing document identifier.
+     */
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * The separator between a topic and a document identifier.
+     */
+    private static final byte[] Q0 = " Q0 ".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * The channel of the run file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The UTF-8 bytes of the end of each line: a space, the identifier of the run and the line separator.
+     */
+    private final byte[] tail;
+
+    /**
+     * Creates a new run writer, truncating the run file if it already exists.
+     *
+     * @param runFile the file where to write the run.
+     * @param runID   the identifier of the run.
+     * @throws NullPointerException if {@code runFile} or {@code runID} are {@code null}.
+     * @throws IOException          if the run file cannot be opened.
+     */
+    public RunWriter(final Path runFile, final String runID) throws IOException {
+
+        if (runFile == null) {
+            throw new NullPointerException("Run file cannot be null.");
+        }
+
+        if (runID == null) {
+            throw new NullPointerException("Run identifier cannot be null.");
+        }
+
+        tail = (" " + runID + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+
+        channel = FileChannel.open(runFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                   StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Returns new, empty lines to be filled and then written by this writer.
+     *
+     * @return new, empty lines.
+     */
+    public Lines newLines() {
+        return new Lines(tail);
+    }
+
+    /**
+     * Writes the given lines to the run file.
+     *
+     * @param lines the lines to write.
+     * @throws IOException if something goes wrong while writing the run file.
+     */
+    public void write(final Lines lines) throws IOException {
+
+        final ByteBuffer buf = lines.view;
+        buf.limit(lines.length).position(0);
+
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+
+    /**
+     * Closes the run file.
+     *
+     * @throws IOException if something goes wrong while closing the run file.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Lines of a run, formatted into a growable array of bytes which can be reused for the next topic.
+     *
+     * @author DARDS
+     * @version 1.00
+     * @since 1.00
+     */
+    public static final class Lines {
+
+        /**
+         * The UTF-8 bytes of the end of each line.
+         */
+        private final byte[] tail;
+
+        /**
+         * The bytes of the lines.
+         */
+        private byte[] bytes;
+
+        /**
+         * A buffer wrapping {@link #bytes}, used to write them.
+         */
+        private ByteBuffer view;
+
+        /**
+         * The number of bytes of the lines.
+         */
+        private int length;
+
+        /**
+         * Creates new, empty lines, to be written elsewhere than to a run file.
+         *
+         * @param runID the identifier of the run.
+         * @throws NullPointerException if {@code runID} is {@code null}.
+         */
+        public Lines(final String runID) {
+            this((" " + Objects.requireNonNull(runID, "Run identifier cannot be null.") + System.lineSeparator())
+                         .getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Creates new, empty lines.
+         *
+         * @param tail the UTF-8 bytes of the end of each line.
+         */
+        private Lines(final byte[] tail) {
+            this.tail = tail;
+            this.bytes = new byte[INITIAL_CAPACITY];
+            this.view = ByteBuffer.wrap(bytes);
+        }
+
+        /**
+         * Removes all the lines, keeping the bytes allocated so far.
+         */
+        public void clear() {
+            length = 0;
+        }
+
+        /**
+         * Writes the lines to the given stream.
+         *
+         * @param out the stream where to write the lines.
+         * @throws IOException if something goes wrong while writing the lines.
+         */
+        public void writeTo(final OutputStream out) throws IOException {
+            out.write(bytes, 0, length);
+        }
+
+        /**
+         * Appends a line to the run.
+         *
+         * @param topic the UTF-8 bytes of the identifier of the topic.
+         * @param docID the UTF-8 bytes of the identifier of the document, or {@code null} if it has none.
+         * @param rank  the rank of the document.
+         * @param score the score of the document.
+         */
+        public void add(final byte[] topic, final BytesRef docID, final int rank, final float score) {
+
+            // a rank takes at most 10 digits and a score, with its sign and decimals, at most 27
+            ensureCapacity(1 + topic.length + Q0.length + (docID == null ? NULL.length : docID.length) + 1 + 10 + 1 +
+                                   27 + tail.length);
+
+            bytes[length++] = ' ';
+            append(topic, 0, topic.length);
+            append(Q0, 0, Q0.length);
+
+            if (docID == null) {
+                append(NULL, 0, NULL.length);
+            } else {
+                append(docID.bytes, docID.offset, docID.length);
+            }
+
+            bytes[length++] = ' ';
+            appendNumber(rank);
+
+            bytes[length++] = ' ';
+            appendScore(score);
+
+            append(tail, 0, tail.length);
+        }
+
+        /**
+         * Makes room for the given number of bytes.
+         *
+         * @param n the number of bytes to be appended.
+         */
+        private void ensureCapacity(final int n) {
+            if (length + n > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(length + n, 2 * bytes.length));
+                view = ByteBuffer.wrap(bytes);
+            }
+        }
+
+        /**
+         * Appends the given bytes.
+         *
+         * @param b    the array containing the bytes.
+         * @param from the position of the first byte.
+         * @param n    the number of bytes.
+         */
+        private void append(final byte[] b, final int from, final int n) {
+            System.arraycopy(b, from, bytes, length, n);
+            length += n;
+        }
+
+        /**
+         * Appends the decimal digits of a non-negative number.
+         *
+         * @param value the number.
+         */
+        private void appendNumber(long value) {
+
+            final int start = length;
+
+            do {
+                bytes[length++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+
+            // the digits have been appended from the least significant one
+            for (int i = start, j = length - 1; i < j; i++, j--) {
+                final byte b = bytes[i];
+                bytes[i] = bytes[j];
+                bytes[j] = b;
+            }
+        }
+
+        /**
+         * Appends a score with six decimals, rounded half up.
+         * <p>
+         * A finite float is {@code mantissa * 2^shift}, so the score times one million is rounded with integer
+         * arithmetic on its exact value, which is what {@code String.format("%.6f", score)} prints. Scores too large
+         * for a {@code long}, infinities and {@code NaN} are left to {@code String.format}.
+         *
+         * @param score the score.
+         */
+        private void appendScore(final float score) {
+
+            final int bits = Float.floatToRawIntBits(score);
+            final int exponent = (bits >>> 23) & 0xFF;
+
+            final long mantissa = exponent == 0 ? (bits & 0x7FFFFF) : (bits & 0x7FFFFF) | 0x800000;
+            final int shift = (exponent == 0 ? 1 : exponent) - 150;
+
+            if (exponent == 0xFF || shift > MAX_EXACT_SHIFT) {
+                final byte[] b = String.format(Locale.ENGLISH, "%.6f", score).getBytes(StandardCharsets.UTF_8);
+                // the end of the line is still to be appended
+                ensureCapacity(b.length + tail.length);
+                append(b, 0, b.length);
+                return;
+            }
+
+            final long scaled;
+
+            if (shift >= 0) {
+                scaled = (mantissa << shift) * SCALE;
+            } else if (shift < -62) {
+                // far less than half of the last decimal
+                scaled = 0;
+            } else {
+                final long exact = mantissa * SCALE;
+                final long remainder = exact & ((1L << -shift) - 1);
+                scaled = (exact >>> -shift) + ((remainder << 1) >= (1L << -shift) ? 1 : 0);
+            }
+
+            if (bits < 0) {
+                bytes[length++] = '-';
+            }
+
+            appendNumber(scaled / SCALE);
+
+            bytes[length++] = '.';
+
+            long decimals = scaled % SCALE;
+            for (int i = length + DECIMALS - 1; i >= length; i--) {
+                bytes[i] = (byte) ('0' + decimals % 10);
+                decimals /= 10;
+            }
+            length += DECIMALS;
+        }
+
+        /**
+         * Returns the lines as a string.
+         *
+         * @return the lines as a string.
+         */
+        @Override
+        public String toString() {
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+}
@@ -0,0 +1,523 @@
+/*
+ *  Copyright 2021-2022 University of Padua, Italy
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unipd.dei.dards.search;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.univocity.parsers.tsv.TsvParser;
+import com.univocity.parsers.tsv.TsvParserSettings;
+import it.unipd.dei.dards.analysis.MyFrenchAnalyzer;
+import it.unipd.dei.dards.parse.ParsedDocument;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.store.FSDirectory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A long-lived search service, which keeps the index open and warm across requests.
+ * <p>
+ * The service listens on the loopback interface only and answers in the TREC run format, building queries as
+ * {@link Searcher} does:
+ * <ul>
+ *     <li>{@code GET /search?q=<title>[&id=<topic>][&runID=<run>]} searches for a single query;</li>
+ *     <li>{@code POST /topics[?runID=<run>]}, with a topics file in the body, searches for all its topics and streams
+ *     back the lines of each topic as soon as it has been searched;</li>
+ *     <li>{@code POST /shutdown} stops the service.</li>
+ * </ul>
+ * For example, {@code curl --data-binary @train.tsv 'http://localhost:8765/topics?runID=my-run' > my-run.txt} writes
+ * the same run as a {@code Searcher} over the same index, analyzer and similarity.
+ * <p>
+ * Requests are served concurrently, each by one thread.
+ *
+ * @author DARDS
+ * @version 1.00
+ * @since 1.00
+ */
+public class SearchServer implements Closeable {
+
+    /**
+     * The topic identifier used for single queries, if none is given.
+     */
+    private static final String DEFAULT_TOPIC = "q";
+
+    /**
+     * The run identifier used if none is given.
+     */
+    private static final String DEFAULT_RUN_ID = "seupd2223-dards";
+
+    /**
+     * The index reader, open as long as the service.
+     */
+    private final DirectoryReader reader;
+
+    /**
+     * The resolver of the identifiers of the retrieved documents.
+     */
+    private final IdResolver ids;
+
+    /**
+     * The index searcher.
+     */
+    private final IndexSearcher searcher;
+
+    /**
+     * The analyzer used for parsing queries.
+     */
+    private final Analyzer analyzer;
+
+    /**
+     * The maximum number of documents to retrieve for each query.
+     */
+    private final int maxDocsRetrieved;
+
+    /**
+     * The HTTP server.
+     */
+    private final HttpServer server;
+
+    /**
+     * The threads serving the requests.
+     */
+    private final ExecutorService pool;
+
+    /**
+     * Released when the service stops.
+     */
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    /**
+     * The number of requests served.
+     */
+    private long requests = 0;
+
+    /**
+     * The number of queries searched.
+     */
+    private long queries = 0;
+
+    /**
+     * Creates a new search service, which does not accept requests until started.
+     *
+     * @param analyzer         the {@code Analyzer} to be used.
+     * @param similarity       the {@code Similarity} to be used.
+     * @param indexPath        the directory containing the index to be searched.
+     * @param maxDocsRetrieved the maximum number of documents to be retrieved for each query.
+     * @param port             the port where to listen, on the loopback interface.
+     * @param threads          the number of threads serving the requests.
+     * @throws NullPointerException     if any of the parameters is {@code null}.
+     * @throws IllegalArgumentException if any of the parameters assumes invalid values.
+     * @throws IOException              if the index cannot be opened or the port cannot be bound.
+     */
+    public SearchServer(final Analyzer analyzer, final Similarity similarity, final String indexPath,
+                        final int maxDocsRetrieved, final int port, final int threads) throws IOException {
+
+        if (analyzer == null) {
+            throw new NullPointerException("Analyzer cannot be null.");
+        }
+
+        if (similarity == null) {
+            throw new NullPointerException("Similarity cannot be null.");
+        }
+
+        if (indexPath == null) {
+            throw new NullPointerException("Index path cannot be null.");
+        }
+
+        final Path indexDir = Paths.get(indexPath);
+        if (!Files.isDirectory(indexDir)) {
+            throw new IllegalArgumentException(String.format("%s expected to be a directory where to search the index.",
+                                                             indexDir.toAbsolutePath().toString()));
+        }
+
+        if (maxDocsRetrieved <= 0) {
+            throw new IllegalArgumentException(
+                    "The maximum number of documents to be retrieved cannot be less than or equal to zero.");
+        }
+
+        if (port < 0 || port > 65535) {
+            throw new IllegalArgumentException(String.format("Invalid port %d.", port));
+        }
+
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The number of serving threads cannot be less than or equal to zero.");
+        }
+
+        this.analyzer = analyzer;
+        this.maxDocsRetrieved = maxDocsRetrieved;
+
+        reader = DirectoryReader.open(FSDirectory.open(indexDir));
+
+        try {
+            ids = new IdResolver(reader);
+
+            searcher = new IndexSearcher(reader);
+            searcher.setSimilarity(similarity);
+
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+
+        pool = Executors.newFixedThreadPool(threads);
+        server.setExecutor(pool);
+
+        server.createContext("/search", this::handleSearch);
+        server.createContext("/topics", this::handleTopics);
+        server.createContext("/shutdown", this::handleShutdown);
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+
+        server.start();
+
+        System.out.printf("Search service listening on http://%s:%d/ over %d document(s).%n",
+                          server.getAddress().getHostString(), getPort(), reader.numDocs());
+    }
+
+    /**
+     * Returns the port where the service listens.
+     *
+     * @return the port where the service listens.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Waits until the service is stopped, either by {@link #close()} or by a shutdown request.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void awaitShutdown() throws InterruptedException {
+        stopped.await();
+    }
+
+    /**
+     * Stops the service, waiting for at most one second for the requests being served, and closes the index.
+     *
+     * @throws IOException if something goes wrong while closing the index.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+
+        if (stopped.getCount() == 0) {
+            return;
+        }
+
+        server.stop(1);
+        pool.shutdownNow();
+
+        try {
+            reader.close();
+        } finally {
+            stopped.countDown();
+
+            System.out.printf("Search service stopped: %d request(s) served, %d query(ies) searched.%n", requests,
+                              queries);
+        }
+    }
+
+    /**
+     * Serves a single query.
+     *
+     * @param exchange the request and its response.
+     * @throws IOException if something goes wrong while answering.
+     */
+    private void handleSearch(final HttpExchange exchange) throws IOException {
+
+        try {
+
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, "Use GET.");
+                return;
+            }
+
+            final Map<String, String> params = params(exchange);
+            final String title = params.get("q");
+
+            if (title == null || title.isBlank()) {
+                send(exchange, 400, "Missing query: use /search?q=<title>.");
+                return;
+            }
+
+            final Session s = new Session(params.getOrDefault("runID", DEFAULT_RUN_ID));
+
+            try {
+                s.search(params.getOrDefault("id", DEFAULT_TOPIC), title);
+            } catch (ParseException e) {
+                send(exchange, 400, String.format("Unable to parse the query: %s.", e.getMessage()));
+                return;
+            } catch (IOException | RuntimeException e) {
+                send(exchange, 500, String.format("Unable to search: %s.", e.getMessage()));
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, 0);
+            s.flush(exchange.getResponseBody());
+
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Serves a topics file, streaming back the lines of each topic once it has been searched.
+     *
+     * @param exchange the request and its response.
+     * @throws IOException if something goes wrong while answering.
+     */
+    private void handleTopics(final HttpExchange exchange) throws IOException {
+
+        try {
+
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, "Use POST, with the topics file as body.");
+                return;
+            }
+
+            final Map<String, String> params = params(exchange);
+
+            // the same format read by Searcher: one topic per line, identifier and title separated by a tab
+            final TsvParserSettings settings = new TsvParserSettings();
+            settings.getFormat().setLineSeparator("\n");
+            final TsvParser parser = new TsvParser(settings);
+
+            parser.beginParsing(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+
+            final Session s = new Session(params.getOrDefault("runID", DEFAULT_RUN_ID));
+
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, 0);
+
+            final OutputStream out = exchange.getResponseBody();
+
+            try {
+                for (String[] row = parser.parseNext(); row != null; row = parser.parseNext()) {
+
+                    if (row.length < 2 || row[0] == null || row[1] == null) {
+                        continue;
+                    }
+
+                    s.search(row[0], row[1]);
+                    s.flush(out);
+                }
+            } finally {
+                parser.stopParsing();
+            }
+
+        } catch (ParseException | IOException | RuntimeException e) {
+            // the response has already started, so the error can only be reported here
+            System.out.printf("Unable to search topics: %s.%n", e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Stops the service.
+     *
+     * @param exchange the request and its response.
+     * @throws IOException if something goes wrong while answering.
+     */
+    private void handleShutdown(final HttpExchange exchange) throws IOException {
+
+        try {
+
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, "Use POST.");
+                return;
+            }
+
+            send(exchange, 200, "Stopping.");
+        } finally {
+            exchange.close();
+        }
+
+        // the service cannot wait for this very request from one of its threads
+        final Thread t = new Thread(() -> {
+            try {
+                close();
+            } catch (IOException e) {
+                System.out.printf("Unable to close the index: %s.%n", e.getMessage());
+            }
+        }, "search-server-shutdown");
+        t.start();
+    }
+
+    /**
+     * Sends a short plain-text response.
+     *
+     * @param exchange the request and its response.
+     * @param status   the HTTP status.
+     * @param message  the text of the response.
+     * @throws IOException if something goes wrong while answering.
+     */
+    private static void send(final HttpExchange exchange, final int status, final String message) throws IOException {
+
+        final byte[] body = (message + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    /**
+     * Decodes the parameters of the query string of a request.
+     *
+     * @param exchange the request.
+     * @return the parameters, by name.
+     */
+    private static Map<String, String> params(final HttpExchange exchange) {
+
+        final Map<String, String> params = new HashMap<>();
+        final String query = exchange.getRequestURI().getRawQuery();
+
+        if (query == null) {
+            return params;
+        }
+
+        for (String p : query.split("&")) {
+
+            final int eq = p.indexOf('=');
+
+            if (eq > 0) {
+                params.put(URLDecoder.decode(p.substring(0, eq), StandardCharsets.UTF_8),
+                           URLDecoder.decode(p.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+
+        return params;
+    }
+
+    /**
+     * What is needed to search for the queries of one request, which is served by one thread.
+     */
+    private final class Session {
+
+        /**
+         * The query parser, which is not thread-safe.
+         */
+        private final QueryParser qp = new QueryParser(ParsedDocument.FIELDS.BODY, analyzer);
+
+        /**
+         * The collector of the hits, reused across queries.
+         */
+        private final RunCollector hits = new RunCollector(maxDocsRetrieved);
+
+        /**
+         * The lines of the run not yet sent.
+         */
+        private final RunWriter.Lines lines;
+
+        /**
+         * Creates a new session.
+         *
+         * @param runID the identifier of the run.
+         */
+        Session(final String runID) {
+            lines = new RunWriter.Lines(runID);
+            synchronized (SearchServer.this) {
+                requests++;
+            }
+        }
+
+        /**
+         * Searches for a query and appends its lines of the run.
+         *
+         * @param topic the identifier of the topic.
+         * @param title the title of the topic.
+         * @throws IOException    if something goes wrong while searching.
+         * @throws ParseException if something goes wrong while parsing the title.
+         */
+        void search(final String topic, final String title) throws IOException, ParseException {
+
+            hits.reset();
+            searcher.search(Searcher.buildQuery(title, qp), hits);
+            hits.write(topic.getBytes(StandardCharsets.UTF_8), ids, lines);
+
+            synchronized (SearchServer.this) {
+                queries++;
+            }
+        }
+
+        /**
+         * Sends the lines appended so far.
+         *
+         * @param out the stream of the response.
+         * @throws IOException if something goes wrong while sending the lines.
+         */
+        void flush(final OutputStream out) throws IOException {
+            lines.writeTo(out);
+            out.flush();
+            lines.clear();
+        }
+    }
+
+    /**
+     * Main method of the class. Just for testing purposes.
+     *
+     * @param args command line arguments: the path of the index and the port where to listen.
+     * @throws Exception if something goes wrong while serving.
+     */
+    public static void main(String[] args) throws Exception {
+
+        final String indexPath = args.length > 0 ? args[0] : "code/experiment/index-base-french";
+
+        final int port = args.length > 1 ? Integer.parseInt(args[1]) : 8765;
+
+        final SearchServer s = new SearchServer(new MyFrenchAnalyzer(), new BM25Similarity(0.95f, 0.77f), indexPath,
+                                                1000, port, Runtime.getRuntime().availableProcessors());
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                s.close();
+            } catch (IOException e) {
+                System.out.printf("Unable to close the index: %s.%n", e.getMessage());
+            }
+        }));
+
+        s.start();
+        s.awaitShutdown();
+    }
+
+}
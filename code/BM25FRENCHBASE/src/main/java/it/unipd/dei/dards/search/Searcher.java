@@ -28,6 +28,7 @@ import org.apache.lucene.analysis.standard.StandardTokenizerFactory;
 import org.apache.lucene.benchmark.quality.QualityQuery;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.queryparser.classic.QueryParserBase;
@@ -38,13 +39,18 @@ import org.apache.lucene.store.FSDirectory;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import com.univocity.parsers.tsv.TsvParser;
 import com.univocity.parsers.tsv.TsvParserSettings;
@@ -90,15 +96,25 @@ public class Searcher {
     private final String runID;
 
     /**
-     * The run to be written
+     * The file of the run to be written
      */
-    private final PrintWriter run;
+    private final Path runFile;
+
+    /**
+     * The run to be written, opened by the first search so that comparing latencies does not touch the run file
+     */
+    private RunWriter run = null;
 
     /**
      * The index reader
      */
     private final IndexReader reader;
 
+    /**
+     * The resolver of the identifiers of the retrieved documents
+     */
+    private final IdResolver ids;
+
     /**
      * The index searcher.
      */
@@ -114,6 +130,11 @@ public class Searcher {
      */
     private final QueryParser qp;
 
+    /**
+     * The analyzer used for parsing queries
+     */
+    private final Analyzer analyzer;
+
     /**
      * The maximum number of documents to retrieve
      */
@@ -124,6 +145,17 @@ public class Searcher {
      */
     private long elapsedTime = Long.MIN_VALUE;
 
+    /**
+     * The threads scoring the slices of the index for each query, or {@code null} if each query is scored by the
+     * searching thread alone.
+     */
+    private final ExecutorService sliceExecutor;
+
+    /**
+     * The cache of the hits of the queries, or {@code null} if every query is scored.
+     */
+    private ResultCache cache = null;
+
 
     /**
      * Creates a new searcher.
@@ -142,6 +174,36 @@ public class Searcher {
     public Searcher(final Analyzer analyzer, final Similarity similarity, final String indexPath,
                     final String topicsFile, final int expectedTopics, final String runID, final String runPath,
                     final int maxDocsRetrieved) {
+        this(analyzer, similarity, indexPath, topicsFile, expectedTopics, runID, runPath, maxDocsRetrieved, 0, 0, 0);
+    }
+
+    /**
+     * Creates a new searcher which scores each query on several slices of the index in parallel.
+     * <p>
+     * Segments are grouped into slices of at most {@code maxDocsPerSlice} documents or {@code maxSegmentsPerSlice}
+     * segments, whichever limit is reached first, and slices are scored concurrently by {@code sliceThreads} threads.
+     * This lowers the latency of each query on a large index, while {@link #search(int)} raises the throughput of a
+     * batch of topics.
+     *
+     * @param analyzer            the {@code Analyzer} to be used.
+     * @param similarity          the {@code Similarity} to be used.
+     * @param indexPath           the directory where containing the index to be searched.
+     * @param topicsFile          the file containing the topics to search for.
+     * @param expectedTopics      the total number of topics expected to be searched.
+     * @param runID               the identifier of the run to be created.
+     * @param runPath             the path where to store the run.
+     * @param maxDocsRetrieved    the maximum number of documents to be retrieved.
+     * @param sliceThreads        the number of threads scoring slices, or zero to score each query on the searching
+     *                            thread alone.
+     * @param maxDocsPerSlice     the maximum number of documents of a slice.
+     * @param maxSegmentsPerSlice the maximum number of segments of a slice.
+     * @throws NullPointerException     if any of the parameters is {@code null}.
+     * @throws IllegalArgumentException if any of the parameters assumes invalid values.
+     */
+    public Searcher(final Analyzer analyzer, final Similarity similarity, final String indexPath,
+                    final String topicsFile, final int expectedTopics, final String runID, final String runPath,
+                    final int maxDocsRetrieved, final int sliceThreads, final int maxDocsPerSlice,
+                    final int maxSegmentsPerSlice) {
 
         if (analyzer == null) {
             throw new NullPointerException("Analyzer cannot be null.");
@@ -170,14 +232,35 @@ public class Searcher {
                                                              indexDir.toAbsolutePath().toString()));
         }
 
+        if (sliceThreads < 0) {
+            throw new IllegalArgumentException("The number of slicing threads cannot be less than zero.");
+        }
+
+        if (sliceThreads > 0 && (maxDocsPerSlice <= 0 || maxSegmentsPerSlice <= 0)) {
+            throw new IllegalArgumentException(
+                    "The maximum number of documents and segments per slice cannot be less than or equal to zero.");
+        }
+
         try {
             reader = DirectoryReader.open(FSDirectory.open(indexDir));
+            ids = new IdResolver(reader);
         } catch (IOException e) {
             throw new IllegalArgumentException(String.format("Unable to create the index reader for directory %s: %s.",
                                                              indexDir.toAbsolutePath().toString(), e.getMessage()), e);
         }
 
-        searcher = new IndexSearcher(reader);
+        if (sliceThreads > 0) {
+            // daemon threads, so that they never keep the JVM alive if the searcher is not used
+            sliceExecutor = Executors.newFixedThreadPool(sliceThreads, r -> {
+                final Thread t = new Thread(r, "searcher-slice");
+                t.setDaemon(true);
+                return t;
+            });
+            searcher = newSlicedSearcher(reader, sliceExecutor, maxDocsPerSlice, maxSegmentsPerSlice);
+        } else {
+            sliceExecutor = null;
+            searcher = new IndexSearcher(reader);
+        }
         searcher.setSimilarity(similarity);
 
         if (topicsFile == null) {
@@ -233,6 +316,8 @@ public class Searcher {
 
         qp = new QueryParser(ParsedDocument.FIELDS.BODY, analyzer);
 
+        this.analyzer = analyzer;
+
         if (runID == null) {
             throw new NullPointerException("Run identifier cannot be null.");
         }
@@ -263,15 +348,7 @@ public class Searcher {
                                                              runDir.toAbsolutePath().toString()));
         }
 
-        Path runFile = runDir.resolve(runID + ".txt");
-        try {
-            run = new PrintWriter(Files.newBufferedWriter(runFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
-                                                          StandardOpenOption.TRUNCATE_EXISTING,
-                                                          StandardOpenOption.WRITE));
-        } catch (IOException e) {
-            throw new IllegalArgumentException(
-                    String.format("Unable to open run file %s: %s.", runFile.toAbsolutePath(), e.getMessage()), e);
-        }
+        runFile = runDir.resolve(runID + ".txt");
 
         if (maxDocsRetrieved <= 0) {
             throw new IllegalArgumentException(
@@ -281,6 +358,45 @@ public class Searcher {
         this.maxDocsRetrieved = maxDocsRetrieved;
     }
 
+    /**
+     * Enables caching the hits of the queries, so that queries already searched, in this run or, with a spill
+     * directory, in previous ones, are not scored again. It has to be called before searching.
+     *
+     * @param maxEntries the maximum number of queries whose hits are kept in memory.
+     * @param spillPath  the directory where to spill the hits of the queries, or {@code null} to keep them in memory
+     *                   only.
+     * @throws IllegalArgumentException if {@code maxEntries} is less than or equal to zero.
+     * @throws IOException              if the index commit or the spill directory cannot be accessed.
+     */
+    public void enableResultCache(final int maxEntries, final String spillPath) throws IOException {
+        cache = new ResultCache((DirectoryReader) reader, searcher.getSimilarity(), maxDocsRetrieved, maxEntries,
+                                spillPath);
+    }
+
+    /**
+     * Warms up the index before searching, so that the first topics are not slower than the following ones: the index
+     * files with the given extensions are preloaded into the page cache and then a sample of a past topic file is
+     * searched twice, reporting the latency of the cold and warm passes. It has to be called before searching.
+     *
+     * @param topicsFile        the past topic file.
+     * @param sampleSize        the number of topics to replay, or zero to replay all of them.
+     * @param preloadExtensions the extensions of the index files to preload, or none to preload all the files.
+     * @return the warmer, holding the latency of the cold and warm passes.
+     * @throws IOException    if something goes wrong while preloading or searching.
+     * @throws ParseException if something goes wrong while parsing the topics.
+     * @see IndexWarmer
+     */
+    public IndexWarmer warmUp(final String topicsFile, final int sampleSize, final String... preloadExtensions)
+            throws IOException, ParseException {
+
+        IndexWarmer.preload(((FSDirectory) ((DirectoryReader) reader).directory()).getDirectory(), preloadExtensions);
+
+        final IndexWarmer warmer = new IndexWarmer(searcher, analyzer, maxDocsRetrieved);
+        warmer.replay(topicsFile, sampleSize);
+
+        return warmer;
+    }
+
     /**
      * Returns the total elapsed time.
      *
@@ -303,14 +419,11 @@ public class Searcher {
         // the start time of the searching
         final long start = System.currentTimeMillis();
 
-        final Set<String> idField = new HashSet<>();
-        idField.add(ParsedDocument.FIELDS.ID);
+        openRun();
 
-        BooleanQuery.Builder bq = null;
-        Query q = null;
-        TopDocs docs = null;
-        ScoreDoc[] sd = null;
-        String docID = null;
+        // the same hits and lines are reused for all the topics
+        final RunCollector hits = new RunCollector(maxDocsRetrieved);
+        final RunWriter.Lines out = run.newLines();
 
         try {
 
@@ -318,40 +431,404 @@ public class Searcher {
 
                 System.out.printf(" Searching for topic %s | %s .%n", t.getQueryID(), t.getValue(TOPIC_FIELDS.TITLE));
 
-                bq = new BooleanQuery.Builder();
+                out.clear();
+                searchTopic(t, qp, hits, out);
 
-                bq.add(qp.parse(QueryParserBase.escape(t.getValue(TOPIC_FIELDS.TITLE))), BooleanClause.Occur.SHOULD);
-                //bq.add(qp.parse(QueryParserBase.escape(t.getValue(TOPIC_FIELDS.DESCRIPTION))), BooleanClause.Occur.SHOULD);
+                run.write(out);
 
-                q = bq.build();
+            }
+        } finally {
+            close();
+        }
 
-                docs = searcher.search(q, maxDocsRetrieved);
+        elapsedTime = System.currentTimeMillis() - start;
+
+        System.out.printf("%d topic(s) searched in %d seconds.%n", topics.length, elapsedTime / 1000);
+
+        if (cache != null) {
+            cache.report();
+        }
+
+        System.out.printf("#### Searching complete ####%n");
+    }
+
+    /**
+     * Searches for the specified topics concurrently.
+     * <p>
+     * Topics are searched by a pool of threads, each with its own query parser and collector, while the calling thread
+     * writes the run in the original order of the topics: the results of topics completed out of order wait in a
+     * reorder buffer until all the preceding topics have been written. At most {@code 4 * threads} topics are pending
+     * at any time, so that the buffer stays bounded, and the lines of the topics written are reused for the next ones.
+     *
+     * @param threads the number of threads searching topics.
+     * @throws IOException              if something goes wrong while searching.
+     * @throws ParseException           if something goes wrong while parsing topics.
+     * @throws IllegalArgumentException if {@code threads} is less than or equal to zero.
+     */
+    public void search(final int threads) throws IOException, ParseException {
+
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The number of searching threads cannot be less than or equal to zero.");
+        }
+
+        System.out.printf("%n#### Start searching with %d thread(s) ####%n", threads);
+
+        // the start time of the searching
+        final long start = System.currentTimeMillis();
+
+        openRun();
+
+        // query parsers and collectors are not thread-safe, so each thread has its own
+        final ThreadLocal<QueryParser> parsers = ThreadLocal.withInitial(
+                () -> new QueryParser(ParsedDocument.FIELDS.BODY, analyzer));
+        final ThreadLocal<RunCollector> collectors = ThreadLocal.withInitial(() -> new RunCollector(maxDocsRetrieved));
+
+        // lines of topics already written, ready to be filled again
+        final Queue<RunWriter.Lines> free = new ConcurrentLinkedQueue<>();
+
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final CompletionService<Map.Entry<Integer, RunWriter.Lines>> cs = new ExecutorCompletionService<>(pool);
+
+        // results of topics completed before all the preceding ones, keyed by topic position
+        final Map<Integer, RunWriter.Lines> reorder = new HashMap<>();
+
+        final int window = 4 * threads;
+        int submitted = 0;
+        int written = 0;
+
+        try {
 
-                sd = docs.scoreDocs;
+            while (written < topics.length) {
 
-                for (int i = 0, n = sd.length; i < n; i++) {
-                    docID = reader.document(sd[i].doc, idField).get(ParsedDocument.FIELDS.ID);
+                while (submitted < topics.length && submitted - written < window) {
 
-                    run.printf(Locale.ENGLISH, " %s Q0 %s %d %.6f %s%n", t.getQueryID(), docID, i, sd[i].score,
-                               runID);
+                    final int pos = submitted++;
+                    final QualityQuery t = topics[pos];
+
+                    cs.submit(() -> {
+                        RunWriter.Lines out = free.poll();
+                        if (out == null) {
+                            out = run.newLines();
+                        }
+                        out.clear();
+                        searchTopic(t, parsers.get(), collectors.get(), out);
+                        return Map.entry(pos, out);
+                    });
                 }
 
-                run.flush();
+                final Map.Entry<Integer, RunWriter.Lines> r = cs.take().get();
+                reorder.put(r.getKey(), r.getValue());
+
+                for (RunWriter.Lines out = reorder.remove(written); out != null; out = reorder.remove(written)) {
 
+                    System.out.printf(" Searched topic %s | %s .%n", topics[written].getQueryID(),
+                                      topics[written].getValue(TOPIC_FIELDS.TITLE));
+
+                    run.write(out);
+                    free.add(out);
+                    written++;
+                }
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while searching.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof ParseException) {
+                throw (ParseException) e.getCause();
             }
+            throw new IllegalStateException(String.format("Unable to search topics: %s.", e.getCause().getMessage()),
+                                            e.getCause());
         } finally {
-            run.close();
+            pool.shutdownNow();
 
-            reader.close();
+            close();
         }
 
         elapsedTime = System.currentTimeMillis() - start;
 
         System.out.printf("%d topic(s) searched in %d seconds.%n", topics.length, elapsedTime / 1000);
 
+        if (cache != null) {
+            cache.report();
+        }
+
         System.out.printf("#### Searching complete ####%n");
     }
 
+    /**
+     * Compares the latency of each topic when scored by the searching thread alone and when scored on the slices of
+     * the index in parallel, printing the timings of each topic and their summary. No run is written and the run file,
+     * opened only by the {@code search} methods, is left untouched.
+     * <p>
+     * All the topics are searched once with both searchers before timing, so that neither pays for class loading and
+     * JIT compilation; then each topic is searched {@code rounds} times with each searcher and the fastest time is
+     * kept.
+     *
+     * @param rounds the number of times each topic is searched with each searcher.
+     * @throws IOException              if something goes wrong while searching.
+     * @throws ParseException           if something goes wrong while parsing topics.
+     * @throws IllegalArgumentException if {@code rounds} is less than or equal to zero.
+     * @throws IllegalStateException    if the searcher has been created without slicing threads.
+     */
+    public void compareLatency(final int rounds) throws IOException, ParseException {
+
+        if (rounds <= 0) {
+            throw new IllegalArgumentException("The number of rounds cannot be less than or equal to zero.");
+        }
+
+        if (sliceExecutor == null) {
+            throw new IllegalStateException("Unable to compare latency: the searcher has no slicing threads.");
+        }
+
+        System.out.printf("%n#### Start comparing latency: %d segment(s), %d slice(s) ####%n", reader.leaves().size(),
+                          searcher.getSlices().length);
+
+        // the start time of the comparison
+        final long start = System.currentTimeMillis();
+
+        final IndexSearcher plain = new IndexSearcher(reader);
+        plain.setSimilarity(searcher.getSimilarity());
+
+        final long[] plainTimes = new long[topics.length];
+        final long[] slicedTimes = new long[topics.length];
+
+        try {
+
+            for (QualityQuery t : topics) {
+                final Query q = buildQuery(t, qp);
+                plain.search(q, maxDocsRetrieved);
+                searcher.search(q, maxDocsRetrieved);
+            }
+
+            for (int i = 0; i < topics.length; i++) {
+
+                final Query q = buildQuery(topics[i], qp);
+
+                plainTimes[i] = time(plain, q, rounds);
+                slicedTimes[i] = time(searcher, q, rounds);
+
+                System.out.printf(Locale.ENGLISH, " Topic %s: %.3f ms plain, %.3f ms sliced (%.2fx).%n",
+                                  topics[i].getQueryID(), plainTimes[i] / 1E6, slicedTimes[i] / 1E6,
+                                  (double) plainTimes[i] / Math.max(1, slicedTimes[i]));
+            }
+
+        } finally {
+            close();
+        }
+
+        elapsedTime = System.currentTimeMillis() - start;
+
+        for (String mode : new String[]{"plain", "sliced"}) {
+
+            final long[] times = mode.equals("plain") ? plainTimes : slicedTimes;
+            final long[] sorted = times.clone();
+            Arrays.sort(sorted);
+
+            System.out.printf(Locale.ENGLISH, "%s: mean %.3f ms, p50 %.3f ms, p95 %.3f ms, max %.3f ms.%n", mode,
+                              Arrays.stream(times).average().orElse(0) / 1E6, percentile(sorted, 0.50) / 1E6,
+                              percentile(sorted, 0.95) / 1E6, percentile(sorted, 1) / 1E6);
+        }
+
+        System.out.printf("%d topic(s) compared in %d seconds.%n", topics.length, elapsedTime / 1000);
+
+        System.out.printf("#### Comparing latency complete ####%n");
+    }
+
+    /**
+     * Returns the fastest of several executions of a query.
+     *
+     * @param s      the searcher executing the query.
+     * @param q      the query.
+     * @param rounds the number of executions.
+     * @return the time of the fastest execution, in nanoseconds.
+     * @throws IOException if something goes wrong while searching.
+     */
+    private long time(final IndexSearcher s, final Query q, final int rounds) throws IOException {
+
+        long best = Long.MAX_VALUE;
+
+        for (int r = 0; r < rounds; r++) {
+            final long t = System.nanoTime();
+            s.search(q, maxDocsRetrieved);
+            best = Math.min(best, System.nanoTime() - t);
+        }
+
+        return best;
+    }
+
+    /**
+     * Returns a percentile of sorted values.
+     *
+     * @param sorted the values, sorted in ascending order.
+     * @param p      the percentile, between 0 and 1.
+     * @return the percentile of the values, or 0 if there are none.
+     */
+    static long percentile(final long[] sorted, final double p) {
+        return sorted.length == 0 ? 0 : sorted[Math.max(0, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    /**
+     * Creates an {@code IndexSearcher} which scores each query on several slices of the index in parallel.
+     * <p>
+     * {@code IndexSearcher} computes its slices while being constructed, before the fields of a subclass are
+     * assigned, so the sizes of the slices are captured by an anonymous subclass instead.
+     *
+     * @param reader              the index reader.
+     * @param executor            the threads scoring the slices.
+     * @param maxDocsPerSlice     the maximum number of documents of a slice.
+     * @param maxSegmentsPerSlice the maximum number of segments of a slice.
+     * @return the searcher.
+     */
+    private static IndexSearcher newSlicedSearcher(final IndexReader reader, final Executor executor,
+                                                   final int maxDocsPerSlice, final int maxSegmentsPerSlice) {
+        return new IndexSearcher(reader, executor) {
+            @Override
+            protected LeafSlice[] slices(final List<LeafReaderContext> leaves) {
+                return slices(leaves, maxDocsPerSlice, maxSegmentsPerSlice);
+            }
+        };
+    }
+
+    /**
+     * Builds the query for a topic.
+     *
+     * @param t  the topic.
+     * @param qp the query parser to be used.
+     * @return the query for the topic.
+     * @throws ParseException if something goes wrong while parsing the topic.
+     */
+    private Query buildQuery(final QualityQuery t, final QueryParser qp) throws ParseException {
+        return buildQuery(t.getValue(TOPIC_FIELDS.TITLE), qp);
+    }
+
+    /**
+     * Builds the query for the title of a topic.
+     *
+     * @param title the title of the topic.
+     * @param qp    the query parser to be used.
+     * @return the query for the title.
+     * @throws ParseException if something goes wrong while parsing the title.
+     */
+    static Query buildQuery(final String title, final QueryParser qp) throws ParseException {
+
+        final BooleanQuery.Builder bq = new BooleanQuery.Builder();
+
+        bq.add(qp.parse(QueryParserBase.escape(title)), BooleanClause.Occur.SHOULD);
+        //bq.add(qp.parse(QueryParserBase.escape(t.getValue(TOPIC_FIELDS.DESCRIPTION))), BooleanClause.Occur.SHOULD);
+
+        return bq.build();
+    }
+
+    /**
+     * Opens the run file, truncating any previous run with the same identifier.
+     *
+     * @throws IOException if the run file cannot be opened.
+     */
+    private void openRun() throws IOException {
+
+        try {
+            run = new RunWriter(runFile, runID);
+        } catch (IOException e) {
+            // the searcher cannot be used anymore, as with any other failure while searching
+            close();
+            throw new IOException(
+                    String.format("Unable to open run file %s: %s.", runFile.toAbsolutePath(), e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Closes the run, if opened, the index reader and the slicing threads, spilling the result cache if any.
+     *
+     * @throws IOException if something goes wrong while closing the index reader.
+     */
+    private void close() throws IOException {
+
+        if (cache != null) {
+            cache.close();
+        }
+
+        try {
+            if (run != null) {
+                run.close();
+            }
+        } finally {
+            try {
+                reader.close();
+            } finally {
+                if (sliceExecutor != null) {
+                    sliceExecutor.shutdownNow();
+                }
+            }
+        }
+    }
+
+    /**
+     * Searches for a topic and appends its lines of the run to the given output.
+     *
+     * @param t    the topic to search for.
+     * @param qp   the query parser to be used.
+     * @param hits the collector of the hits, reused across topics.
+     * @param out  the output where to append the lines of the run.
+     * @throws IOException    if something goes wrong while searching.
+     * @throws ParseException if something goes wrong while parsing the topic.
+     */
+    private void searchTopic(final QualityQuery t, final QueryParser qp, final RunCollector hits,
+                             final RunWriter.Lines out) throws IOException, ParseException {
+
+        final Query q = buildQuery(t, qp);
+
+        final byte[] topic = t.getQueryID().getBytes(StandardCharsets.UTF_8);
+
+        final String key = cache == null ? null : cache.key(q);
+        final ResultCache.Hits cached = key == null ? null : cache.get(key);
+
+        RunCollector top = hits;
+        top.reset();
+
+        if (cached != null) {
+            // the query has already been searched: no need to score it again
+            top.load(cached);
+        } else {
+            top = score(searcher, q, top, maxDocsRetrieved);
+        }
+
+        if (cached == null && cache != null) {
+            cache.put(key, top.hits());
+        }
+
+        top.write(topic, ids, out);
+    }
+
+    /**
+     * Scores a query, on the slices of the index in parallel if the searcher has been created with an executor. Both
+     * the topics searched and the ones replayed by {@link IndexWarmer} are scored this way, so that warming up runs
+     * the same code as searching.
+     *
+     * @param s                the searcher scoring the query.
+     * @param q                the query.
+     * @param hits             the collector of the hits, already reset, used when the query is scored by the calling
+     *                         thread alone.
+     * @param maxDocsRetrieved the maximum number of documents to retrieve.
+     * @return the collector holding the hits of the query, either {@code hits} or the merge of the collectors of the
+     * slices.
+     * @throws IOException if something goes wrong while searching.
+     */
+    static RunCollector score(final IndexSearcher s, final Query q, final RunCollector hits,
+                              final int maxDocsRetrieved) throws IOException {
+
+        if (s.getExecutor() == null) {
+            s.search(q, hits);
+            return hits;
+        }
+
+        // each slice needs its own collector
+        return s.search(q, RunCollector.manager(maxDocsRetrieved));
+    }
+
     /**
      * Main method of the class. Just for testing purposes.
      *
@@ -376,8 +853,18 @@ public class Searcher {
 
         Searcher s = new Searcher(a, sim, indexPath, topics, 672, runID, runPath, maxDocsRetrieved);
 
+        // hits of queries repeated across topic sets are reused from code/experiment/cache
+        //s.enableResultCache(10000, "code/experiment/cache");
+
+        // preload the compound files and replay 100 training topics before searching
+        s.warmUp(topics, 100, "cfs");
+
         s.search();
 
+        // per-topic latency with and without scoring slices of at most 250000 docs or 5 segments in parallel
+        //Searcher l = new Searcher(a, sim, indexPath, topics, 672, runID, runPath, maxDocsRetrieved, Runtime.getRuntime().availableProcessors(), 250000, 5);
+        //l.compareLatency(5);
+
 
     }
 
@@ -45,7 +45,7 @@ import java.util.Arrays;
 import java.util.regex.Pattern;
 
 import static it.unipd.dei.dards.analysis.AnalyzerUtil.consumeTokenStream;
-import static it.unipd.dei.dards.analysis.AnalyzerUtil.loadStopList;
+import static it.unipd.dei.dards.analysis.ResourceRegistry.stopList;
 import static org.apache.lucene.analysis.AnalysisSPILoader.newFactoryClassInstance;
 
 /**
@@ -72,13 +72,13 @@ public class MyFrenchAnalyzer extends Analyzer {
 
 
 
-        TokenStream  tokens= new ElisionFilter(source, loadStopList("french-arcticles.txt"));
+        TokenStream  tokens= new ElisionFilter(source, stopList("french-arcticles.txt"));
 
         tokens = new LowerCaseFilter(tokens);
-        //tokens = new StopFilter(tokens, loadStopList("snowball.txt"));
-        //tokens = new StopFilter(tokens, loadStopList("smart.txt"));
-        tokens = new StopFilter(tokens, loadStopList("stopwords-fr.txt"));
-        //tokens = new StopFilter(tokens, loadStopList("url-stoplist.txt"));
+        //tokens = new StopFilter(tokens, stopList("snowball.txt"));
+        //tokens = new StopFilter(tokens, stopList("smart.txt"));
+        tokens = new StopFilter(tokens, stopList("stopwords-fr.txt"));
+        //tokens = new StopFilter(tokens, stopList("url-stoplist.txt"));
 
         //tokens= new NumberFilter(tokens);
 
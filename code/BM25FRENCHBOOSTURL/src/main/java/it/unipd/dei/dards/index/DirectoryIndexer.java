@@ -16,11 +16,11 @@
 
 package it.unipd.dei.dards.index;
 
-import com.univocity.parsers.tsv.TsvParser;
-import com.univocity.parsers.tsv.TsvParserSettings;
 import it.unipd.dei.dards.parse.DocumentParser;
 import it.unipd.dei.dards.parse.ParsedDocument;
 import it.unipd.dei.dards.parse.LongEvalParser;
+import it.unipd.dei.dards.utils.StatsUtils;
+import it.unipd.dei.dards.utils.UrlStore;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.core.LowerCaseFilterFactory;
 import org.apache.lucene.analysis.core.StopFilterFactory;
@@ -29,18 +29,18 @@ import org.apache.lucene.analysis.en.KStemFilterFactory;
 import org.apache.lucene.analysis.standard.StandardTokenizerFactory;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.*;
 import org.apache.lucene.search.similarities.*;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
 
-import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.util.HashMap;
 import java.util.List;
 
 /**
@@ -72,6 +72,11 @@ public class DirectoryIndexer {
      */
     private final Path docsDir;
 
+    /**
+     * The directory where the index is stored.
+     */
+    private final Path indexDir;
+
     /**
      * The extension of the files to be indexed.
      */
@@ -112,6 +117,11 @@ public class DirectoryIndexer {
      */
     private final String urlFile;
 
+    /**
+     * The file where the document id-url pairs are stored for lookup, next to the index.
+     */
+    private final Path urlStoreFile;
+
 
     /**
      * Creates a new indexer.
@@ -212,6 +222,8 @@ public class DirectoryIndexer {
 
         this.docsDir = docsDir;
 
+        this.indexDir = indexDir;
+
 
         if (urlFile == null) {
             throw new NullPointerException("Url file path cannot be null.");
@@ -219,6 +231,8 @@ public class DirectoryIndexer {
 
         this.urlFile=urlFile;
 
+        this.urlStoreFile = indexDir.resolveSibling(indexDir.getFileName() + "-urls.store");
+
         if (extension == null) {
             throw new NullPointerException("File extension cannot be null.");
         }
@@ -357,9 +371,11 @@ public class DirectoryIndexer {
         this.start = System.currentTimeMillis();
         this.dpCls=null;
         this.docsDir=null;
+        this.indexDir=indexDir;
         this.extension=null;
         this.cs=null;
         this.urlFile=null;
+        this.urlStoreFile=null;
     }
 
     /**
@@ -371,14 +387,9 @@ public class DirectoryIndexer {
 
         System.out.printf("%n#### Start indexing ####%n");
 
-        TsvParserSettings settings = new TsvParserSettings();
-        settings.getFormat().setLineSeparator("\n");
-        TsvParser parser = new TsvParser(settings);
-        List<String[]> urlList = parser.parseAll(new File(urlFile));
-        HashMap<String,String> urlMap=new HashMap<>();
-        for(String[] pair:urlList){
-            urlMap.put(pair[0],pair[1]);
-        }
+        // built only the first time, or when the url file changes, and then mapped instead of loaded on the heap
+        final UrlStore urlMap = UrlStore.open(Paths.get(urlFile), urlStoreFile);
+
         Files.walkFileTree(docsDir, new SimpleFileVisitor<Path>() {
             @Override
             public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
@@ -399,6 +410,9 @@ public class DirectoryIndexer {
                         // add the document identifier
                         doc.add(new StringField(ParsedDocument.FIELDS.ID, pd.getIdentifier(), Field.Store.YES));
 
+                        // and its doc values, so that searching resolves hits to identifiers without reading stored fields
+                        doc.add(new SortedDocValuesField(ParsedDocument.FIELDS.ID, new BytesRef(pd.getIdentifier())));
+
                         // add the document body
                         doc.add(new BodyField(pd.getBody()));
                         //System.out.println(pd.getIdentifier());
@@ -429,6 +443,9 @@ public class DirectoryIndexer {
 
         writer.close();
 
+        // compute the term weights once per commit, instead of every time a searcher starts
+        StatsUtils.updateTermWeights(indexDir.toString());
+
         if (docsCount != expectedDocs) {
             System.out.printf("Expected to index %d documents; %d indexed instead.%n", expectedDocs, docsCount);
         }
@@ -450,6 +467,10 @@ public class DirectoryIndexer {
         System.out.printf("%n#### Start re-indexing from documents ####%n");
         docsCount=0;
         for(Document d: docs){
+            // documents read back from an index carry only their stored fields, doc values must be added again
+            if (d.getField(ParsedDocument.FIELDS.ID) != null && d.getBinaryValue(ParsedDocument.FIELDS.ID) == null) {
+                d.add(new SortedDocValuesField(ParsedDocument.FIELDS.ID, new BytesRef(d.get(ParsedDocument.FIELDS.ID))));
+            }
             writer.addDocument(d);
             docsCount++;
 
@@ -16,9 +16,10 @@
 
 package it.unipd.dei.dards.parse;
 
+import it.unipd.dei.dards.utils.UrlStore;
+
 import java.io.IOException;
 import java.io.Reader;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -43,19 +44,19 @@ public abstract class DocumentParser
     protected final Reader in;
 
     /**
-     * List containing document_id-url pairs
+     * Store containing document_id-url pairs
      */
-    protected HashMap<String,String> urlMap;
+    protected UrlStore urlMap;
 
 
     /**
      * Creates a new document parser.
      *
      * @param in the reader to the document(s) to be parsed.
-     * @param urlMap the map containing the document identifiers as url and the ulrs as values.
+     * @param urlMap the store containing the url of each document, keyed by document identifier.
      * @throws NullPointerException if {@code in} is {@code null}.
      */
-    protected DocumentParser(final Reader in, final HashMap<String,String> urlMap) {
+    protected DocumentParser(final Reader in, final UrlStore urlMap) {
 
         if (in == null) {
             throw new NullPointerException("Reader cannot be null.");
@@ -110,12 +111,12 @@ public abstract class DocumentParser
      *
      * @param cls the class of the document parser to be instantiated.
      * @param in  the reader to the document(s) to be parsed.
-     * @param urlMap the map containing the document identifiers as url and the ulrs as values.
+     * @param urlMap the store containing the url of each document, keyed by document identifier.
      * @return a new instance of {@code DocumentParser} for the given class.
      * @throws NullPointerException  if {@code cls} and/or {@code in} are {@code null}.
      * @throws IllegalStateException if something goes wrong in instantiating the class.
      */
-    public static final DocumentParser create(Class<? extends DocumentParser> cls, Reader in, final HashMap<String,String> urlMap) {
+    public static final DocumentParser create(Class<? extends DocumentParser> cls, Reader in, final UrlStore urlMap) {
 
         if (cls == null) {
             throw new NullPointerException("Document parser class cannot be null.");
@@ -127,7 +128,7 @@ public abstract class DocumentParser
 
 
         try {
-            return cls.getConstructor(Reader.class,HashMap.class).newInstance(in,urlMap);
+            return cls.getConstructor(Reader.class,UrlStore.class).newInstance(in,urlMap);
         } catch (Exception e) {
             throw new IllegalStateException(String.format("Unable to instantiate document parser %s.", cls.getName()),
                                             e);
@@ -142,12 +143,12 @@ public abstract class DocumentParser
      *
      * @param cls the fully qualified name of class of the document parser to be instantiated.
      * @param in  the reader to the document(s) to be parsed.
-     * @param urlMap the map containing the document identifiers as url and the ulrs as values.
+     * @param urlMap the store containing the url of each document, keyed by document identifier.
      * @return a new instance of {@code DocumentParser} for the given class.
      * @throws NullPointerException  if {@code cls} and/or {@code in} are {@code null}.
      * @throws IllegalStateException if something goes wrong in instantiating the class.
      */
-    public static final DocumentParser create(String cls, Reader in,HashMap<String,String> urlMap) {
+    public static final DocumentParser create(String cls, Reader in,UrlStore urlMap) {
 
         if (cls == null || cls.isBlank()) {
             throw new NullPointerException("Document parser class cannot be null or empty.");
@@ -16,8 +16,10 @@
 
 package it.unipd.dei.dards.parse;
 
+import it.unipd.dei.dards.utils.UrlStore;
+
 import java.io.*;
-import java.util.HashMap;
+import java.nio.file.Paths;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -50,11 +52,11 @@ public class LongEvalParser extends it.unipd.dei.dards.parse.DocumentParser {
      * Creates a new LongEval Corpus document parser.
      *
      * @param in the reader to the document(s) to be parsed.
-     * @param urlMap the map containing the document identifiers as url and the ulrs as values.
+     * @param urlMap the store containing the url of each document, keyed by document identifier.
      * @throws NullPointerException     if {@code in} is {@code null}.
      * @throws IllegalArgumentException if any error occurs while creating the parser.
      */
-    public LongEvalParser(final Reader in, final HashMap<String,String> urlMap) {
+    public LongEvalParser(final Reader in, final UrlStore urlMap) {
         super(new BufferedReader(in),urlMap);
 
     }
@@ -136,7 +138,7 @@ public class LongEvalParser extends it.unipd.dei.dards.parse.DocumentParser {
         Reader reader = new FileReader(
                 "./input/English/Documents/Trec/collector_kodicare_1.txt");
 
-        HashMap<String,String> map=new HashMap<String,String>();
+        UrlStore map=UrlStore.open(Paths.get("./input/French/urls.txt"), Paths.get("urls.store"));
         LongEvalParser p = new LongEvalParser(reader,map);
 
         for (it.unipd.dei.dards.parse.ParsedDocument d : p) {
@@ -0,0 +1,345 @@
+/*
+ *  Copyright 2021-2022 University of Padua, Italy
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unipd.dei.dards.search;
+
+import it.unipd.dei.dards.parse.ParsedDocument;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Resolves the internal Lucene document number of a hit to the identifier of the document, without reading stored
+ * fields.
+ * <p>
+ * The identifiers are read once from the {@code SortedDocValues} of the {@link ParsedDocument.FIELDS#ID} field, one
+ * segment after the other, and kept in memory for the whole reader. When all of them are made of the same prefix
+ * followed by the same number of digits, as the {@code doc...} identifiers of the LongEval corpus, only their numbers
+ * are kept; otherwise their bytes are. Indexes without doc values for the identifiers are still supported by reading
+ * the stored identifier of each hit.
+ * <p>
+ * Once created, the resolver is immutable and can be shared among threads.
+ *
+ * @author DARDS
+ * @version 1.00
+ * @since 1.00
+ */
+public class IdResolver {
+
+    /**
+     * The maximum number of digits of an identifier encoded as a number.
+     */
+    private static final int MAX_DIGITS = 18;
+
+    /**
+     * The stored field to read when the index has no doc values for the identifiers.
+     */
+    private static final Set<String> ID_FIELD = Collections.singleton(ParsedDocument.FIELDS.ID);
+
+    /**
+     * The index reader.
+     */
+    private final IndexReader reader;
+
+    /**
+     * The prefix shared by all the identifiers, if they are encoded as numbers.
+     */
+    private final char[] prefix;
+
+    /**
+     * The number of digits following the prefix, if the identifiers are encoded as numbers.
+     */
+    private final int digits;
+
+    /**
+     * The number of each document, or -1 if it has no identifier; {@code null} if the identifiers are not encoded as
+     * numbers.
+     */
+    private final long[] numbers;
+
+    /**
+     * The bytes of the identifiers of all the documents, one after the other; {@code null} if the identifiers are
+     * encoded as numbers or read from stored fields.
+     */
+    private final byte[] ids;
+
+    /**
+     * The position of the identifier of each document in {@link #ids}, followed by the length of {@link #ids}.
+     */
+    private final int[] offsets;
+
+    /**
+     * Creates a new resolver for the given reader.
+     *
+     * @param reader the index reader.
+     * @throws NullPointerException if {@code reader} is {@code null}.
+     * @throws IOException          if something goes wrong while reading the doc values.
+     */
+    public IdResolver(final IndexReader reader) throws IOException {
+
+        if (reader == null) {
+            throw new NullPointerException("Index reader cannot be null.");
+        }
+
+        this.reader = reader;
+
+        final long start = System.currentTimeMillis();
+
+        // check whether all the segments have doc values and whether all the identifiers share prefix and length
+        boolean docValues = true;
+        boolean numeric = true;
+        byte[] p = null;
+        int d = -1;
+
+        for (LeafReaderContext lrc : reader.leaves()) {
+
+            final SortedDocValues dv = lrc.reader().getSortedDocValues(ParsedDocument.FIELDS.ID);
+
+            if (dv == null) {
+                if (lrc.reader().maxDoc() > 0) {
+                    docValues = false;
+                }
+                continue;
+            }
+
+            final TermsEnum te = dv.termsEnum();
+            for (BytesRef id = te.next(); id != null && numeric; id = te.next()) {
+
+                final int ds = digitsStart(id);
+                final int n = id.length - ds;
+
+                if (n == 0 || n > MAX_DIGITS) {
+                    numeric = false;
+                } else if (p == null) {
+                    p = Arrays.copyOfRange(id.bytes, id.offset, id.offset + ds);
+                    d = n;
+                } else if (n != d || !Arrays.equals(p, 0, p.length, id.bytes, id.offset, id.offset + ds)) {
+                    numeric = false;
+                }
+            }
+        }
+
+        if (!docValues) {
+
+            prefix = null;
+            digits = 0;
+            numbers = null;
+            ids = null;
+            offsets = null;
+
+            System.out.printf("No doc values for document identifiers: they will be read from stored fields.%n");
+
+        } else if (numeric) {
+
+            prefix = p == null ? new char[0] : new String(p, StandardCharsets.UTF_8).toCharArray();
+            digits = d;
+            numbers = new long[reader.maxDoc()];
+            ids = null;
+            offsets = null;
+
+            Arrays.fill(numbers, -1);
+
+            for (LeafReaderContext lrc : reader.leaves()) {
+
+                final SortedDocValues dv = lrc.reader().getSortedDocValues(ParsedDocument.FIELDS.ID);
+
+                if (dv == null) {
+                    continue;
+                }
+
+                // decode each distinct identifier once, in order, then assign it to its document(s)
+                final long[] values = new long[dv.getValueCount()];
+                final TermsEnum te = dv.termsEnum();
+                int ord = 0;
+                for (BytesRef id = te.next(); id != null; id = te.next()) {
+                    values[ord++] = parseDigits(id, id.length - digits);
+                }
+
+                for (int doc = dv.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = dv.nextDoc()) {
+                    numbers[lrc.docBase + doc] = values[dv.ordValue()];
+                }
+            }
+
+            System.out.printf("%d document identifier(s) loaded as numbers from doc values in %d ms.%n",
+                              reader.maxDoc(), System.currentTimeMillis() - start);
+
+        } else {
+
+            prefix = null;
+            digits = 0;
+            numbers = null;
+            offsets = new int[reader.maxDoc() + 1];
+
+            byte[] pool = new byte[1 << 16];
+            int size = 0;
+            int next = 0;
+
+            for (LeafReaderContext lrc : reader.leaves()) {
+
+                final SortedDocValues dv = lrc.reader().getSortedDocValues(ParsedDocument.FIELDS.ID);
+
+                if (dv == null) {
+                    continue;
+                }
+
+                for (int doc = dv.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = dv.nextDoc()) {
+
+                    final int global = lrc.docBase + doc;
+
+                    // documents without identifier have an empty one
+                    for (; next < global; next++) {
+                        offsets[next + 1] = offsets[next];
+                    }
+
+                    final BytesRef id = dv.lookupOrd(dv.ordValue());
+
+                    if (size + id.length > pool.length) {
+                        pool = Arrays.copyOf(pool, Math.max(size + id.length, 2 * pool.length));
+                    }
+
+                    System.arraycopy(id.bytes, id.offset, pool, size, id.length);
+                    size += id.length;
+
+                    offsets[global + 1] = size;
+                    next = global + 1;
+                }
+            }
+
+            for (; next < reader.maxDoc(); next++) {
+                offsets[next + 1] = offsets[next];
+            }
+
+            ids = Arrays.copyOf(pool, size);
+
+            System.out.printf("%d document identifier(s) loaded from doc values in %d ms.%n", reader.maxDoc(),
+                              System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Returns the position of the trailing digits of an identifier.
+     *
+     * @param id the identifier.
+     * @return the position, relative to the identifier, of its first trailing digit, or its length if it does not end
+     * with a digit.
+     */
+    private static int digitsStart(final BytesRef id) {
+
+        int i = id.length;
+
+        while (i > 0 && id.bytes[id.offset + i - 1] >= '0' && id.bytes[id.offset + i - 1] <= '9') {
+            i--;
+        }
+
+        return i;
+    }
+
+    /**
+     * Parses the trailing digits of an identifier.
+     *
+     * @param id   the identifier.
+     * @param from the position, relative to the identifier, of its first trailing digit.
+     * @return the number made of the trailing digits.
+     */
+    private static long parseDigits(final BytesRef id, final int from) {
+
+        long value = 0;
+
+        for (int i = from; i < id.length; i++) {
+            value = 10 * value + (id.bytes[id.offset + i] - '0');
+        }
+
+        return value;
+    }
+
+    /**
+     * Returns the identifier of the given document.
+     *
+     * @param doc the internal Lucene number of the document.
+     * @return the identifier of the document, or {@code null} if it has none.
+     * @throws IOException if something goes wrong while reading the stored identifier.
+     */
+    public String get(final int doc) throws IOException {
+
+        if (numbers != null) {
+
+            long value = numbers[doc];
+
+            if (value < 0) {
+                return null;
+            }
+
+            // the prefix followed by the number, padded with zeros
+            final char[] id = Arrays.copyOf(prefix, prefix.length + digits);
+            for (int i = id.length - 1; i >= prefix.length; i--) {
+                id[i] = (char) ('0' + value % 10);
+                value /= 10;
+            }
+
+            return new String(id);
+        }
+
+        if (ids != null) {
+            return offsets[doc] == offsets[doc + 1] ? null : new String(ids, offsets[doc],
+                                                                         offsets[doc + 1] - offsets[doc],
+                                                                         StandardCharsets.UTF_8);
+        }
+
+        // stored fields cannot be shared among threads, while the resolver can
+        return reader.storedFields().document(doc, ID_FIELD).get(ParsedDocument.FIELDS.ID);
+    }
+
+    /**
+     * Main method of the class. Just for testing purposes.
+     *
+     * @param args command line arguments: the path of the index.
+     * @throws Exception if something goes wrong while reading the index.
+     */
+    public static void main(String[] args) throws Exception {
+
+        try (IndexReader reader = DirectoryReader.open(
+                FSDirectory.open(Paths.get(args.length > 0 ? args[0] : "code/experiment/index-base-french")))) {
+
+            final IdResolver ids = new IdResolver(reader);
+
+            final StoredFields storedFields = reader.storedFields();
+
+            int mismatches = 0;
+            for (int doc = 0; doc < reader.maxDoc(); doc++) {
+                final String stored = storedFields.document(doc, ID_FIELD).get(ParsedDocument.FIELDS.ID);
+                if (stored != null && !stored.equals(ids.get(doc))) {
+                    mismatches++;
+                }
+            }
+
+            System.out.printf("%d document(s) checked, %d mismatch(es).%n", reader.maxDoc(), mismatches);
+        }
+    }
+
+}
@@ -20,6 +20,7 @@ import it.unipd.dei.dards.analysis.MyFrenchAnalyzer;
 import it.unipd.dei.dards.index.DirectoryIndexer;
 import it.unipd.dei.dards.parse.ParsedDocument;
 import it.unipd.dei.dards.utils.StatsUtils;
+import it.unipd.dei.dards.utils.TermWeights;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
@@ -71,6 +72,11 @@ public class Searcher {
     }
 
 
+    /**
+     * The maximum number of bytes of the documents read for reranking a topic
+     */
+    private static final long MAX_RERANK_BYTES = 64L * 1024 * 1024;
+
     /**
      * The identifier of the run
      */
@@ -86,6 +92,11 @@ public class Searcher {
      */
     private final IndexReader reader;
 
+    /**
+     * The resolver of the identifiers of the retrieved documents
+     */
+    private final IdResolver ids;
+
     /**
      * The index searcher.
      */
@@ -153,9 +164,9 @@ public class Searcher {
     private int rerankedDocs=0;
 
     /**
-     * HashMap containing the tfidf scores for each term
+     * Table containing the tfidf scores for each term
      */
-    private HashMap<String,Float> tfidf=null;
+    private TermWeights tfidf=null;
 
     /**
      * Creates a new searcher.
@@ -207,6 +218,7 @@ public class Searcher {
 
         try {
             reader = DirectoryReader.open(FSDirectory.open(indexDir));
+            ids = new IdResolver(reader);
         } catch (IOException e) {
             throw new IllegalArgumentException(String.format("Unable to create the index reader for directory %s: %s.",
                                                              indexDir.toAbsolutePath().toString(), e.getMessage()), e);
@@ -317,7 +329,7 @@ public class Searcher {
 
         this.tfidf=null;
         try{
-            this.tfidf= StatsUtils.tfIdfScore(indexPath,indexedDocs);
+            this.tfidf= StatsUtils.termWeights(indexPath);
 
             //normalizing a bit the weights
             /*Float min=Collections.min(tfidf.values());
@@ -394,9 +406,6 @@ public class Searcher {
         // the start time of the searching
         final long start = System.currentTimeMillis();
 
-        final Set<String> idField = new HashSet<>();
-        idField.add(ParsedDocument.FIELDS.ID);
-
         BooleanQuery.Builder bq = null;
         Query q = null;
         TopDocs docs = null;
@@ -424,18 +433,10 @@ public class Searcher {
 
                 sd = docs.scoreDocs;
 
-                ArrayList<Document> reldocs=new ArrayList<>();
-                for (int i = 0, n = sd.length; i < n; i++) {
-                    //docID = reader.document(sd[i].doc, idField).get(ParsedDocument.FIELDS.ID);
-                    reldocs.add(reader.document(sd[i].doc));
+                // only the hits to rerank are read from the index, the others are resolved to their identifiers
+                final HitList hits = new HitList(reader, ids, sd, rerank ? rerankedDocs : 0, MAX_RERANK_BYTES);
 
-
-                    //System.out.println(reader.document(sd[i].doc).get(ParsedDocument.FIELDS.BODY));
-                    //run.printf(Locale.ENGLISH, " %s Q0 %s %d %.6f %s%n", t.getQueryID(), docID, i, sd[i].score,runID);
-                }
-
-
-                this.search(reldocs,t,sd,q,idField);
+                this.search(hits,t,q);
                 run.flush();
             }
         } finally {
@@ -454,20 +455,26 @@ public class Searcher {
 
 
     /**
-     * /** Searches for the specified topics.
+     * Reranks, if desired, the hits retrieved for a topic and writes them to the run.
      *
+     * @param hits the hits retrieved for the topic.
+     * @param t    the topic.
+     * @param q    the query of the topic.
      * @throws IOException    if something goes wrong while searching.
      * @throws ParseException if something goes wrong while parsing topics.
      */
-    private void search(ArrayList<Document> oldreldocs,QualityQuery t,ScoreDoc[] oldsd, Query q,Set<String> idField) throws IOException, ParseException {
+    private void search(HitList hits,QualityQuery t, Query q) throws IOException, ParseException {
 
-        if(rerank){
-            int size= rerankedDocs>oldreldocs.size()? oldreldocs.size() : rerankedDocs;
+        // topics without hits have nothing to rerank
+        if(rerank && hits.size()>0){
+            List<Document> rerankDocs=hits.materialize();
+            int size=rerankDocs.size();
             System.out.printf("%n#### Start rerank ####%n");
             System.out.println("reindex path"+reindexPath);
             DirectoryIndexer diridx=new DirectoryIndexer(a,sim,ramBuffer,reindexPath,size);
             //System.out.println(oldreldocs.get(0).get(ParsedDocument.FIELDS.BODY));
-            diridx.index(oldreldocs.subList(0,size));
+            diridx.index(rerankDocs);
+            rerankDocs=null;
             System.out.printf("%n### reindexing complete ###%n");
 
             DirectoryReader reIndexReader=null;
@@ -490,6 +497,8 @@ public class Searcher {
                         reindexDir.toAbsolutePath().toString(), e.getMessage()), e);
             }
 
+            final IdResolver reIndexIds = new IdResolver(reIndexReader);
+
             IndexSearcher reIndexSearcher = new IndexSearcher(reIndexReader);
             reIndexSearcher.setSimilarity(sim);
             //q=this.createQuery(t.getValue(TOPIC_FIELDS.TITLE));
@@ -507,16 +516,16 @@ public class Searcher {
                 toPrint.add(reindexedSd[i]);
             }
 
-           for (int i = reindexedSd.length; i < maxDocsRetrieved && i<oldreldocs.size(); i++) {
-                toPrint.add(oldsd[i]);
+           for (int i = reindexedSd.length; i < maxDocsRetrieved && i<hits.size(); i++) {
+                toPrint.add(hits.get(i));
             }
 
             for(int i=0; i<toPrint.size(); i++){
                 if(i<reindexedSd.length) {
-                    docID = reIndexReader.document(toPrint.get(i).doc, idField).get(ParsedDocument.FIELDS.ID);
+                    docID = reIndexIds.get(toPrint.get(i).doc);
                     if(toPrint.size()>reindexedSd.length) toPrint.get(i).score=toPrint.get(i).score+toPrint.get(reindexedSd.length).score;
                 }else{
-                    docID = reader.document(toPrint.get(i).doc, idField).get(ParsedDocument.FIELDS.ID);
+                    docID = ids.get(toPrint.get(i).doc);
                 }
                 /*if(!test.contains(docID)){
                     ee++;
@@ -529,13 +538,13 @@ public class Searcher {
             System.out.printf("%n### ReRank completed ###%n");
         }else{
             String docID;
-            for (int i = 0, n = oldreldocs.size(); i < n; i++) {
+            for (int i = 0, n = hits.size(); i < n; i++) {
                 //docID = reader.document(sd[i].doc, idField).get(ParsedDocument.FIELDS.ID);
-                docID=oldreldocs.get(i).get(ParsedDocument.FIELDS.ID);
+                docID=hits.id(i);
 
 
                 //System.out.println(reader.document(sd[i].doc).get(ParsedDocument.FIELDS.BODY));
-                run.printf(Locale.ENGLISH, " %s Q0 %s %d %.6f %s%n", t.getQueryID(), docID, i, oldsd[i].score,runID);
+                run.printf(Locale.ENGLISH, " %s Q0 %s %d %.6f %s%n", t.getQueryID(), docID, i, hits.get(i).score,runID);
             }
         }
     }
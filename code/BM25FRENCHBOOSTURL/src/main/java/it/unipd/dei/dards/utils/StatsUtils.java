@@ -6,40 +6,452 @@ import org.apache.lucene.search.similarities.ClassicSimilarity;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.StringHelper;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Class providing some utilities
  */
 public class StatsUtils {
+
+    /**
+     * The suffix of the name of the directory, next to the index, where the statistics of the index are kept.
+     */
+    private static final String STATS_DIR_SUFFIX = "-stats";
+
+    /**
+     * The name of the file, in the statistics directory, containing the term weights of the last update.
+     */
+    private static final String TERM_WEIGHTS_FILE = "termweights.bin";
+
+    /**
+     * The extension of the files, in the statistics directory, containing the counts of the terms of a segment.
+     */
+    private static final String SEGMENT_STATS_EXTENSION = ".vst";
+
+    /**
+     * The statistics of the terms of a vocabulary, kept in primitive arrays sorted by term.
+     */
+    private static final class VocabularyStats {
+
+        /**
+         * The magic number identifying a file of segment statistics.
+         */
+        private static final int STATS_MAGIC = 0x56535453;
+
+        /**
+         * The bytes of all the terms, one after the other.
+         */
+        private byte[] terms = new byte[1 << 16];
+
+        /**
+         * The position of each term in {@link #terms}, followed by the number of bytes of all the terms.
+         */
+        private int[] offsets = new int[1 << 12];
+
+        /**
+         * The total frequency of each term.
+         */
+        private long[] ttf = new long[1 << 12];
+
+        /**
+         * The document frequency of each term.
+         */
+        private int[] df = new int[1 << 12];
+
+        /**
+         * The number of terms.
+         */
+        private int size = 0;
+
+        /**
+         * The total number of terms, i.e. the sum of the total frequencies.
+         */
+        private long totTerms = 0;
+
+        /**
+         * The number of documents.
+         */
+        private long numDocs = 0;
+
+        /**
+         * The position of the current term while merging.
+         */
+        private int pos = 0;
+
+        /**
+         * Reads the statistics of the body terms of a segment.
+         *
+         * @param lidx the reader of the segment.
+         * @return the statistics of the segment.
+         * @throws IOException if something goes wrong while reading the segment.
+         */
+        static VocabularyStats read(final LeafReader lidx) throws IOException {
+
+            final VocabularyStats s = new VocabularyStats();
+
+            s.numDocs = lidx.numDocs();
+
+            // Get the vocabulary of this leaf index.
+            final Terms voc = lidx.terms(ParsedDocument.FIELDS.BODY);
+
+            if (voc == null) {
+                return s;
+            }
+
+            // Terms come sorted from the index, so the statistics of the segment are sorted too
+            final TermsEnum termsEnum = voc.iterator();
+            for (BytesRef term = termsEnum.next(); term != null; term = termsEnum.next()) {
+                s.add(term.bytes, term.offset, term.length, termsEnum.totalTermFreq(), termsEnum.docFreq());
+            }
+
+            return s;
+        }
+
+        /**
+         * Adds a term after all the others, or updates the counts of the last term if it is the same.
+         *
+         * @param b      the array containing the bytes of the term.
+         * @param from   the position of the first byte of the term.
+         * @param length the number of bytes of the term.
+         * @param freq   the total frequency of the term.
+         * @param docs   the document frequency of the term.
+         */
+        void add(final byte[] b, final int from, final int length, final long freq, final int docs) {
+
+            totTerms += freq;
+
+            if (size > 0 && Arrays.equals(terms, offsets[size - 1], offsets[size], b, from, from + length)) {
+                ttf[size - 1] += freq;
+                df[size - 1] += docs;
+                return;
+            }
+
+            if (size + 1 == offsets.length) {
+                offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+                ttf = Arrays.copyOf(ttf, offsets.length);
+                df = Arrays.copyOf(df, offsets.length);
+            }
+
+            final int end = offsets[size] + length;
+            if (end > terms.length) {
+                terms = Arrays.copyOf(terms, Math.max(end, 2 * terms.length));
+            }
+
+            System.arraycopy(b, from, terms, offsets[size], length);
+            ttf[size] = freq;
+            df[size] = docs;
+            offsets[++size] = end;
+        }
+
+        /**
+         * Writes the terms and their counts to a file, replacing it atomically if it already exists. The number of
+         * documents is not written, since it changes with deletions while the counts of the terms do not.
+         *
+         * @param file the file where to write the statistics.
+         * @throws IOException if something goes wrong while writing the file.
+         */
+        void write(final Path file) throws IOException {
+
+            final Path tmp = Paths.get(file.toString() + ".tmp");
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+
+                out.writeInt(STATS_MAGIC);
+                out.writeInt(size);
+                out.writeLong(totTerms);
+
+                for (int i = 0; i <= size; i++) {
+                    out.writeInt(offsets[i]);
+                }
+
+                for (int i = 0; i < size; i++) {
+                    out.writeLong(ttf[i]);
+                }
+
+                for (int i = 0; i < size; i++) {
+                    out.writeInt(df[i]);
+                }
+
+                out.write(terms, 0, offsets[size]);
+            }
+
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        /**
+         * Reads the terms and their counts previously written with {@link #write(Path)}.
+         *
+         * @param file the file containing the statistics.
+         * @return the statistics, without the number of documents.
+         * @throws IOException              if something goes wrong while reading the file.
+         * @throws IllegalArgumentException if the file is not a valid statistics file.
+         */
+        static VocabularyStats load(final Path file) throws IOException {
+
+            final ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+
+            if (in.remaining() < 2 * Integer.BYTES + Long.BYTES || in.getInt() != STATS_MAGIC) {
+                throw new IllegalArgumentException(
+                        String.format("%s is not a valid statistics file.", file.toAbsolutePath().toString()));
+            }
+
+            final VocabularyStats s = new VocabularyStats();
+
+            s.size = in.getInt();
+            s.totTerms = in.getLong();
+
+            s.offsets = new int[s.size + 1];
+            s.ttf = new long[s.size + 1];
+            s.df = new int[s.size + 1];
+
+            in.asIntBuffer().get(s.offsets);
+            in.position(in.position() + s.offsets.length * Integer.BYTES);
+
+            in.asLongBuffer().get(s.ttf, 0, s.size);
+            in.position(in.position() + s.size * Long.BYTES);
+
+            in.asIntBuffer().get(s.df, 0, s.size);
+            in.position(in.position() + s.size * Integer.BYTES);
+
+            s.terms = new byte[s.offsets[s.size]];
+            in.get(s.terms);
+
+            return s;
+        }
+
+        /**
+         * Compares the current terms of two vocabularies being merged.
+         *
+         * @param a the first vocabulary.
+         * @param b the second vocabulary.
+         * @return a negative number, zero, or a positive number if the current term of {@code a} is less than, equal
+         * to, or greater than the current term of {@code b}.
+         */
+        static int compareCurrent(final VocabularyStats a, final VocabularyStats b) {
+            return Arrays.compareUnsigned(a.terms, a.offsets[a.pos], a.offsets[a.pos + 1], b.terms, b.offsets[b.pos],
+                                          b.offsets[b.pos + 1]);
+        }
+
+        /**
+         * Merges the sorted statistics of several segments into the statistics of the whole index.
+         *
+         * @param segments the statistics of the segments.
+         * @return the statistics of the whole index.
+         */
+        static VocabularyStats merge(final List<VocabularyStats> segments) {
+
+            final VocabularyStats merged = new VocabularyStats();
+
+            final PriorityQueue<VocabularyStats> queue = new PriorityQueue<>(Math.max(1, segments.size()),
+                                                                            VocabularyStats::compareCurrent);
+
+            for (VocabularyStats s : segments) {
+                merged.numDocs += s.numDocs;
+                if (s.size > 0) {
+                    queue.add(s);
+                }
+            }
+
+            // the same term of different segments comes out consecutively and add() sums its counts
+            while (!queue.isEmpty()) {
+
+                final VocabularyStats s = queue.poll();
+
+                merged.add(s.terms, s.offsets[s.pos], s.offsets[s.pos + 1] - s.offsets[s.pos], s.ttf[s.pos],
+                           s.df[s.pos]);
+
+                if (++s.pos < s.size) {
+                    queue.add(s);
+                }
+            }
+
+            return merged;
+        }
+    }
+
+
     /**
      * This method calculates the TF-IDF score for each terms in the indexed
      * documents. Note that the TF is not computed as a proper term frequency but as an overall therm frequency in the entire collection.
+     * <p>
+     * The segments of the index are read in parallel, each into primitive arrays sorted by term, and then merged.
      *
      * @param indexPath the path of the index
      * @param expectedDocs the expected docs to compute the statistics for.
      *
-     * @return - Hashmap of TF-IDF score per each term
+     * @return - the TF-IDF score per each term
      *
      * @throws IOException if something goes wrong opening the index
      * @throws IllegalStateException if something goes wrong reading the index
      * @throws NullPointerException if any of the parameters is null
      * @throws IllegalArgumentException if any of the parameter is not valid
      */
-    public static HashMap<String, Float> tfIdfScore(String indexPath, long expectedDocs) throws  IOException, IllegalStateException,NullPointerException,IllegalArgumentException{
+    public static TermWeights tfIdfScore(String indexPath, long expectedDocs) throws  IOException, IllegalStateException,NullPointerException,IllegalArgumentException{
 
         System.out.printf("%n------------- COMPUTING TDF & IDF -------------%n");
 
-        // Keep statistics about the vocabulary. Each key is a term; each value is an array where the first element is
-        // the total frequency of the term and the second element is the document frequency.
-        final Map<String, long[]> stats = new HashMap<>((int)expectedDocs);
+        final Path indexDir = checkIndexPath(indexPath);
+
+        // Open the directory in Lucene
+        final Directory dir = FSDirectory.open(indexDir);
+
+        // Get a reader for the index
+        final IndexReader index = DirectoryReader.open(dir);
+
+        final List<VocabularyStats> segments;
+        try {
+            segments = readSegments(index.leaves(), null);
+        } finally {
+            // close index and directory
+            index.close();
+            dir.close();
+        }
 
+        return weights(VocabularyStats.merge(segments));
+    }
+
+    /**
+     * Returns the TF-IDF score for each term of the last commit of the index, as computed by
+     * {@link #tfIdfScore(String, long)}.
+     * <p>
+     * The scores are memory-mapped from the file written by {@link #updateTermWeights(String)} when it matches the
+     * last commit of the index; otherwise they are updated first.
+     *
+     * @param indexPath the path of the index
+     *
+     * @return - the TF-IDF score per each term
+     *
+     * @throws IOException if something goes wrong opening the index
+     * @throws IllegalStateException if something goes wrong reading the index
+     * @throws NullPointerException if any of the parameters is null
+     * @throws IllegalArgumentException if any of the parameter is not valid
+     */
+    public static TermWeights termWeights(String indexPath) throws  IOException, IllegalStateException,NullPointerException,IllegalArgumentException{
+
+        final Path indexDir = checkIndexPath(indexPath);
+
+        final Path file = statsDir(indexDir).resolve(TERM_WEIGHTS_FILE);
+
+        if (Files.exists(file)) {
+
+            final long generation;
+            try (Directory dir = FSDirectory.open(indexDir)) {
+                generation = SegmentInfos.getLastCommitGeneration(dir);
+            }
+
+            try {
+                final TermWeights tw = TermWeights.map(file);
+
+                if (tw.getGeneration() == generation) {
+                    System.out.printf("%n+ %d term weights of commit %d mapped from %s%n", tw.size(), generation,
+                                      file.toAbsolutePath().toString());
+                    return tw;
+                }
+            } catch (IllegalArgumentException e) {
+                System.out.printf("Updating term weights: %s%n", e.getMessage());
+            }
+        }
+
+        return updateTermWeights(indexPath);
+    }
+
+    /**
+     * Computes the TF-IDF score for each term of the last commit of the index, as {@link #tfIdfScore(String, long)}
+     * does, and writes them to a file next to the index, tagged with the generation of the commit.
+     * <p>
+     * The counts of the terms of each segment are kept next to the index too: since segments never change, only the
+     * segments added since the previous update are read from the index, while the others are merged from their
+     * counts. The counts of segments no longer in the index are removed.
+     *
+     * @param indexPath the path of the index
+     *
+     * @return - the TF-IDF score per each term, memory-mapped from the written file
+     *
+     * @throws IOException if something goes wrong opening the index or writing the scores
+     * @throws IllegalStateException if something goes wrong reading the index
+     * @throws NullPointerException if any of the parameters is null
+     * @throws IllegalArgumentException if any of the parameter is not valid
+     */
+    public static TermWeights updateTermWeights(String indexPath) throws  IOException, IllegalStateException,NullPointerException,IllegalArgumentException{
+
+        System.out.printf("%n------------- UPDATING TERM WEIGHTS -------------%n");
+
+        final Path indexDir = checkIndexPath(indexPath);
+
+        final Path statsDir = statsDir(indexDir);
+        Files.createDirectories(statsDir);
+
+        // Open the directory in Lucene
+        final Directory dir = FSDirectory.open(indexDir);
+
+        // Get a reader for the last commit of the index
+        final DirectoryReader index = DirectoryReader.open(dir);
+
+        final long generation;
+        final List<VocabularyStats> segments;
+        final Set<Path> live = new HashSet<>();
+        try {
+            generation = index.getIndexCommit().getGeneration();
+
+            for (LeafReaderContext lrc : index.leaves()) {
+                live.add(segmentStatsFile(statsDir, lrc.reader()));
+            }
+
+            segments = readSegments(index.leaves(), statsDir);
+        } finally {
+            // close index and directory
+            index.close();
+            dir.close();
+        }
+
+        // remove the counts of the segments merged away or deleted since the previous update
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(statsDir, "*" + SEGMENT_STATS_EXTENSION)) {
+            for (Path f : stream) {
+                if (!live.contains(f)) {
+                    Files.delete(f);
+                }
+            }
+        }
+
+        final Path file = statsDir.resolve(TERM_WEIGHTS_FILE);
+
+        weights(VocabularyStats.merge(segments)).write(file, generation);
+
+        System.out.printf("+ Term weights of commit %d written to %s%n", generation, file.toAbsolutePath().toString());
+
+        return TermWeights.map(file);
+    }
+
+    /**
+     * Checks the path of an index.
+     *
+     * @param indexPath the path of the index.
+     * @return the directory of the index.
+     * @throws NullPointerException     if {@code indexPath} is {@code null}.
+     * @throws IllegalArgumentException if {@code indexPath} is empty or the index does not exist.
+     */
+    private static Path checkIndexPath(final String indexPath) {
 
         if (indexPath == null) {
             throw new NullPointerException("Index path cannot be null.");
@@ -49,101 +461,150 @@ public class StatsUtils {
             throw new IllegalArgumentException("Index path cannot be empty.");
         }
 
-
         final Path indexDir = Paths.get(indexPath);
 
-        // if the directory does not already exist, create it
         if (Files.notExists(indexDir)) {
             throw new IllegalArgumentException("Index path is wrong: inexistent index.");
         }
 
-        // Open the directory in Lucene
-        final Directory dir = FSDirectory.open(indexDir);
+        return indexDir;
+    }
 
-        // Get a reader for the index
-        final IndexReader index = DirectoryReader.open(dir);
+    /**
+     * Returns the directory, next to the index, where the statistics of the index are kept.
+     *
+     * @param indexDir the directory of the index.
+     * @return the directory where the statistics of the index are kept.
+     */
+    private static Path statsDir(final Path indexDir) {
+        return indexDir.resolveSibling(indexDir.getFileName() + STATS_DIR_SUFFIX);
+    }
 
-        // total number of documents
-        long totDocs = 0;
+    /**
+     * Returns the file where the counts of the terms of a segment are kept, named after the unique identifier of the
+     * segment.
+     *
+     * @param statsDir the directory where the statistics of the index are kept.
+     * @param lidx     the reader of the segment.
+     * @return the file where the counts of the terms of the segment are kept, or {@code null} if the reader is not
+     * the reader of a segment.
+     */
+    private static Path segmentStatsFile(final Path statsDir, final LeafReader lidx) {
 
-        // total number of terms
-        long totTerms = 0;
+        final LeafReader r = FilterLeafReader.unwrap(lidx);
 
-        // get the leaf readers, i.e. the readers for each segment of the index
-        for(LeafReaderContext lrc : index.leaves()) {
+        if (!(r instanceof SegmentReader)) {
+            return null;
+        }
 
-            LeafReader lidx = lrc.reader();
+        return statsDir.resolve(
+                StringHelper.idToString(((SegmentReader) r).getSegmentInfo().info.getId()) + SEGMENT_STATS_EXTENSION);
+    }
 
-            // Increment the total number of documents
-            totDocs += lidx.numDocs();
+    /**
+     * Reads the statistics of the segments of an index in parallel.
+     *
+     * @param leaves   the leaf readers, i.e. the readers for each segment of the index.
+     * @param statsDir the directory where the counts of the terms of each segment are kept, or {@code null} to always
+     *                 read the segments.
+     * @return the statistics of each segment.
+     * @throws IOException           if something goes wrong while reading the index or the counts.
+     * @throws IllegalStateException if something goes wrong while reading the index.
+     */
+    private static List<VocabularyStats> readSegments(final List<LeafReaderContext> leaves, final Path statsDir)
+            throws IOException {
 
-            // Get the vocabulary of this leaf index.
-            Terms voc = lidx.terms(ParsedDocument.FIELDS.BODY);
+        final ExecutorService pool = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(leaves.size(), Runtime.getRuntime().availableProcessors())));
 
-            // Get an iterator over the vector of terms in the vocabulary
-            TermsEnum termsEnum = voc.iterator();
+        final AtomicInteger reused = new AtomicInteger();
 
-            // Iterate until there are terms
-            for (BytesRef term = termsEnum.next(); term != null; term = termsEnum.next()) {
+        final List<VocabularyStats> segments = new ArrayList<>(leaves.size());
 
-                // Get the text string of the term
-                String termstr = term.utf8ToString();
+        try {
 
-                // Get the total frequency of the term
-                long freq = termsEnum.totalTermFreq();
+            final List<Future<VocabularyStats>> futures = new ArrayList<>(leaves.size());
+            for (LeafReaderContext lrc : leaves) {
+                futures.add(pool.submit(() -> {
 
-                // Increment the total number of terms
-                totTerms += freq;
+                    final LeafReader lidx = lrc.reader();
+                    final Path file = statsDir == null ? null : segmentStatsFile(statsDir, lidx);
 
-                // Get the document frequency (DF) of the term
-                int df = termsEnum.docFreq();
+                    VocabularyStats s = null;
 
-                // update the statistics with the new entry
-                stats.compute(termstr, (k, v) -> {
+                    if (file != null && Files.exists(file)) {
+                        try {
+                            s = VocabularyStats.load(file);
+                            s.numDocs = lidx.numDocs();
+                            reused.incrementAndGet();
+                        } catch (IllegalArgumentException e) {
+                            s = null;
+                        }
+                    }
 
-                    // if the term is not already in the statistics, create a new pair for its counts
-                    if (v == null) {
-                        v = new long[2];
+                    if (s == null) {
+                        s = VocabularyStats.read(lidx);
+                        if (file != null) {
+                            s.write(file);
+                        }
                     }
 
-                    // Update the counts
-                    v[0] += freq;
-                    v[1] += df;
+                    return s;
+                }));
+            }
 
-                    // return the updated counts
-                    return v;
-                });
+            for (Future<VocabularyStats> f : futures) {
+                segments.add(f.get());
             }
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading the index.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(
+                    String.format("Unable to read the index: %s.", e.getCause().getMessage()), e.getCause());
+        } finally {
+            pool.shutdownNow();
         }
 
-        // close index and directory
-        index.close();
-        dir.close();
+        System.out.printf("+ %d segment(s) read from the index, %d reused from previous updates%n",
+                          leaves.size() - reused.get(), reused.get());
 
-        System.out.printf("+ Total number of documents %d%n", totDocs);
+        return segments;
+    }
+
+    /**
+     * Computes the TF-IDF score of each term from the statistics of the whole index.
+     *
+     * @param stats the statistics of the whole index.
+     * @return the TF-IDF score per each term.
+     */
+    private static TermWeights weights(final VocabularyStats stats) {
 
-        System.out.printf("+ Total number of unique terms: %d%n", stats.size());
+        System.out.printf("+ Total number of documents %d%n", stats.numDocs);
 
-        System.out.printf("+ Total number of terms: %d%n", totTerms);
+        System.out.printf("+ Total number of unique terms: %d%n", stats.size);
 
-        //if(totDocs != expectedDocs) throw new IllegalStateException("Something went wrong while reading the index: wrong number of docs");
+        System.out.printf("+ Total number of terms: %d%n", stats.totTerms);
 
         System.out.printf("%n------------- FINISHED COMPUTING STATISTICS FROM INDEX -------------%n");
 
-        //keys are terms while values are tfidf
-        HashMap <String,Float> tfidf=new HashMap<>();
+        //weights are in the same order as terms
+        final float[] tfidf = new float[stats.size];
         float tf=0;
         float idf=0;
 
         ClassicSimilarity classicSimilarity=new ClassicSimilarity();
-        for(String term:stats.keySet()){ //for each term
-            tf=(float)Math.pow((float)stats.get(term)[0]/totTerms,0.2f);
-            idf=classicSimilarity.idf(stats.get(term)[1],totDocs);
-            tfidf.put(term,tf*idf);
+        for(int i = 0; i < stats.size; i++){ //for each term
+            tf=(float)Math.pow((float)stats.ttf[i]/stats.totTerms,0.2f);
+            idf=classicSimilarity.idf(stats.df[i],stats.numDocs);
+            tfidf[i]=tf*idf;
         }
 
 
-        return tfidf;
+        return new TermWeights(stats.terms, stats.offsets, tfidf, stats.size);
     }
 }
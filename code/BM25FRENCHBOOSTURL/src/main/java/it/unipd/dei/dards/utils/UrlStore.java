@@ -0,0 +1,489 @@
+package it.unipd.dei.dards.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+
+/**
+ * A read-only store of the url of each document, keyed by document identifier, kept in a memory-mapped file instead of
+ * on the heap.
+ * <p>
+ * The store is built once from the tab-separated file of document id-url pairs and then reused by every following
+ * indexing, as long as the pairs file does not change: the store records the size and the last modified time of the
+ * pairs file it has been built from, and it is rebuilt as soon as either differs. Identifiers are sorted and front-coded in blocks of
+ * {@link #BLOCK_SIZE} entries: a lookup binary searches the first identifier of each block and then scans a single
+ * block.
+ * <p>
+ * The file starts with a header made of the magic number, the format version, the number of entries, the block size,
+ * the number of blocks, and the size and last modified time, in milliseconds, of the pairs file, followed by the offset
+ * of each block. Each entry of a block is made of the length of the
+ * prefix shared with the previous identifier (absent for the first entry of a block), the remaining bytes of the
+ * identifier and the bytes of the url, each preceded by its length as a variable-length integer.
+ *
+ * @author DARDS
+ * @version 1.00
+ * @since 1.00
+ */
+public class UrlStore {
+
+    /**
+     * The magic number identifying a url store file.
+     */
+    private static final int MAGIC = 0x55524C53;
+
+    /**
+     * The version of the format of the url store file.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * The number of entries of each block.
+     */
+    private static final int BLOCK_SIZE = 16;
+
+    /**
+     * The size of the header, without block offsets.
+     */
+    private static final int HEADER_SIZE = 5 * Integer.BYTES + 2 * Long.BYTES;
+
+    /**
+     * The memory-mapped store file.
+     */
+    private final MappedByteBuffer buf;
+
+    /**
+     * The number of entries of the store.
+     */
+    private final int count;
+
+    /**
+     * The number of blocks of the store.
+     */
+    private final int blocks;
+
+    /**
+     * Opens the store file.
+     *
+     * @param storeFile the store file.
+     * @param source    the attributes of the pairs file the store is expected to be built from.
+     * @throws IOException              if the store file cannot be mapped.
+     * @throws IllegalArgumentException if the file is not a valid store file or it has been built from a different
+     *                                  pairs file.
+     */
+    private UrlStore(final Path storeFile, final BasicFileAttributes source) throws IOException {
+
+        try (FileChannel ch = FileChannel.open(storeFile, StandardOpenOption.READ)) {
+
+            if (ch.size() < HEADER_SIZE || ch.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(
+                        String.format("%s is not a valid url store file.", storeFile.toAbsolutePath().toString()));
+            }
+
+            buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+
+        if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION || buf.getInt(12) != BLOCK_SIZE) {
+            throw new IllegalArgumentException(
+                    String.format("%s is not a valid url store file.", storeFile.toAbsolutePath().toString()));
+        }
+
+        if (buf.getLong(20) != source.size() || buf.getLong(28) != source.lastModifiedTime().toMillis()) {
+            throw new IllegalArgumentException(
+                    String.format("%s has been built from a different url file.", storeFile.toAbsolutePath().toString()));
+        }
+
+        count = buf.getInt(8);
+        blocks = buf.getInt(16);
+    }
+
+    /**
+     * Opens the url store for the given document id-url pairs file, building it first if it does not exist or if it
+     * has been built from a pairs file of different size or last modified time.
+     *
+     * @param urlFile   the tab-separated file containing one document id-url pair per line.
+     * @param storeFile the file where the store is kept.
+     * @return the url store.
+     * @throws NullPointerException     if any of the parameters is {@code null}.
+     * @throws IllegalArgumentException if the pairs file cannot be read.
+     * @throws IOException              if something goes wrong while building or opening the store.
+     */
+    public static UrlStore open(final Path urlFile, final Path storeFile) throws IOException {
+
+        if (urlFile == null) {
+            throw new NullPointerException("Url file path cannot be null.");
+        }
+
+        if (storeFile == null) {
+            throw new NullPointerException("Url store file path cannot be null.");
+        }
+
+        if (!Files.isReadable(urlFile)) {
+            throw new IllegalArgumentException(
+                    String.format("Url file %s cannot be read.", urlFile.toAbsolutePath().toString()));
+        }
+
+        // read before building, so that a pairs file replaced while building is detected by the next opening
+        final BasicFileAttributes source = Files.readAttributes(urlFile, BasicFileAttributes.class);
+
+        if (Files.exists(storeFile)) {
+            try {
+                return new UrlStore(storeFile, source);
+            } catch (IllegalArgumentException e) {
+                System.out.printf("Rebuilding url store: %s%n", e.getMessage());
+            }
+        }
+
+        build(urlFile, source, storeFile);
+
+        return new UrlStore(storeFile, source);
+    }
+
+    /**
+     * Builds the store file from the document id-url pairs file.
+     *
+     * @param urlFile   the tab-separated file containing one document id-url pair per line.
+     * @param source    the attributes of the pairs file, recorded in the header of the store.
+     * @param storeFile the file where the store is kept.
+     * @throws IOException if something goes wrong while building the store.
+     */
+    private static void build(final Path urlFile, final BasicFileAttributes source, final Path storeFile)
+            throws IOException {
+
+        System.out.printf("%n------------- BUILDING URL STORE -------------%n");
+
+        final long start = System.currentTimeMillis();
+
+        final MappedByteBuffer in;
+        try (FileChannel ch = FileChannel.open(urlFile, StandardOpenOption.READ)) {
+
+            if (ch.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(
+                        String.format("Url file %s is too large.", urlFile.toAbsolutePath().toString()));
+            }
+
+            in = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+
+        // the identifiers are kept on the heap only while building; urls are copied straight from the pairs file
+        byte[][] keys = new byte[1024][];
+        int[] urlStarts = new int[1024];
+        int[] urlLengths = new int[1024];
+        int n = 0;
+
+        for (int pos = 0, limit = in.limit(); pos < limit; ) {
+
+            int lineEnd = pos;
+            int tab = -1;
+            int nextTab = -1;
+            while (lineEnd < limit && in.get(lineEnd) != '\n') {
+                if (nextTab < 0 && in.get(lineEnd) == '\t') {
+                    if (tab < 0) {
+                        tab = lineEnd;
+                    } else {
+                        nextTab = lineEnd;
+                    }
+                }
+                lineEnd++;
+            }
+
+            // surrounding blanks and the carriage return of Windows line endings are not part of ids and urls
+            int keyStart = pos;
+            int keyEnd = tab;
+            int urlStart = tab + 1;
+            // any further column is ignored
+            int end = nextTab < 0 ? lineEnd : nextTab;
+
+            if (tab >= 0) {
+                while (keyStart < keyEnd && isBlank(in.get(keyStart))) {
+                    keyStart++;
+                }
+                while (keyEnd > keyStart && isBlank(in.get(keyEnd - 1))) {
+                    keyEnd--;
+                }
+                while (urlStart < end && isBlank(in.get(urlStart))) {
+                    urlStart++;
+                }
+                while (end > urlStart && isBlank(in.get(end - 1))) {
+                    end--;
+                }
+            }
+
+            if (tab >= 0 && keyEnd > keyStart && end > urlStart) {
+
+                if (n == keys.length) {
+                    keys = Arrays.copyOf(keys, 2 * n);
+                    urlStarts = Arrays.copyOf(urlStarts, 2 * n);
+                    urlLengths = Arrays.copyOf(urlLengths, 2 * n);
+                }
+
+                keys[n] = new byte[keyEnd - keyStart];
+                in.get(keyStart, keys[n]);
+                urlStarts[n] = urlStart;
+                urlLengths[n] = end - urlStart;
+                n++;
+            }
+
+            pos = lineEnd + 1;
+        }
+
+        // sort the entries by identifier; the sort is stable, so the last url of a duplicated identifier is the last
+        final byte[][] k = keys;
+        final Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(k[a], k[b]));
+
+        // drop duplicated identifiers, keeping the last url as the map it replaces did
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (i + 1 < n && Arrays.equals(k[order[i]], k[order[i + 1]])) {
+                continue;
+            }
+            order[unique++] = order[i];
+        }
+
+        final int blocks = (unique + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        final int dataStart = HEADER_SIZE + blocks * Integer.BYTES;
+
+        final Path tmp = Paths.get(storeFile.toString() + ".tmp");
+
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                               StandardOpenOption.WRITE)) {
+
+            final ByteBuffer header = ByteBuffer.allocate(dataStart);
+            header.putInt(MAGIC).putInt(VERSION).putInt(unique).putInt(BLOCK_SIZE).putInt(blocks);
+            header.putLong(source.size()).putLong(source.lastModifiedTime().toMillis());
+
+            ch.position(dataStart);
+
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch)));
+            final byte[] url = new byte[4096];
+            byte[] previous = null;
+
+            for (int i = 0; i < unique; i++) {
+
+                final byte[] key = k[order[i]];
+
+                if (i % BLOCK_SIZE == 0) {
+                    header.putInt(dataStart + out.size());
+                    writeVInt(out, key.length);
+                    out.write(key);
+                } else {
+                    // identifiers are sorted and distinct, so the previous one is never equal to or longer than a prefix
+                    final int prefix = Arrays.mismatch(previous, key);
+                    writeVInt(out, prefix);
+                    writeVInt(out, key.length - prefix);
+                    out.write(key, prefix, key.length - prefix);
+                }
+
+                previous = key;
+
+                final int len = urlLengths[order[i]];
+                writeVInt(out, len);
+                for (int done = 0; done < len; ) {
+                    final int chunk = Math.min(url.length, len - done);
+                    in.get(urlStarts[order[i]] + done, url, 0, chunk);
+                    out.write(url, 0, chunk);
+                    done += chunk;
+                }
+
+                if (out.size() == Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException(
+                            String.format("Url file %s is too large.", urlFile.toAbsolutePath().toString()));
+                }
+            }
+
+            out.flush();
+
+            header.flip();
+            ch.write(header, 0);
+        }
+
+        Files.move(tmp, storeFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        System.out.printf("%d url(s) stored in %d seconds.%n", unique, (System.currentTimeMillis() - start) / 1000);
+    }
+
+    /**
+     * Indicates whether the given byte is a blank, i.e. a space, a tab or a carriage return.
+     *
+     * @param b the byte.
+     * @return {@code true} if the byte is a blank, {@code false} otherwise.
+     */
+    private static boolean isBlank(final byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    /**
+     * Writes a non-negative integer using 7 bits per byte, the highest bit of each byte telling whether more bytes
+     * follow.
+     *
+     * @param out   the output.
+     * @param value the integer to write.
+     * @throws IOException if something goes wrong while writing.
+     */
+    private static void writeVInt(final DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Reads a non-negative integer written by {@link #writeVInt(DataOutputStream, int)}.
+     *
+     * @param pos the position where to read, updated to the position following the integer.
+     * @return the integer.
+     */
+    private int readVInt(final int[] pos) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            final byte b = buf.get(pos[0]++);
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of entries of the store.
+     *
+     * @return the number of entries of the store.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the url of the given document.
+     * <p>
+     * The store is read-only and lookups do not change its state, so it can be safely shared among threads.
+     *
+     * @param id the document identifier.
+     * @return the url of the document, or {@code null} if the store does not contain it.
+     * @throws NullPointerException if {@code id} is {@code null}.
+     */
+    public String get(final String id) {
+
+        if (id == null) {
+            throw new NullPointerException("Document identifier cannot be null.");
+        }
+
+        final byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        final int[] pos = new int[1];
+
+        // find the last block whose first identifier is not greater than the searched one
+        int block = -1;
+        for (int lo = 0, hi = blocks - 1; lo <= hi; ) {
+
+            final int mid = (lo + hi) >>> 1;
+
+            pos[0] = buf.getInt(HEADER_SIZE + mid * Integer.BYTES);
+            final int len = readVInt(pos);
+
+            if (compare(pos[0], len, key) <= 0) {
+                block = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+
+        if (block < 0) {
+            return null;
+        }
+
+        pos[0] = buf.getInt(HEADER_SIZE + block * Integer.BYTES);
+
+        byte[] current = new byte[Math.max(64, key.length)];
+        int currentLen = 0;
+
+        for (int i = 0, n = Math.min(BLOCK_SIZE, count - block * BLOCK_SIZE); i < n; i++) {
+
+            final int prefix = i == 0 ? 0 : readVInt(pos);
+            final int suffix = readVInt(pos);
+
+            if (prefix + suffix > current.length) {
+                current = Arrays.copyOf(current, prefix + suffix);
+            }
+
+            buf.get(pos[0], current, prefix, suffix);
+            pos[0] += suffix;
+            currentLen = prefix + suffix;
+
+            final int urlLen = readVInt(pos);
+
+            final int cmp = Arrays.compareUnsigned(current, 0, currentLen, key, 0, key.length);
+
+            if (cmp == 0) {
+                final byte[] url = new byte[urlLen];
+                buf.get(pos[0], url);
+                return new String(url, StandardCharsets.UTF_8);
+            }
+
+            // identifiers are sorted: the searched one cannot follow a greater one
+            if (cmp > 0) {
+                return null;
+            }
+
+            pos[0] += urlLen;
+        }
+
+        return null;
+    }
+
+    /**
+     * Compares the identifier stored at the given position with the given one.
+     *
+     * @param start the position of the stored identifier.
+     * @param len   the length of the stored identifier.
+     * @param key   the identifier to compare with.
+     * @return a negative number, zero, or a positive number if the stored identifier is less than, equal to, or
+     * greater than the given one.
+     */
+    private int compare(final int start, final int len, final byte[] key) {
+
+        for (int i = 0, n = Math.min(len, key.length); i < n; i++) {
+            final int cmp = Byte.toUnsignedInt(buf.get(start + i)) - Byte.toUnsignedInt(key[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+
+        return len - key.length;
+    }
+
+    /**
+     * Main method of the class. Just for testing purposes.
+     *
+     * @param args command line arguments: the document id-url pairs file and a document identifier to look up.
+     * @throws Exception if something goes wrong while building the store.
+     */
+    public static void main(String[] args) throws Exception {
+
+        final UrlStore store = UrlStore.open(Paths.get(args.length > 0 ? args[0] : "./input/French/urls.txt"),
+                                             Paths.get("urls.store"));
+
+        System.out.printf("%d url(s) in the store.%n", store.size());
+
+        if (args.length > 1) {
+            System.out.printf("%s -> %s%n", args[1], store.get(args[1]));
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ *  Copyright 2021-2022 University of Padua, Italy
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unipd.dei.dards.analysis;
+
+import org.apache.lucene.analysis.CharArraySet;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide registry of the stop lists and word lists in the {@code resources} directory.
+ * <p>
+ * Each resource is read and parsed the first time it is requested and then shared, read-only, by all the analyzers and
+ * tools, so that creating the components of an analyzer, for each thread and field, does not read it again.
+ *
+ * @author DARDS
+ * @version 1.00
+ * @since 1.00
+ */
+public final class ResourceRegistry {
+
+    /**
+     * The class loader of this class. Needed for reading files from the {@code resource} directory.
+     */
+    private static final ClassLoader CL = ResourceRegistry.class.getClassLoader();
+
+    /**
+     * The stop lists loaded so far, by file name.
+     */
+    private static final Map<String, CharArraySet> STOP_LISTS = new ConcurrentHashMap<>();
+
+    /**
+     * The word lists loaded so far, by file name.
+     */
+    private static final Map<String, List<String>> WORD_LISTS = new ConcurrentHashMap<>();
+
+    /**
+     * This class cannot be instantiated.
+     */
+    private ResourceRegistry() {
+        throw new AssertionError(String.format("No instances of %s allowed.", ResourceRegistry.class.getName()));
+    }
+
+    /**
+     * Returns a stop list among those available in the {@code resources} folder, loading it the first time.
+     *
+     * @param stopFile the name of the file containing the stop list.
+     * @return the stop list, which cannot be modified.
+     * @throws NullPointerException     if {@code stopFile} is {@code null}.
+     * @throws IllegalArgumentException if {@code stopFile} is empty.
+     * @throws IllegalStateException    if there is any issue while loading the stop list.
+     */
+    public static CharArraySet stopList(final String stopFile) {
+
+        if (stopFile == null) {
+            throw new NullPointerException("Stop list file name cannot be null.");
+        }
+
+        if (stopFile.isEmpty()) {
+            throw new IllegalArgumentException("Stop list file name cannot be empty.");
+        }
+
+        return STOP_LISTS.computeIfAbsent(stopFile,
+                                          f -> CharArraySet.unmodifiableSet(AnalyzerUtil.loadStopList(f)));
+    }
+
+    /**
+     * Returns a word list among those available in the {@code resources} folder, loading it the first time.
+     * <p>
+     * Each line of the file is a word, trimmed but otherwise kept as it is, in the order of the file.
+     *
+     * @param wordFile the name of the file containing the word list.
+     * @return the word list, which cannot be modified.
+     * @throws NullPointerException     if {@code wordFile} is {@code null}.
+     * @throws IllegalArgumentException if {@code wordFile} is empty.
+     * @throws IllegalStateException    if there is any issue while loading the word list.
+     */
+    public static List<String> wordList(final String wordFile) {
+
+        if (wordFile == null) {
+            throw new NullPointerException("Word list file name cannot be null.");
+        }
+
+        if (wordFile.isEmpty()) {
+            throw new IllegalArgumentException("Word list file name cannot be empty.");
+        }
+
+        return WORD_LISTS.computeIfAbsent(wordFile, ResourceRegistry::loadWordList);
+    }
+
+    /**
+     * Loads a word list from the {@code resources} folder.
+     *
+     * @param wordFile the name of the file containing the word list.
+     * @return the word list, which cannot be modified.
+     * @throws IllegalStateException if there is any issue while loading the word list.
+     */
+    private static List<String> loadWordList(final String wordFile) {
+
+        final InputStream stream = CL.getResourceAsStream(wordFile);
+
+        if (stream == null) {
+            throw new IllegalStateException(String.format("Unable to find the word list %s.", wordFile));
+        }
+
+        final List<String> words = new ArrayList<>();
+
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(stream))) {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                words.add(line.trim());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(
+                    String.format("Unable to load the word list %s: %s", wordFile, e.getMessage()), e);
+        }
+
+        return List.copyOf(words);
+    }
+
+}
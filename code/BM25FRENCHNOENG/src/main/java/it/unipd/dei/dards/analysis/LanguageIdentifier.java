@@ -0,0 +1,127 @@
+/*
+ *  Copyright 2021-2022 University of Padua, Italy
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unipd.dei.dards.analysis;
+
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static it.unipd.dei.dards.analysis.ResourceRegistry.stopList;
+
+/**
+ * Tells whether a document is written in English or in French from its profile of stopwords.
+ * <p>
+ * The body is tokenized once and each token is looked up in both the English ({@code smart.txt}) and the French
+ * ({@code stopwords-fr.txt}) stop lists, shared through the {@link ResourceRegistry}. A document is English when the
+ * tokens which are not English stopwords, times 1.5, are less than the ones which are not French stopwords, that is
+ * when it contains many more English stopwords than French ones.
+ * <p>
+ * An identifier reuses its tokenizer, so it is not thread-safe: each thread needs its own.
+ *
+ * @author DARDS
+ * @version 1.00
+ * @since 1.00
+ */
+public class LanguageIdentifier {
+
+    /**
+     * The code of the English language.
+     */
+    public static final String ENGLISH = "en";
+
+    /**
+     * The code of the French language.
+     */
+    public static final String FRENCH = "fr";
+
+    /**
+     * The English stop list.
+     */
+    private static final CharArraySet ENGLISH_STOPWORDS = stopList("smart.txt");
+
+    /**
+     * The French stop list.
+     */
+    private static final CharArraySet FRENCH_STOPWORDS = stopList("stopwords-fr.txt");
+
+    /**
+     * The tokenizer, reused for every document.
+     */
+    private final Tokenizer source = new StandardTokenizer();
+
+    /**
+     * The term of the current token.
+     */
+    private final CharTermAttribute term = source.addAttribute(CharTermAttribute.class);
+
+    /**
+     * Identifies the language of a document.
+     *
+     * @param body the body of the document.
+     * @return {@link #ENGLISH} or {@link #FRENCH}.
+     * @throws IOException if something goes wrong while tokenizing the body.
+     */
+    public String identify(final String body) throws IOException {
+        return identify(new StringReader(body));
+    }
+
+    /**
+     * Identifies the language of a document.
+     *
+     * @param body the reader over the body of the document.
+     * @return {@link #ENGLISH} or {@link #FRENCH}.
+     * @throws IOException if something goes wrong while tokenizing the body.
+     */
+    public String identify(final Reader body) throws IOException {
+
+        // the tokens surviving the English and the French stop lists, respectively
+        int enTokens = 0;
+        int frTokens = 0;
+
+        source.setReader(body);
+
+        try {
+            source.reset();
+
+            while (source.incrementToken()) {
+
+                final char[] buffer = term.buffer();
+                final int length = term.length();
+
+                if (!ENGLISH_STOPWORDS.contains(buffer, 0, length)) {
+                    enTokens++;
+                }
+
+                if (!FRENCH_STOPWORDS.contains(buffer, 0, length)) {
+                    frTokens++;
+                }
+            }
+
+            source.end();
+        } finally {
+            source.close();
+        }
+
+        return enTokens * 1.5 < frTokens ? ENGLISH : FRENCH;
+    }
+
+}
@@ -16,36 +16,32 @@
 
 package it.unipd.dei.dards.index;
 
+import it.unipd.dei.dards.analysis.LanguageIdentifier;
 import it.unipd.dei.dards.parse.DocumentParser;
 import it.unipd.dei.dards.parse.ParsedDocument;
 import it.unipd.dei.dards.parse.LongEvalParser;
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.TokenStream;
-import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.core.LowerCaseFilterFactory;
-import org.apache.lucene.analysis.core.StopFilter;
 import org.apache.lucene.analysis.core.StopFilterFactory;
 import org.apache.lucene.analysis.custom.CustomAnalyzer;
 import org.apache.lucene.analysis.en.KStemFilterFactory;
-import org.apache.lucene.analysis.standard.StandardTokenizer;
 import org.apache.lucene.analysis.standard.StandardTokenizerFactory;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.search.similarities.*;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
 
 import java.io.IOException;
-import java.io.StringReader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 
-import static it.unipd.dei.dards.analysis.AnalyzerUtil.loadStopList;
-
 /**
  * Indexes documents processing a whole directory tree.
  *
@@ -110,6 +106,31 @@ public class DirectoryIndexer {
      */
     private long bytesCount;
 
+    /**
+     * The total number of English documents found.
+     */
+    private long englishCount = 0;
+
+    /**
+     * The identifier of the language of the documents.
+     */
+    private final LanguageIdentifier languageIdentifier = new LanguageIdentifier();
+
+    /**
+     * The language of English documents, shared by all of them.
+     */
+    private static final BytesRef ENGLISH = new BytesRef(LanguageIdentifier.ENGLISH);
+
+    /**
+     * The language of French documents, shared by all of them.
+     */
+    private static final BytesRef FRENCH = new BytesRef(LanguageIdentifier.FRENCH);
+
+    /**
+     * Whether English documents are left out of the index.
+     */
+    private boolean skipEnglish = true;
+
     /**
      * Creates a new indexer.
      *
@@ -254,6 +275,19 @@ public class DirectoryIndexer {
 
     }
 
+    /**
+     * Sets whether English documents are left out of the index, which is the default, or indexed as well.
+     * <p>
+     * The language of each indexed document is stored in the {@link ParsedDocument.FIELDS#LANGUAGE} doc values
+     * field in either case, so that English documents indexed anyway can be filtered at query time, see {@code
+     * Searcher#setExcludedLanguage(String)}.
+     *
+     * @param skipEnglish whether English documents are left out of the index.
+     */
+    public void setSkipEnglish(final boolean skipEnglish) {
+        this.skipEnglish = skipEnglish;
+    }
+
     /**
      * Indexes the documents.
      *
@@ -279,36 +313,15 @@ public class DirectoryIndexer {
                     for (ParsedDocument pd : dp) {
                         String body = pd.getBody();
 
-                        int enTokens = 0;
-                        int frTokens = 0;
-
-                        //Filtro stopwords (inglese)
-                        Tokenizer source = new StandardTokenizer();
-                        source.setReader(new StringReader(body));
-                        TokenStream tokStream = new StopFilter(source,loadStopList("smart.txt"));
-                        tokStream.reset();
-                        //CharTermAttribute token = tokStream.getAttribute(CharTermAttribute.class);
-                        while (tokStream.incrementToken()){
-                            enTokens++;
-                        }
-                        tokStream.end();
-                        tokStream.close();
-
-                        //Filtro stopwords (francese)
-                        source = new StandardTokenizer();
-                        source.setReader(new StringReader(body));
-                        tokStream = new StopFilter(source,loadStopList("stopwords-fr.txt"));
-                        tokStream.reset();
-                        //token = tokStream.getAttribute(CharTermAttribute.class);
-                        while (tokStream.incrementToken()){
-                            frTokens++;
-                        }
-                        tokStream.end();
-                        tokStream.close();
+                        final String language = languageIdentifier.identify(body);
 
-                        if(enTokens*1.5 < frTokens){    //se mi ritrovo meno token da eliminaz stopword inglesi, ho trovato un doc inglese:
-                            System.out.println(String.format("Document %s is english (skipped)",pd.getIdentifier()));
-                            continue;
+                        if (LanguageIdentifier.ENGLISH.equals(language)) {
+                            englishCount++;
+
+                            if (skipEnglish) {
+                                System.out.println(String.format("Document %s is english (skipped)",pd.getIdentifier()));
+                                continue;
+                            }
                         }
 
 
@@ -319,6 +332,10 @@ public class DirectoryIndexer {
 
                         // add the document body
                         doc.add(new BodyField(body));
+
+                        // add the language of the document, so that it can be filtered at query time
+                        doc.add(new SortedDocValuesField(ParsedDocument.FIELDS.LANGUAGE,
+                                                         LanguageIdentifier.ENGLISH.equals(language) ? ENGLISH : FRENCH));
                         //System.out.println(pd.getIdentifier());
                         //System.out.println(pd.getBody());
 
@@ -351,6 +368,8 @@ public class DirectoryIndexer {
         System.out.printf("%d document(s) (%d files, %d Mbytes) indexed in %d seconds.%n", docsCount, filesCount,
                           bytesCount / MBYTE, (System.currentTimeMillis() - start) / 1000);
 
+        System.out.printf("%d English document(s) %s.%n", englishCount, skipEnglish ? "skipped" : "indexed");
+
         System.out.printf("#### Indexing complete ####%n");
     }
 
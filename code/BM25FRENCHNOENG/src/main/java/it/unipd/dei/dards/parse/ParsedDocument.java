@@ -47,6 +47,11 @@ public class ParsedDocument {
          * The document identifier
          */
         public static final String BODY = "body";
+
+        /**
+         * The language of the document, see {@link it.unipd.dei.dards.analysis.LanguageIdentifier}
+         */
+        public static final String LANGUAGE = "language";
     }
 
 
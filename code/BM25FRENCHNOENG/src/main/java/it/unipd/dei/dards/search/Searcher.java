@@ -26,6 +26,7 @@ import org.apache.lucene.analysis.en.KStemFilterFactory;
 import org.apache.lucene.analysis.en.PorterStemFilterFactory;
 import org.apache.lucene.analysis.standard.StandardTokenizerFactory;
 import org.apache.lucene.benchmark.quality.QualityQuery;
+import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.queryparser.classic.ParseException;
@@ -34,6 +35,7 @@ import org.apache.lucene.queryparser.classic.QueryParserBase;
 import org.apache.lucene.search.*;
 import org.apache.lucene.search.similarities.*;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -124,6 +126,11 @@ public class Searcher {
      */
     private long elapsedTime = Long.MIN_VALUE;
 
+    /**
+     * The language of the documents left out of the results, or {@code null} to retrieve documents in any language.
+     */
+    private String excludedLanguage = null;
+
 
     /**
      * Creates a new searcher.
@@ -281,6 +288,19 @@ public class Searcher {
         this.maxDocsRetrieved = maxDocsRetrieved;
     }
 
+    /**
+     * Leaves the documents in the given language out of the results, according to the language stored in the
+     * {@link ParsedDocument.FIELDS#LANGUAGE} doc values field while indexing. Documents indexed without a language are
+     * always retrieved.
+     *
+     * @param language the language of the documents to leave out, e.g.
+     *                 {@link it.unipd.dei.dards.analysis.LanguageIdentifier#ENGLISH}, or {@code null} to retrieve
+     *                 documents in any language.
+     */
+    public void setExcludedLanguage(final String language) {
+        this.excludedLanguage = language;
+    }
+
     /**
      * Returns the total elapsed time.
      *
@@ -323,6 +343,13 @@ public class Searcher {
                 bq.add(qp.parse(QueryParserBase.escape(t.getValue(TOPIC_FIELDS.TITLE))), BooleanClause.Occur.SHOULD);
                 //bq.add(qp.parse(QueryParserBase.escape(t.getValue(TOPIC_FIELDS.DESCRIPTION))), BooleanClause.Occur.SHOULD);
 
+                // a filter on the doc values of the language, which does not change the scores
+                if (excludedLanguage != null) {
+                    bq.add(SortedDocValuesField.newSlowExactQuery(ParsedDocument.FIELDS.LANGUAGE,
+                                                                  new BytesRef(excludedLanguage)),
+                           BooleanClause.Occur.MUST_NOT);
+                }
+
                 q = bq.build();
 
                 docs = searcher.search(q, maxDocsRetrieved);
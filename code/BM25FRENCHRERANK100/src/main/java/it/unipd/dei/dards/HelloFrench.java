@@ -98,8 +98,6 @@ public class HelloFrench {
 
         final String runID = "DARDS_BM25FRENCHRERANK100";
 
-        final String reindexPath= "index-BM25FRENCHRERANK100-RERANK";
-
         final int maxDocsRetrieved = 1000;
 
 
@@ -111,7 +109,7 @@ public class HelloFrench {
 
         // searching
         //final Searcher s = new Searcher(a, sim, indexPath, topics, expectedTopics, runID, runPath, maxDocsRetrieved,expectedDocs);
-        Searcher s = new Searcher(a, sim, indexPath, topics, expectedTopics, runID, runPath, maxDocsRetrieved,true,sim,a,ramBuffer,reindexPath,expectedDocs,100);
+        Searcher s = new Searcher(a, sim, indexPath, topics, expectedTopics, runID, runPath, maxDocsRetrieved,true,sim,a,ramBuffer,expectedDocs,100);
         s.search();
 
     }
@@ -40,7 +40,7 @@ import java.util.Arrays;
 import java.util.regex.Pattern;
 
 import static it.unipd.dei.dards.analysis.AnalyzerUtil.consumeTokenStream;
-import static it.unipd.dei.dards.analysis.AnalyzerUtil.loadStopList;
+import static it.unipd.dei.dards.analysis.ResourceRegistry.stopList;
 
 /**
  * French analyzer to parse LongEval query and documents.
@@ -66,12 +66,12 @@ public class MyFrenchAnalyzer extends Analyzer {
 
 
 
-        TokenStream  tokens= new ElisionFilter(source, loadStopList("french-arcticles.txt"));
+        TokenStream  tokens= new ElisionFilter(source, stopList("french-arcticles.txt"));
 
         tokens = new LowerCaseFilter(tokens);
-        //tokens = new StopFilter(tokens, loadStopList("snowball.txt"));
-        //tokens = new StopFilter(tokens, loadStopList("smart.txt"));
-        tokens = new StopFilter(tokens, loadStopList("stopwords-fr.txt"));
+        //tokens = new StopFilter(tokens, stopList("snowball.txt"));
+        //tokens = new StopFilter(tokens, stopList("smart.txt"));
+        tokens = new StopFilter(tokens, stopList("stopwords-fr.txt"));
 
         //tokens= new NumberFilter(tokens);
 
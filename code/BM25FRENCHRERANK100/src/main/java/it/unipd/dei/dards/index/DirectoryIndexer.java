@@ -19,6 +19,7 @@ package it.unipd.dei.dards.index;
 import it.unipd.dei.dards.parse.DocumentParser;
 import it.unipd.dei.dards.parse.ParsedDocument;
 import it.unipd.dei.dards.parse.LongEvalParser;
+import it.unipd.dei.dards.utils.StatsUtils;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.core.LowerCaseFilterFactory;
 import org.apache.lucene.analysis.core.StopFilterFactory;
@@ -27,10 +28,13 @@ import org.apache.lucene.analysis.en.KStemFilterFactory;
 import org.apache.lucene.analysis.standard.StandardTokenizerFactory;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.*;
 import org.apache.lucene.search.similarities.*;
+import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
@@ -68,6 +72,11 @@ public class DirectoryIndexer {
      */
     private final Path docsDir;
 
+    /**
+     * The directory where the index is stored.
+     */
+    private final Path indexDir;
+
     /**
      * The extension of the files to be indexed.
      */
@@ -202,6 +211,8 @@ public class DirectoryIndexer {
 
         this.docsDir = docsDir;
 
+        this.indexDir = indexDir;
+
         if (extension == null) {
             throw new NullPointerException("File extension cannot be null.");
         }
@@ -340,6 +351,72 @@ public class DirectoryIndexer {
         this.start = System.currentTimeMillis();
         this.dpCls=null;
         this.docsDir=null;
+        this.indexDir=indexDir;
+        this.extension=null;
+        this.cs=null;
+    }
+
+    /**
+     * Creates a new indexer writing to the given directory, e.g. an in-memory one.
+     *
+     * @param analyzer        the {@code Analyzer} to be used.
+     * @param similarity      the {@code Similarity} to be used.
+     * @param ramBufferSizeMB the size in megabytes of the RAM buffer for indexing documents.
+     * @param directory       the directory where to store the index.
+     * @param expectedDocs    the total number of documents expected to be indexed
+     * @throws NullPointerException     if any of the parameters is {@code null}.
+     * @throws IllegalArgumentException if any of the parameters assumes invalid values.
+     */
+    public DirectoryIndexer(final Analyzer analyzer, final Similarity similarity, final int ramBufferSizeMB,
+                            final Directory directory, final long expectedDocs) {
+
+        if (analyzer == null) {
+            throw new NullPointerException("Analyzer cannot be null.");
+        }
+
+        if (similarity == null) {
+            throw new NullPointerException("Similarity cannot be null.");
+        }
+
+        if (ramBufferSizeMB <= 0) {
+            throw new IllegalArgumentException("RAM buffer size cannot be less than or equal to zero.");
+        }
+
+        if (directory == null) {
+            throw new NullPointerException("Index directory cannot be null.");
+        }
+
+        final IndexWriterConfig iwc = new IndexWriterConfig(analyzer);
+        iwc.setSimilarity(similarity);
+        iwc.setRAMBufferSizeMB(ramBufferSizeMB);
+        iwc.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+        iwc.setCommitOnClose(true);
+        iwc.setUseCompoundFile(true);
+
+        if (expectedDocs <= 0) {
+            throw new IllegalArgumentException(
+                    "The expected number of documents to be indexed cannot be less than or equal to zero.");
+        }
+        this.expectedDocs = expectedDocs;
+
+        this.docsCount = 0;
+
+        this.bytesCount = 0;
+
+        this.filesCount = 0;
+
+        try {
+            writer = new IndexWriter(directory, iwc);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(
+                    String.format("Unable to create the index writer in directory %s: %s.", directory, e.getMessage()),
+                    e);
+        }
+
+        this.start = System.currentTimeMillis();
+        this.dpCls=null;
+        this.docsDir=null;
+        this.indexDir=null;
         this.extension=null;
         this.cs=null;
     }
@@ -373,6 +450,9 @@ public class DirectoryIndexer {
                         // add the document identifier
                         doc.add(new StringField(ParsedDocument.FIELDS.ID, pd.getIdentifier(), Field.Store.YES));
 
+                        // and its doc values, so that searching resolves hits to identifiers without reading stored fields
+                        doc.add(new SortedDocValuesField(ParsedDocument.FIELDS.ID, new BytesRef(pd.getIdentifier())));
+
                         // add the document body
                         doc.add(new BodyField(pd.getBody()));
                         //System.out.println(pd.getIdentifier());
@@ -400,6 +480,9 @@ public class DirectoryIndexer {
 
         writer.close();
 
+        // compute the term weights once per commit, instead of every time a searcher starts
+        StatsUtils.updateTermWeights(indexDir.toString());
+
         if (docsCount != expectedDocs) {
             System.out.printf("Expected to index %d documents; %d indexed instead.%n", expectedDocs, docsCount);
         }
@@ -422,21 +505,27 @@ public class DirectoryIndexer {
 
         System.out.printf("%n#### Start re-indexing from documents ####%n");
         docsCount=0;
-        for(Document d: docs){
-            writer.addDocument(d);
-            docsCount++;
-
-            if (docsCount % 10000 == 0) {
-                System.out.printf("%d document(s) (%d files, %d Mbytes) re-indexed in %d seconds.%n",
-                        docsCount, filesCount, bytesCount / MBYTE,
-                        (System.currentTimeMillis() - start) / 1000);
-            }
-        }
+        try {
+            for(Document d: docs){
+                // documents read back from an index carry only their stored fields, doc values must be added again
+                if (d.getField(ParsedDocument.FIELDS.ID) != null && d.getBinaryValue(ParsedDocument.FIELDS.ID) == null) {
+                    d.add(new SortedDocValuesField(ParsedDocument.FIELDS.ID, new BytesRef(d.get(ParsedDocument.FIELDS.ID))));
+                }
+                writer.addDocument(d);
+                docsCount++;
 
+                if (docsCount % 10000 == 0) {
+                    System.out.printf("%d document(s) (%d files, %d Mbytes) re-indexed in %d seconds.%n",
+                            docsCount, filesCount, bytesCount / MBYTE,
+                            (System.currentTimeMillis() - start) / 1000);
+                }
+            }
 
-        writer.commit();
 
-        writer.close();
+            writer.commit();
+        } finally {
+            writer.close();
+        }
 
         if (docsCount != expectedDocs) {
             System.out.printf("Expected to index %d documents; %d indexed instead.%n", expectedDocs, docsCount);
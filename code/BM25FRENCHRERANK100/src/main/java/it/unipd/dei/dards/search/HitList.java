@@ -0,0 +1,198 @@
+/*
+ *  Copyright 2021-2022 University of Padua, Italy
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unipd.dei.dards.search;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.util.RamUsageEstimator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The hits retrieved for a topic, whose stored content is read only when needed.
+ * <p>
+ * Only the first {@code prefix} hits, the ones to be reranked, are ever materialized as full {@link Document}s, and
+ * only while they are re-indexed: the other hits are resolved to their identifiers through an {@link IdResolver}. The
+ * materialized documents are kept within a maximum number of bytes, so that the memory needed by a topic does not
+ * depend on the length of the documents retrieved for it.
+ *
+ * @author DARDS
+ * @version 1.00
+ * @since 1.00
+ */
+public class HitList {
+
+    /**
+     * The index reader the hits come from.
+     */
+    private final IndexReader reader;
+
+    /**
+     * The resolver of the identifiers of the hits.
+     */
+    private final IdResolver ids;
+
+    /**
+     * The hits, in decreasing score order.
+     */
+    private final ScoreDoc[] hits;
+
+    /**
+     * The number of hits whose stored content is needed.
+     */
+    private final int prefix;
+
+    /**
+     * The maximum number of bytes of the materialized documents.
+     */
+    private final long maxBytes;
+
+    /**
+     * Creates a new list of hits.
+     *
+     * @param reader   the index reader the hits come from.
+     * @param ids      the resolver of the identifiers of the hits.
+     * @param hits     the hits, in decreasing score order.
+     * @param prefix   the number of hits whose stored content is needed.
+     * @param maxBytes the maximum number of bytes of the materialized documents.
+     * @throws NullPointerException     if {@code reader}, {@code ids} or {@code hits} are {@code null}.
+     * @throws IllegalArgumentException if {@code prefix} is negative or {@code maxBytes} is not positive.
+     */
+    public HitList(final IndexReader reader, final IdResolver ids, final ScoreDoc[] hits, final int prefix,
+                   final long maxBytes) {
+
+        if (reader == null) {
+            throw new NullPointerException("Index reader cannot be null.");
+        }
+
+        if (ids == null) {
+            throw new NullPointerException("Identifier resolver cannot be null.");
+        }
+
+        if (hits == null) {
+            throw new NullPointerException("Hits cannot be null.");
+        }
+
+        if (prefix < 0) {
+            throw new IllegalArgumentException(
+                    String.format("The number of hits to materialize cannot be negative: %d.", prefix));
+        }
+
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException(
+                    String.format("The maximum number of bytes must be greater than zero: %d.", maxBytes));
+        }
+
+        this.reader = reader;
+        this.ids = ids;
+        this.hits = hits;
+        this.prefix = Math.min(prefix, hits.length);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the number of hits.
+     *
+     * @return the number of hits.
+     */
+    public int size() {
+        return hits.length;
+    }
+
+    /**
+     * Returns the given hit.
+     *
+     * @param i the rank of the hit.
+     * @return the hit.
+     */
+    public ScoreDoc get(final int i) {
+        return hits[i];
+    }
+
+    /**
+     * Returns the identifier of the given hit.
+     *
+     * @param i the rank of the hit.
+     * @return the identifier of the document of the hit.
+     * @throws IOException if something goes wrong while reading the identifier.
+     */
+    public String id(final int i) throws IOException {
+        return ids.get(hits[i].doc);
+    }
+
+    /**
+     * Reads the stored content of the hits to be reranked.
+     * <p>
+     * The documents are not kept by the list: the caller should drop them as soon as they are re-indexed. If reading
+     * the next document would exceed the maximum number of bytes, the documents read so far are returned, so that
+     * fewer hits are reranked.
+     *
+     * @return the documents of the hits to be reranked, in rank order.
+     * @throws IOException if something goes wrong while reading the documents.
+     */
+    public List<Document> materialize() throws IOException {
+
+        final List<Document> docs = new ArrayList<>(prefix);
+        final StoredFields storedFields = reader.storedFields();
+        long bytes = 0;
+
+        for (int i = 0; i < prefix; i++) {
+
+            final Document d = storedFields.document(hits[i].doc);
+            final long size = sizeOf(d);
+
+            // always keep at least one document, otherwise there would be nothing to rerank
+            if (!docs.isEmpty() && bytes + size > maxBytes) {
+                System.out.printf("Only %d of %d document(s) materialized: %d more bytes would exceed %d bytes.%n",
+                                  docs.size(), prefix, size, maxBytes);
+                break;
+            }
+
+            docs.add(d);
+            bytes += size;
+        }
+
+        return docs;
+    }
+
+    /**
+     * Estimates the number of bytes of the stored content of a document.
+     *
+     * @param d the document.
+     * @return the estimated number of bytes of the string and binary values of the document.
+     */
+    private static long sizeOf(final Document d) {
+
+        long size = 0;
+
+        for (IndexableField f : d.getFields()) {
+            if (f.stringValue() != null) {
+                size += RamUsageEstimator.sizeOf(f.stringValue());
+            } else if (f.binaryValue() != null) {
+                size += f.binaryValue().length;
+            }
+        }
+
+        return size;
+    }
+
+}
@@ -20,6 +20,7 @@ import it.unipd.dei.dards.analysis.MyFrenchAnalyzer;
 import it.unipd.dei.dards.index.DirectoryIndexer;
 import it.unipd.dei.dards.parse.ParsedDocument;
 import it.unipd.dei.dards.utils.StatsUtils;
+import it.unipd.dei.dards.utils.TermWeights;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
@@ -32,6 +33,8 @@ import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.search.*;
 import org.apache.lucene.search.similarities.*;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 
 import java.io.*;
@@ -71,6 +74,11 @@ public class Searcher {
     }
 
 
+    /**
+     * The maximum number of bytes of the documents read for reranking a topic
+     */
+    private static final long MAX_RERANK_BYTES = 64L * 1024 * 1024;
+
     /**
      * The identifier of the run
      */
@@ -86,6 +94,11 @@ public class Searcher {
      */
     private final IndexReader reader;
 
+    /**
+     * The resolver of the identifiers of the retrieved documents
+     */
+    private final IdResolver ids;
+
     /**
      * The index searcher.
      */
@@ -137,10 +150,9 @@ public class Searcher {
     private  int ramBuffer=256;
 
     /**
-     * The path for the index used for the reranking
+     * The total time spent reranking, in nanoseconds
      */
-
-    private  String reindexPath=null;
+    private long totalRerankTime=0;
 
     /**
      * Internal counter
@@ -153,9 +165,9 @@ public class Searcher {
     private int rerankedDocs=0;
 
     /**
-     * HashMap containing the tfidf scores for each term
+     * Table containing the tfidf scores for each term
      */
-    private HashMap<String,Float> tfidf=null;
+    private TermWeights tfidf=null;
 
     /**
      * Creates a new searcher.
@@ -207,6 +219,7 @@ public class Searcher {
 
         try {
             reader = DirectoryReader.open(FSDirectory.open(indexDir));
+            ids = new IdResolver(reader);
         } catch (IOException e) {
             throw new IllegalArgumentException(String.format("Unable to create the index reader for directory %s: %s.",
                                                              indexDir.toAbsolutePath().toString(), e.getMessage()), e);
@@ -317,7 +330,7 @@ public class Searcher {
 
         this.tfidf=null;
         try{
-            this.tfidf= StatsUtils.tfIdfScore(indexPath,indexedDocs);
+            this.tfidf= StatsUtils.termWeights(indexPath);
 
             //normalizing a bit the weights
             /*Float min=Collections.min(tfidf.values());
@@ -347,7 +360,6 @@ public class Searcher {
      * @param sim               the similarity for the reranking
      * @param a                 the analyzer for the reranking
      * @param ramBuffer         the size of the ramBuffer for the rerank
-     * @param reindexPath       the path for the index used in the reranking
      * @param indexedDocs       the number of indexed docs.
      * @param rerankedDocs      the number of documents to rerank.
      * @throws NullPointerException     if any of the parameters is {@code null}.
@@ -356,18 +368,17 @@ public class Searcher {
     public Searcher(final Analyzer analyzer, final Similarity similarity, final String indexPath,
                     final String topicsFile, final int expectedTopics, final String runID, final String runPath,
                     final int maxDocsRetrieved,final boolean rerank,
-                    final Similarity sim,final Analyzer a, final int ramBuffer, final String reindexPath, long indexedDocs, int rerankedDocs) {
+                    final Similarity sim,final Analyzer a, final int ramBuffer, long indexedDocs, int rerankedDocs) {
 
         this(analyzer, similarity, indexPath, topicsFile, expectedTopics, runID, runPath, maxDocsRetrieved,indexedDocs);
 
         this.rerank=rerank;
 
         if(rerank){
-            if(sim==null || a==null || ramBuffer<256 || reindexPath==null || rerankedDocs<=0) throw new IllegalArgumentException("inconsistent parameter passed");
+            if(sim==null || a==null || ramBuffer<256 || rerankedDocs<=0) throw new IllegalArgumentException("inconsistent parameter passed");
             this.sim=sim;
             this.a=a;
             this.ramBuffer=ramBuffer;
-            this.reindexPath=reindexPath;
             this.rerankedDocs=rerankedDocs;
         }
     }
@@ -394,9 +405,6 @@ public class Searcher {
         // the start time of the searching
         final long start = System.currentTimeMillis();
 
-        final Set<String> idField = new HashSet<>();
-        idField.add(ParsedDocument.FIELDS.ID);
-
         BooleanQuery.Builder bq = null;
         Query q = null;
         TopDocs docs = null;
@@ -424,18 +432,10 @@ public class Searcher {
 
                 sd = docs.scoreDocs;
 
-                ArrayList<Document> reldocs=new ArrayList<>();
-                for (int i = 0, n = sd.length; i < n; i++) {
-                    //docID = reader.document(sd[i].doc, idField).get(ParsedDocument.FIELDS.ID);
-                    reldocs.add(reader.document(sd[i].doc));
+                // only the hits to rerank are read from the index, the others are resolved to their identifiers
+                final HitList hits = new HitList(reader, ids, sd, rerank ? rerankedDocs : 0, MAX_RERANK_BYTES);
 
-
-                    //System.out.println(reader.document(sd[i].doc).get(ParsedDocument.FIELDS.BODY));
-                    //run.printf(Locale.ENGLISH, " %s Q0 %s %d %.6f %s%n", t.getQueryID(), docID, i, sd[i].score,runID);
-                }
-
-
-                this.search(reldocs,t,sd,q,idField);
+                this.search(hits,t,q);
                 run.flush();
             }
         } finally {
@@ -448,94 +448,100 @@ public class Searcher {
 
         System.out.printf("%d topic(s) searched in %d seconds.%n", topics.length, elapsedTime / 1000);
 
+        if (rerank) {
+            System.out.printf(Locale.ENGLISH, "%d topic(s) reranked in %.3f ms on average.%n", topics.length,
+                              topics.length == 0 ? 0 : totalRerankTime / 1E6 / topics.length);
+        }
+
         System.out.printf("#### Searching complete ####%n");
     }
 
 
 
     /**
-     * /** Searches for the specified topics.
+     * Reranks, if desired, the hits retrieved for a topic and writes them to the run.
      *
+     * @param hits the hits retrieved for the topic.
+     * @param t    the topic.
+     * @param q    the query of the topic.
      * @throws IOException    if something goes wrong while searching.
      * @throws ParseException if something goes wrong while parsing topics.
      */
-    private void search(ArrayList<Document> oldreldocs,QualityQuery t,ScoreDoc[] oldsd, Query q,Set<String> idField) throws IOException, ParseException {
+    private void search(HitList hits,QualityQuery t, Query q) throws IOException, ParseException {
 
-        if(rerank){
-            int size= rerankedDocs>oldreldocs.size()? oldreldocs.size() : rerankedDocs;
+        // topics without hits have nothing to rerank
+        if(rerank && hits.size()>0){
+            List<Document> rerankDocs=hits.materialize();
+            int size=rerankDocs.size();
             System.out.printf("%n#### Start rerank ####%n");
-            System.out.println("reindex path"+reindexPath);
-            DirectoryIndexer diridx=new DirectoryIndexer(a,sim,ramBuffer,reindexPath,size);
-            //System.out.println(oldreldocs.get(0).get(ParsedDocument.FIELDS.BODY));
-            diridx.index(oldreldocs.subList(0,size));
-            System.out.printf("%n### reindexing complete ###%n");
-
-            DirectoryReader reIndexReader=null;
-
-            final Path reindexDir = Paths.get(reindexPath);
-            if (!Files.isReadable(reindexDir)) {
-                throw new IllegalArgumentException(
-                        String.format("Index directory %s cannot be read.", reindexDir.toAbsolutePath().toString()));
-            }
-
-            if (!Files.isDirectory(reindexDir)) {
-                throw new IllegalArgumentException(String.format("%s expected to be a directory where to search the index.",
-                        reindexDir.toAbsolutePath().toString()));
-            }
-
-            try {
-                reIndexReader = DirectoryReader.open(FSDirectory.open(reindexDir));
-            } catch (IOException e) {
-                throw new IllegalArgumentException(String.format("Unable to create the index reader for directory %s: %s.",
-                        reindexDir.toAbsolutePath().toString(), e.getMessage()), e);
-            }
-
-            IndexSearcher reIndexSearcher = new IndexSearcher(reIndexReader);
-            reIndexSearcher.setSimilarity(sim);
-            //q=this.createQuery(t.getValue(TOPIC_FIELDS.TITLE));
-            TopDocs reindexedDocs =reIndexSearcher.search(q, size);
-            ScoreDoc[] reindexedSd=reindexedDocs.scoreDocs;
-            String docID;
-           /* List<String> test=new ArrayList<>();
-            for(Document d: oldreldocs){
-                test.add(d.get(ParsedDocument.FIELDS.ID));
-            }*/
-            //int ee=0;
-            ArrayList<ScoreDoc> toPrint=new ArrayList<>();
-
-            for (int i = 0, n = reindexedSd.length; i < n; i++) {
-                toPrint.add(reindexedSd[i]);
+            final long rerankStart = System.nanoTime();
+
+            // the documents to rerank are indexed in memory, with the same configuration as on disk and thus the
+            // same scores, and the index is dropped as soon as the topic is done
+            try (Directory reindexDir = new ByteBuffersDirectory()) {
+                DirectoryIndexer diridx=new DirectoryIndexer(a,sim,ramBuffer,reindexDir,size);
+                //System.out.println(oldreldocs.get(0).get(ParsedDocument.FIELDS.BODY));
+                diridx.index(rerankDocs);
+                rerankDocs=null;
+                System.out.printf("%n### reindexing complete ###%n");
+
+                try (DirectoryReader reIndexReader = DirectoryReader.open(reindexDir)) {
+
+                    final IdResolver reIndexIds = new IdResolver(reIndexReader);
+
+                    IndexSearcher reIndexSearcher = new IndexSearcher(reIndexReader);
+                    reIndexSearcher.setSimilarity(sim);
+                    //q=this.createQuery(t.getValue(TOPIC_FIELDS.TITLE));
+                    TopDocs reindexedDocs =reIndexSearcher.search(q, size);
+                    ScoreDoc[] reindexedSd=reindexedDocs.scoreDocs;
+                    String docID;
+                   /* List<String> test=new ArrayList<>();
+                    for(Document d: oldreldocs){
+                        test.add(d.get(ParsedDocument.FIELDS.ID));
+                    }*/
+                    //int ee=0;
+                    ArrayList<ScoreDoc> toPrint=new ArrayList<>();
+
+                    for (int i = 0, n = reindexedSd.length; i < n; i++) {
+                        toPrint.add(reindexedSd[i]);
+                    }
+
+                   for (int i = reindexedSd.length; i < maxDocsRetrieved && i<hits.size(); i++) {
+                        toPrint.add(hits.get(i));
+                    }
+
+                    for(int i=0; i<toPrint.size(); i++){
+                        if(i<reindexedSd.length) {
+                            docID = reIndexIds.get(toPrint.get(i).doc);
+                            if(toPrint.size()>reindexedSd.length) toPrint.get(i).score=toPrint.get(i).score+toPrint.get(reindexedSd.length).score;
+                        }else{
+                            docID = ids.get(toPrint.get(i).doc);
+                        }
+                        /*if(!test.contains(docID)){
+                            ee++;
+                            System.out.println("error "+ee);
+                        }else{
+                            System.out.println("ID: "+docID);
+                        }*/
+                        run.printf(Locale.ENGLISH, " %s Q0 %s %d %.6f %s%n", t.getQueryID(), docID, i, toPrint.get(i).score,runID);
+                    }
+                }
             }
 
-           for (int i = reindexedSd.length; i < maxDocsRetrieved && i<oldreldocs.size(); i++) {
-                toPrint.add(oldsd[i]);
-            }
+            final long rerankTime = System.nanoTime() - rerankStart;
+            totalRerankTime += rerankTime;
 
-            for(int i=0; i<toPrint.size(); i++){
-                if(i<reindexedSd.length) {
-                    docID = reIndexReader.document(toPrint.get(i).doc, idField).get(ParsedDocument.FIELDS.ID);
-                    if(toPrint.size()>reindexedSd.length) toPrint.get(i).score=toPrint.get(i).score+toPrint.get(reindexedSd.length).score;
-                }else{
-                    docID = reader.document(toPrint.get(i).doc, idField).get(ParsedDocument.FIELDS.ID);
-                }
-                /*if(!test.contains(docID)){
-                    ee++;
-                    System.out.println("error "+ee);
-                }else{
-                    System.out.println("ID: "+docID);
-                }*/
-                run.printf(Locale.ENGLISH, " %s Q0 %s %d %.6f %s%n", t.getQueryID(), docID, i, toPrint.get(i).score,runID);
-            }
+            System.out.printf(Locale.ENGLISH, "Topic %s reranked in %.3f ms.%n", t.getQueryID(), rerankTime / 1E6);
             System.out.printf("%n### ReRank completed ###%n");
         }else{
             String docID;
-            for (int i = 0, n = oldreldocs.size(); i < n; i++) {
+            for (int i = 0, n = hits.size(); i < n; i++) {
                 //docID = reader.document(sd[i].doc, idField).get(ParsedDocument.FIELDS.ID);
-                docID=oldreldocs.get(i).get(ParsedDocument.FIELDS.ID);
+                docID=hits.id(i);
 
 
                 //System.out.println(reader.document(sd[i].doc).get(ParsedDocument.FIELDS.BODY));
-                run.printf(Locale.ENGLISH, " %s Q0 %s %d %.6f %s%n", t.getQueryID(), docID, i, oldsd[i].score,runID);
+                run.printf(Locale.ENGLISH, " %s Q0 %s %d %.6f %s%n", t.getQueryID(), docID, i, hits.get(i).score,runID);
             }
         }
     }
@@ -604,8 +610,6 @@ public class Searcher {
 
         final String indexPath = "code/experiment/index-base-french";
 
-        final String reindexPath= "code/experiment/index-rerank-french";
-
         final String runPath = "code/experiment";
 
         final String runID = "seupd2223-dards-rerank100-totalboost";
@@ -629,7 +633,7 @@ public class Searcher {
             System.out.println("|"+word+"| => "+res.get(word));
         }*/
 
-        Searcher s = new Searcher(a, sim, indexPath, topics, 672, runID, runPath, maxDocsRetrieved,true,sim,a,256,reindexPath,1570734,100);
+        Searcher s = new Searcher(a, sim, indexPath, topics, 672, runID, runPath, maxDocsRetrieved,true,sim,a,256,1570734,100);
         //Searcher s = new Searcher(a, sim, indexPath, topics, 672, runID, runPath, maxDocsRetrieved,1570734);
         s.search();
 
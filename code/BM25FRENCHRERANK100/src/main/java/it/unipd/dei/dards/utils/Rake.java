@@ -1,13 +1,12 @@
 package it.unipd.dei.dards.utils;
 
 
+import it.unipd.dei.dards.analysis.ResourceRegistry;
 import org.apache.commons.lang3.StringUtils;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.*;
+import java.util.regex.Pattern;
 
 /**
  *  Rapid Automatic Keyword Extraction (RAKE)
@@ -25,6 +24,11 @@ public class Rake {
      */
     private final String stoplistPath;
 
+    /**
+     *  Pattern matching the stopwords, compiled the first time it is needed
+     */
+    private Pattern stopwordPattern = null;
+
     /**
      * Creates an instance of RAKE
      * @param stoplistPath the path to the stoplists
@@ -41,9 +45,8 @@ public class Rake {
 
     private String buildStopwordRegex() throws IOException{
 
-        InputStream stream = this.getClass().getResourceAsStream(stoplistPath);
-        String line,stopWordsPattern;
-        ArrayList<String> stopWords = loadStopwords();
+        String stopWordsPattern;
+        List<String> stopWords = loadStopwords();
 
         ArrayList<String> regexes = new ArrayList<>();
         for (String word : stopWords) {
@@ -59,25 +62,24 @@ public class Rake {
     }
 
 
-    private ArrayList<String> loadStopwords() throws IOException{
-        InputStream stream = Rake.class.getClassLoader().getResourceAsStream(stoplistPath);
-        String line;
-        ArrayList<String> stopWords=new ArrayList<>();
-        if (stream != null) {
-            try {
-                BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(stream));
-
-                //each line of the file is a stopword
-                while ((line = bufferedReader.readLine()) != null) stopWords.add(line.trim());
-
-            } catch (Exception e) {
-                throw new IOException("Unable to load stopwords",e);
-            }
-        } else{
-            throw new IOException("Unable to load stopwords");
+    private List<String> loadStopwords() throws IOException{
+        try {
+            // read and parsed only once, then shared by all the instances
+            return ResourceRegistry.wordList(stoplistPath);
+        } catch (IllegalStateException e) {
+            throw new IOException("Unable to load stopwords",e);
         }
+    }
+
+    /**
+     * Returns the pattern matching the stopwords, compiling it the first time instead of for each sentence
+     * @return the pattern matching the stopwords
+     * @throws IOException if some error occurs reading the stopwords
+     */
+    private Pattern stopwordPattern() throws IOException{
+        if (stopwordPattern == null) stopwordPattern = Pattern.compile(buildStopwordRegex());
 
-        return stopWords;
+        return stopwordPattern;
     }
 
     /**
@@ -120,7 +122,7 @@ public class Rake {
         ArrayList<String> phraseList = new ArrayList<>();
 
         for (String sentence : sentences) {
-            String temp = sentence.trim().replaceAll(buildStopwordRegex(), "|");
+            String temp = stopwordPattern().matcher(sentence.trim()).replaceAll("|");
             String[] phrases = temp.split("\\|");
 
             for (String phrase : phrases) {
@@ -0,0 +1,342 @@
+package it.unipd.dei.dards.utils;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.StringHelper;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An immutable table associating a weight to each term of a vocabulary.
+ * <p>
+ * Terms are kept as their UTF-8 bytes, one after the other, and weights in a parallel array, so that no object is
+ * allocated per term. An open-addressing hash table over the terms gives constant-time lookups.
+ * <p>
+ * The table can be written to a file and memory-mapped back, so that it is computed once per index commit instead of
+ * every time a searcher starts. The file starts with a header made of the magic number, the format version, the
+ * generation of the index commit the weights were computed from, the number of terms and the number of slots of the
+ * hash table, followed by the offsets of the terms, the weights, the hash table and the bytes of the terms.
+ *
+ * @author DARDS
+ * @version 1.00
+ * @since 1.00
+ */
+public class TermWeights {
+
+    /**
+     * The magic number identifying a term weights file.
+     */
+    private static final int MAGIC = 0x54575453;
+
+    /**
+     * The version of the format of the term weights file.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The size of the header of the term weights file.
+     */
+    private static final int HEADER_SIZE = 3 * Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+    /**
+     * The seed of the hash function, fixed so that the hash table can be written and read back.
+     */
+    private static final int SEED = 0x5EED;
+
+    /**
+     * The bytes of all the terms, one after the other.
+     */
+    private final ByteBuffer terms;
+
+    /**
+     * The position of each term in {@link #terms}, followed by the number of bytes of all the terms.
+     */
+    private final IntBuffer offsets;
+
+    /**
+     * The weight of each term.
+     */
+    private final FloatBuffer weights;
+
+    /**
+     * The hash table: each slot contains the index of a term plus one, or zero if it is empty.
+     */
+    private final IntBuffer table;
+
+    /**
+     * The number of terms.
+     */
+    private final int size;
+
+    /**
+     * The generation of the index commit the weights were computed from, or -1 if unknown.
+     */
+    private final long generation;
+
+    /**
+     * Creates a new table of term weights.
+     *
+     * @param terms   the bytes of all the terms, one after the other.
+     * @param offsets the position of each term in {@code terms}, followed by the number of bytes of all the terms.
+     * @param weights the weight of each term.
+     * @param size    the number of terms.
+     * @throws NullPointerException     if any of the arrays is {@code null}.
+     * @throws IllegalArgumentException if the arrays do not hold {@code size} terms.
+     */
+    public TermWeights(final byte[] terms, final int[] offsets, final float[] weights, final int size) {
+
+        if (terms == null) {
+            throw new NullPointerException("Terms cannot be null.");
+        }
+
+        if (offsets == null) {
+            throw new NullPointerException("Term offsets cannot be null.");
+        }
+
+        if (weights == null) {
+            throw new NullPointerException("Term weights cannot be null.");
+        }
+
+        if (size < 0 || offsets.length <= size || weights.length < size || terms.length < offsets[size]) {
+            throw new IllegalArgumentException(String.format("Arrays do not hold %d terms.", size));
+        }
+
+        this.terms = ByteBuffer.wrap(terms);
+        this.offsets = IntBuffer.wrap(offsets);
+        this.weights = FloatBuffer.wrap(weights);
+        this.size = size;
+        this.generation = -1;
+
+        // keep the table at most half full, so that probe sequences stay short
+        final int slots = Integer.highestOneBit(Math.max(1, 2 * size)) << 1;
+        final int[] t = new int[slots];
+
+        for (int i = 0; i < size; i++) {
+            int slot = StringHelper.murmurhash3_x86_32(terms, offsets[i], offsets[i + 1] - offsets[i], SEED) & (slots - 1);
+            while (t[slot] != 0) {
+                slot = (slot + 1) & (slots - 1);
+            }
+            t[slot] = i + 1;
+        }
+
+        this.table = IntBuffer.wrap(t);
+    }
+
+    /**
+     * Creates a new table of term weights backed by the given buffers.
+     *
+     * @param terms      the bytes of all the terms, one after the other.
+     * @param offsets    the position of each term in {@code terms}, followed by the number of bytes of all the terms.
+     * @param weights    the weight of each term.
+     * @param table      the hash table.
+     * @param size       the number of terms.
+     * @param generation the generation of the index commit the weights were computed from.
+     */
+    private TermWeights(final ByteBuffer terms, final IntBuffer offsets, final FloatBuffer weights,
+                        final IntBuffer table, final int size, final long generation) {
+        this.terms = terms;
+        this.offsets = offsets;
+        this.weights = weights;
+        this.table = table;
+        this.size = size;
+        this.generation = generation;
+    }
+
+    /**
+     * Memory-maps a table of term weights previously written with {@link #write(Path, long)}.
+     *
+     * @param file the file containing the table.
+     * @return the table of term weights.
+     * @throws NullPointerException     if {@code file} is {@code null}.
+     * @throws IllegalArgumentException if the file is not a valid term weights file.
+     * @throws IOException              if the file cannot be mapped.
+     */
+    public static TermWeights map(final Path file) throws IOException {
+
+        if (file == null) {
+            throw new NullPointerException("Term weights file cannot be null.");
+        }
+
+        final ByteBuffer buf;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+
+            if (ch.size() < HEADER_SIZE || ch.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(
+                        String.format("%s is not a valid term weights file.", file.toAbsolutePath().toString()));
+            }
+
+            buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+
+        final int size = buf.getInt(8 + Long.BYTES);
+        final int slots = buf.getInt(12 + Long.BYTES);
+
+        final long offsetsStart = HEADER_SIZE;
+        final long weightsStart = offsetsStart + (size + 1L) * Integer.BYTES;
+        final long tableStart = weightsStart + (long) size * Float.BYTES;
+        final long termsStart = tableStart + (long) slots * Integer.BYTES;
+
+        if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION || size < 0 || slots <= 0 ||
+                Integer.bitCount(slots) != 1 || termsStart > buf.limit()) {
+            throw new IllegalArgumentException(
+                    String.format("%s is not a valid term weights file.", file.toAbsolutePath().toString()));
+        }
+
+        return new TermWeights(buf.slice((int) termsStart, buf.limit() - (int) termsStart),
+                               buf.slice((int) offsetsStart, (size + 1) * Integer.BYTES).asIntBuffer(),
+                               buf.slice((int) weightsStart, size * Float.BYTES).asFloatBuffer(),
+                               buf.slice((int) tableStart, slots * Integer.BYTES).asIntBuffer(), size,
+                               buf.getLong(8));
+    }
+
+    /**
+     * Writes the table of term weights to a file, replacing it atomically if it already exists.
+     *
+     * @param file       the file where to write the table.
+     * @param generation the generation of the index commit the weights were computed from.
+     * @throws NullPointerException if {@code file} is {@code null}.
+     * @throws IOException          if something goes wrong while writing the file.
+     */
+    public void write(final Path file, final long generation) throws IOException {
+
+        if (file == null) {
+            throw new NullPointerException("Term weights file cannot be null.");
+        }
+
+        final Path tmp = Paths.get(file.toString() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(generation);
+            out.writeInt(size);
+            out.writeInt(table.limit());
+
+            for (int i = 0; i <= size; i++) {
+                out.writeInt(offsets.get(i));
+            }
+
+            for (int i = 0; i < size; i++) {
+                out.writeFloat(weights.get(i));
+            }
+
+            for (int i = 0, n = table.limit(); i < n; i++) {
+                out.writeInt(table.get(i));
+            }
+
+            for (int i = 0, n = offsets.get(size); i < n; i++) {
+                out.writeByte(terms.get(i));
+            }
+        }
+
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns the generation of the index commit the weights were computed from.
+     *
+     * @return the generation of the index commit the weights were computed from, or -1 if unknown.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Returns the number of terms.
+     *
+     * @return the number of terms.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the weight of the given term.
+     *
+     * @param term         the term.
+     * @param defaultValue the value to return if the term is not in the table.
+     * @return the weight of the term, or {@code defaultValue} if the term is not in the table.
+     */
+    public float getOrDefault(final String term, final float defaultValue) {
+        final byte[] b = term.getBytes(StandardCharsets.UTF_8);
+        return getOrDefault(b, 0, b.length, defaultValue);
+    }
+
+    /**
+     * Returns the weight of the given term.
+     *
+     * @param term         the term.
+     * @param defaultValue the value to return if the term is not in the table.
+     * @return the weight of the term, or {@code defaultValue} if the term is not in the table.
+     */
+    public float getOrDefault(final BytesRef term, final float defaultValue) {
+        return getOrDefault(term.bytes, term.offset, term.length, defaultValue);
+    }
+
+    /**
+     * Returns the weight of the term made of the given bytes.
+     *
+     * @param b            the array containing the bytes of the term.
+     * @param from         the position of the first byte of the term.
+     * @param length       the number of bytes of the term.
+     * @param defaultValue the value to return if the term is not in the table.
+     * @return the weight of the term, or {@code defaultValue} if the term is not in the table.
+     */
+    private float getOrDefault(final byte[] b, final int from, final int length, final float defaultValue) {
+
+        final int mask = table.limit() - 1;
+
+        for (int slot = StringHelper.murmurhash3_x86_32(b, from, length, SEED) & mask; ;
+             slot = (slot + 1) & mask) {
+
+            final int entry = table.get(slot);
+
+            if (entry == 0) {
+                return defaultValue;
+            }
+
+            if (equals(entry - 1, b, from, length)) {
+                return weights.get(entry - 1);
+            }
+        }
+    }
+
+    /**
+     * Indicates whether the given term is made of the given bytes.
+     *
+     * @param term   the index of the term.
+     * @param b      the array containing the bytes to compare with.
+     * @param from   the position of the first byte to compare with.
+     * @param length the number of bytes to compare with.
+     * @return {@code true} if the term is made of the given bytes, {@code false} otherwise.
+     */
+    private boolean equals(final int term, final byte[] b, final int from, final int length) {
+
+        final int start = offsets.get(term);
+
+        if (offsets.get(term + 1) - start != length) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (terms.get(start + i) != b[from + i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+}
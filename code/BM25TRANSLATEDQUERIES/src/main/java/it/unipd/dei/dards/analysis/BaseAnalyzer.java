@@ -44,7 +44,7 @@ import java.io.IOException;
 import java.io.Reader;
 
 import static it.unipd.dei.dards.analysis.AnalyzerUtil.consumeTokenStream;
-import static it.unipd.dei.dards.analysis.AnalyzerUtil.loadStopList;
+import static it.unipd.dei.dards.analysis.ResourceRegistry.stopList;
 
 /**
  * Introductory example on how to use write your own {@link BaseAnalyzer} by using different {@link Tokenizer}s and {@link
@@ -76,7 +76,7 @@ public class BaseAnalyzer extends Analyzer {
 
         tokens = new EnglishPossessiveFilter(tokens);
 
-        tokens = new StopFilter(tokens, loadStopList("smart.txt"));
+        tokens = new StopFilter(tokens, stopList("smart.txt"));
 
         //tokens = new PorterStemFilter(tokens);
 
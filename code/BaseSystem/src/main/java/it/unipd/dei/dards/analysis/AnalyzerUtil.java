@@ -15,11 +15,6 @@
  */
 package it.unipd.dei.dards.analysis;
 
-import opennlp.tools.lemmatizer.LemmatizerModel;
-import opennlp.tools.namefind.TokenNameFinderModel;
-import opennlp.tools.postag.POSModel;
-import opennlp.tools.sentdetect.SentenceModel;
-import opennlp.tools.tokenize.TokenizerModel;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.CharArraySet;
 import org.apache.lucene.analysis.TokenStream;
@@ -166,40 +161,12 @@ public class AnalyzerUtil{
      *
      * @param modelFile the name of the file containing the model.
      *
-     * @return the required Apache OpenNLP model.
+     * @return a new tagger over the required Apache OpenNLP model, shared through {@link OpenNlpModels}.
      *
      * @throws IllegalStateException if there is any issue while loading the model.
      */
     static NLPPOSTaggerOp loadPosTaggerModel(final String modelFile) {
-
-        if (modelFile == null) {
-            throw new NullPointerException("Model file name cannot be null.");
-        }
-
-        if (modelFile.isEmpty()) {
-            throw new IllegalArgumentException("Model file name cannot be empty.");
-        }
-
-        // the model
-        NLPPOSTaggerOp model = null;
-
-        try {
-
-            // Get an input stream for the file containing the model
-            InputStream in = new BufferedInputStream(CL.getResourceAsStream(modelFile));
-
-            // Load the model
-            model = new NLPPOSTaggerOp(new POSModel(in));
-
-            // Close the file
-            in.close();
-
-        } catch (IOException e) {
-            throw new IllegalStateException(String.format("Unable to load the model %s: %s", modelFile, e.getMessage()),
-                    e);
-        }
-
-        return model;
+        return OpenNlpModels.posTagger(modelFile);
     }
 
     /**
@@ -207,40 +174,12 @@ public class AnalyzerUtil{
      *
      * @param modelFile the name of the file containing the model.
      *
-     * @return the required Apache OpenNLP model.
+     * @return a new tagger over the required Apache OpenNLP model, shared through {@link OpenNlpModels}.
      *
      * @throws IllegalStateException if there is any issue while loading the model.
      */
     static NLPSentenceDetectorOp loadSentenceDetectorModel(final String modelFile) {
-
-        if (modelFile == null) {
-            throw new NullPointerException("Model file name cannot be null.");
-        }
-
-        if (modelFile.isEmpty()) {
-            throw new IllegalArgumentException("Model file name cannot be empty.");
-        }
-
-        // the model
-        NLPSentenceDetectorOp model = null;
-
-        try {
-
-            // Get an input stream for the file containing the model
-            InputStream in = new BufferedInputStream(CL.getResourceAsStream(modelFile));
-
-            // Load the model
-            model = new NLPSentenceDetectorOp(new SentenceModel(in));
-
-            // Close the file
-            in.close();
-
-        } catch (IOException e) {
-            throw new IllegalStateException(String.format("Unable to load the model %s: %s", modelFile, e.getMessage()),
-                    e);
-        }
-
-        return model;
+        return OpenNlpModels.sentenceDetector(modelFile);
     }
 
     /**
@@ -248,40 +187,12 @@ public class AnalyzerUtil{
      *
      * @param modelFile the name of the file containing the model.
      *
-     * @return the required Apache OpenNLP model.
+     * @return a new tagger over the required Apache OpenNLP model, shared through {@link OpenNlpModels}.
      *
      * @throws IllegalStateException if there is any issue while loading the model.
      */
     static NLPTokenizerOp loadTokenizerModel(final String modelFile) {
-
-        if (modelFile == null) {
-            throw new NullPointerException("Model file name cannot be null.");
-        }
-
-        if (modelFile.isEmpty()) {
-            throw new IllegalArgumentException("Model file name cannot be empty.");
-        }
-
-        // the model
-        NLPTokenizerOp model = null;
-
-        try {
-
-            // Get an input stream for the file containing the model
-            InputStream in = new BufferedInputStream(CL.getResourceAsStream(modelFile));
-
-            // Load the model
-            model = new NLPTokenizerOp(new TokenizerModel(in));
-
-            // Close the file
-            in.close();
-
-        } catch (IOException e) {
-            throw new IllegalStateException(String.format("Unable to load the model %s: %s", modelFile, e.getMessage()),
-                    e);
-        }
-
-        return model;
+        return OpenNlpModels.tokenizer(modelFile);
     }
 
     /**
@@ -289,40 +200,12 @@ public class AnalyzerUtil{
      *
      * @param modelFile the name of the file containing the model.
      *
-     * @return the required Apache OpenNLP model.
+     * @return a new tagger over the required Apache OpenNLP model, shared through {@link OpenNlpModels}.
      *
      * @throws IllegalStateException if there is any issue while loading the model.
      */
     static NLPLemmatizerOp loadLemmatizerModel(final String modelFile) {
-
-        if (modelFile == null) {
-            throw new NullPointerException("Model file name cannot be null.");
-        }
-
-        if (modelFile.isEmpty()) {
-            throw new IllegalArgumentException("Model file name cannot be empty.");
-        }
-
-        // the model
-        NLPLemmatizerOp model = null;
-
-        try {
-
-            // Get an input stream for the file containing the model
-            InputStream in = new BufferedInputStream(CL.getResourceAsStream(modelFile));
-
-            // Load the model
-            model = new NLPLemmatizerOp(null, new LemmatizerModel(in));
-
-            // Close the file
-            in.close();
-
-        } catch (IOException e) {
-            throw new IllegalStateException(String.format("Unable to load the model %s: %s", modelFile, e.getMessage()),
-                    e);
-        }
-
-        return model;
+        return OpenNlpModels.lemmatizer(modelFile);
     }
 
     /**
@@ -330,40 +213,12 @@ public class AnalyzerUtil{
      *
      * @param modelFile the name of the file containing the model.
      *
-     * @return the required Apache OpenNLP model.
+     * @return a new tagger over the required Apache OpenNLP model, shared through {@link OpenNlpModels}.
      *
      * @throws IllegalStateException if there is any issue while loading the model.
      */
     static NLPNERTaggerOp loadLNerTaggerModel(final String modelFile) {
-
-        if (modelFile == null) {
-            throw new NullPointerException("Model file name cannot be null.");
-        }
-
-        if (modelFile.isEmpty()) {
-            throw new IllegalArgumentException("Model file name cannot be empty.");
-        }
-
-        // the model
-        NLPNERTaggerOp model = null;
-
-        try {
-
-            // Get an input stream for the file containing the model
-            InputStream in = new BufferedInputStream(CL.getResourceAsStream(modelFile));
-
-            // Load the model
-            model = new NLPNERTaggerOp(new TokenNameFinderModel(in));
-
-            // Close the file
-            in.close();
-
-        } catch (IOException e) {
-            throw new IllegalStateException(String.format("Unable to load the model %s: %s", modelFile, e.getMessage()),
-                    e);
-        }
-
-        return model;
+        return OpenNlpModels.nerTagger(modelFile);
     }
 
 
@@ -38,11 +38,40 @@ import static it.unipd.dei.dards.analysis.AnalyzerUtil.*;
  */
 public class BaseOpenNlpAnalyzer extends Analyzer {
 
+	/**
+	 * The cache of the entities of the sentences already tagged, shared by all the threads, or {@code null} if there is
+	 * no cache
+	 */
+	private final NerCache nerCache;
+
 	/**
 	 * Creates a new instance of the analyzer.
 	 */
 	public BaseOpenNlpAnalyzer() {
 		super();
+		this.nerCache = null;
+	}
+
+	/**
+	 * Creates a new instance of the analyzer which caches the entities of the sentences already tagged, so that
+	 * sentences repeated across documents, as the boilerplate of web pages, are not tagged again.
+	 *
+	 * @param nerCacheSize the maximum number of sentences whose entities are cached.
+	 *
+	 * @throws IllegalArgumentException if {@code nerCacheSize} is less than or equal to zero.
+	 */
+	public BaseOpenNlpAnalyzer(final int nerCacheSize) {
+		super();
+		this.nerCache = new NerCache(nerCacheSize);
+	}
+
+	/**
+	 * Returns the cache of the entities of the sentences already tagged, e.g. to inspect its hit rate.
+	 *
+	 * @return the cache of the entities of the sentences already tagged, or {@code null} if there is no cache.
+	 */
+	public NerCache getNerCache() {
+		return nerCache;
 	}
 
 	@Override
@@ -64,17 +93,11 @@ public class BaseOpenNlpAnalyzer extends Analyzer {
 
 		TokenStream tokens = new OpenNLPPOSFilter(source, loadPosTaggerModel("en-pos-maxent.bin"));
 
-		tokens = new OpenNLPNERFilter(tokens, loadLNerTaggerModel("en-ner-location.bin"));
-
-		tokens = new OpenNLPNERFilter(tokens, loadLNerTaggerModel("en-ner-person.bin"));
-
-		tokens = new OpenNLPNERFilter(tokens, loadLNerTaggerModel("en-ner-organization.bin"));
-
-		tokens = new OpenNLPNERFilter(tokens, loadLNerTaggerModel("en-ner-money.bin"));
-
-		tokens = new OpenNLPNERFilter(tokens, loadLNerTaggerModel("en-ner-date.bin"));
-
-		tokens = new OpenNLPNERFilter(tokens, loadLNerTaggerModel("en-ner-time.bin"));
+		// a single pass over each sentence with all the NER models, by decreasing priority
+		tokens = new OpenNLPNERFilter(tokens, nerCache, loadLNerTaggerModel("en-ner-location.bin"),
+				loadLNerTaggerModel("en-ner-person.bin"), loadLNerTaggerModel("en-ner-organization.bin"),
+				loadLNerTaggerModel("en-ner-money.bin"), loadLNerTaggerModel("en-ner-date.bin"),
+				loadLNerTaggerModel("en-ner-time.bin"));
 
 		// tokens = new OpenNLPLemmatizerFilter(tokens, loadLemmatizerModel("en-lemmatizer.bin"));
 
@@ -99,7 +122,10 @@ public class BaseOpenNlpAnalyzer extends Analyzer {
 		final String text = "I now live in Rome where I met my wife Alice back in 2010 during a beautiful afternoon. Occasionally, I fly to New York to visit the United Nations where I would like to work. The last time I was there in March 2019, the flight was very inconvenient, leaving at 4:00 am, and expensive, over 1,500 dollars.";
 
 		// use the analyzer to process the text and print diagnostic information about each token
-		consumeTokenStream(new BaseOpenNlpAnalyzer(), text);
+		final BaseOpenNlpAnalyzer a = new BaseOpenNlpAnalyzer(1_000);
+		consumeTokenStream(a, text);
+
+		a.getNerCache().report();
 
 	}
 
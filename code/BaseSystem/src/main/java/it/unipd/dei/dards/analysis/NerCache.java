@@ -0,0 +1,345 @@
+/*
+ *  Copyright 2021-2022 University of Padua, Italy
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unipd.dei.dards.analysis;
+
+import opennlp.tools.util.Span;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the entities recognized in the sentences analyzed by {@link OpenNLPNERFilter}, so that a sentence seen again,
+ * as the boilerplate repeated across the pages of a web site, is not tagged again.
+ * <p>
+ * Sentences are keyed by a 64-bit hash of their terms, and the terms themselves are kept to rule out collisions. The
+ * most recently used sentences are kept, split into independently locked segments by hash, so that the indexing
+ * threads seldom wait for each other.
+ * <p>
+ * The entities of a sentence depend on the NER models used and on their order, so a cache must be shared only by
+ * filters with the same taggers. Moreover, a cached sentence does not feed the adaptive data of the taggers, so the
+ * entities recognized in the following sentences of the same document may slightly differ from those recognized
+ * without the cache.
+ * <p>
+ * The cache is thread-safe.
+ *
+ * @author DARDS
+ * @version 1.00
+ * @since 1.00
+ */
+public final class NerCache {
+
+    /**
+     * The number of segments, a power of two.
+     */
+    private static final int SEGMENTS = 16;
+
+    /**
+     * The offset basis of the FNV-1a hash.
+     */
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    /**
+     * The prime of the FNV-1a hash.
+     */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * The segments of the cache, each one with the most recently used entries last.
+     */
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    /**
+     * The number of sentences found in the cache.
+     */
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * The number of sentences not found in the cache.
+     */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * The number of sentences evicted from the cache.
+     */
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * A sentence in the cache.
+     */
+    private static final class Entry {
+
+        /**
+         * The terms of the sentence.
+         */
+        private final String[] terms;
+
+        /**
+         * The entities in the sentence.
+         */
+        private final Span[] spans;
+
+        /**
+         * Creates a new entry.
+         *
+         * @param terms the terms of the sentence.
+         * @param spans the entities in the sentence.
+         */
+        private Entry(final String[] terms, final Span[] spans) {
+            this.terms = terms;
+            this.spans = spans;
+        }
+
+        /**
+         * Tells whether this entry is for the given sentence.
+         *
+         * @param sentence the terms of the sentence.
+         * @param count    the number of terms in the sentence.
+         * @return {@code true} if this entry is for the given sentence; {@code false} otherwise.
+         */
+        private boolean matches(final CharSequence[] sentence, final int count) {
+
+            if (terms.length != count) {
+                return false;
+            }
+
+            for (int i = 0; i < count; i++) {
+
+                final String term = terms[i];
+                final CharSequence other = sentence[i];
+
+                if (term.length() != other.length()) {
+                    return false;
+                }
+
+                for (int j = 0, n = term.length(); j < n; j++) {
+                    if (term.charAt(j) != other.charAt(j)) {
+                        return false;
+                    }
+                }
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * A segment of the cache.
+     */
+    private final class Segment extends LinkedHashMap<Long, Entry> {
+
+        /**
+         * The version of the serialized form, inherited from {@code LinkedHashMap} but never used.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The maximum number of entries in the segment.
+         */
+        private final int maxEntries;
+
+        /**
+         * Creates a new segment.
+         *
+         * @param maxEntries the maximum number of entries in the segment.
+         */
+        private Segment(final int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Long, Entry> eldest) {
+
+            if (size() <= maxEntries) {
+                return false;
+            }
+
+            evictions.increment();
+
+            return true;
+        }
+    }
+
+    /**
+     * Creates a new NER cache.
+     *
+     * @param maxEntries the maximum number of sentences in the cache.
+     * @throws IllegalArgumentException if {@code maxEntries} is less than or equal to zero.
+     */
+    public NerCache(final int maxEntries) {
+
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException(
+                    "The maximum number of cached sentences cannot be less than or equal to zero.");
+        }
+
+        // spread the entries over the segments, rounding up so that no segment is empty
+        final int perSegment = (maxEntries + SEGMENTS - 1) / SEGMENTS;
+
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    /**
+     * Returns the hash of a sentence.
+     *
+     * @param sentence the terms of the sentence.
+     * @param count    the number of terms in the sentence.
+     * @return the hash of the sentence.
+     */
+    static long hash(final CharSequence[] sentence, final int count) {
+
+        long h = FNV_OFFSET;
+
+        for (int i = 0; i < count; i++) {
+
+            final CharSequence term = sentence[i];
+
+            for (int j = 0, n = term.length(); j < n; j++) {
+                h = (h ^ term.charAt(j)) * FNV_PRIME;
+            }
+
+            // separate the terms, so that "a b" and "ab" differ
+            h = (h ^ 0xFFFF) * FNV_PRIME;
+        }
+
+        return h;
+    }
+
+    /**
+     * Returns the cached entities of a sentence.
+     *
+     * @param hash     the hash of the sentence.
+     * @param sentence the terms of the sentence.
+     * @param count    the number of terms in the sentence.
+     * @return the entities in the sentence, which must not be modified, or {@code null} if they are not cached.
+     */
+    Span[] get(final long hash, final CharSequence[] sentence, final int count) {
+
+        final Segment s = segment(hash);
+        final Entry e;
+
+        synchronized (s) {
+            e = s.get(hash);
+        }
+
+        if (e != null && e.matches(sentence, count)) {
+            hits.increment();
+            return e.spans;
+        }
+
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Caches the entities of a sentence.
+     *
+     * @param hash  the hash of the sentence.
+     * @param terms the terms of the sentence.
+     * @param spans the entities in the sentence.
+     */
+    void put(final long hash, final String[] terms, final Span[] spans) {
+
+        final Segment s = segment(hash);
+        final Entry e = new Entry(terms, spans);
+
+        synchronized (s) {
+            s.put(hash, e);
+        }
+    }
+
+    /**
+     * Returns the number of sentences found in the cache.
+     *
+     * @return the number of sentences found in the cache.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of sentences not found in the cache.
+     *
+     * @return the number of sentences not found in the cache.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of sentences evicted from the cache.
+     *
+     * @return the number of sentences evicted from the cache.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the fraction of sentences found in the cache.
+     *
+     * @return the fraction of sentences found in the cache, or 0 if no sentence has been looked up.
+     */
+    public double getHitRate() {
+        final long h = hits.sum();
+        final long lookups = h + misses.sum();
+        return lookups == 0 ? 0 : (double) h / lookups;
+    }
+
+    /**
+     * Returns the number of sentences in the cache.
+     *
+     * @return the number of sentences in the cache.
+     */
+    public int size() {
+
+        int size = 0;
+
+        for (Segment s : segments) {
+            synchronized (s) {
+                size += s.size();
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Prints the number of sentences found and not found in the cache.
+     */
+    public void report() {
+        System.out.printf(Locale.ENGLISH,
+                          "NER cache: %d hit(s), %d miss(es), hit rate %.2f%%, %d eviction(s), %d sentence(s) cached.%n",
+                          getHits(), getMisses(), 100 * getHitRate(), getEvictions(), size());
+    }
+
+    /**
+     * Returns the segment of a sentence.
+     *
+     * @param hash the hash of the sentence.
+     * @return the segment of the sentence.
+     */
+    private Segment segment(final long hash) {
+        // the high bits, since the low ones also select the buckets within the segment
+        return segments[(int) (hash >>> 60) & (SEGMENTS - 1)];
+    }
+
+}
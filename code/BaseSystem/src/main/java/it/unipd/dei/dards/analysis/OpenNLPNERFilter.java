@@ -16,23 +16,48 @@
 package it.unipd.dei.dards.analysis;
 
 
-import opennlp.tools.formats.ad.ADSentenceStream;
 import opennlp.tools.util.Span;
+import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.opennlp.OpenNLPTokenizer;
 import org.apache.lucene.analysis.opennlp.tools.NLPNERTaggerOp;
 import org.apache.lucene.analysis.tokenattributes.*;
+import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.AttributeSource;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 
 /**
  * A filter that relies on the <a href="http://opennlp.apache.org/" target="_blank">Apache OpenNLP</a>
  * Named Entity Recognizer (NER) to detect different types of entities.
+ * <p>
+ * The Apache OpenNLP NER tagger is not thread-safe, so each filter needs a tagger of its own, as the ones returned by
+ * {@link OpenNlpModels#nerTagger(String)} which share the underlying model. Since an analyzer creates its components
+ * once per thread, a filter is never used by two threads at the same time and the tagger is not synchronized.
+ * <p>
+ * A single filter can run several NER models, e.g. one for locations and one for people: each sentence is buffered
+ * once and all the taggers are run over the same terms. When the entities found by different taggers overlap, the one
+ * found by the tagger coming first wins. Sentences without any capitalized or numeric term are not tagged at all, since
+ * the entities of interest always contain at least one of them.
+ * <p>
+ * The tokens of a sentence are buffered into copies of the attributes of the input which are recycled across sentences
+ * and documents, and grown only when a sentence is longer than any previous one, so that buffering does not allocate
+ * anything once the filter has warmed up. Only the terms of the sentences which are actually tagged are turned into
+ * strings, as required by the taggers.
+ * <p>
+ * An optional {@link NerCache}, shared by the filters of all the threads, keeps the entities of the sentences already
+ * tagged, so that repeated sentences, as the boilerplate of web pages, are not tagged again.
  *
  * @author Nicola Ferro (ferro@dei.unipd.it)
  * @version 1.0
@@ -41,9 +66,19 @@ import java.util.List;
 public final class OpenNLPNERFilter extends TokenFilter {
 
 	/**
-	 * The wrapper around the Apache OpenNLP NER tagger
+	 * No entities
 	 */
-	private final NLPNERTaggerOp nerTaggerOp;
+	private static final Span[] NO_SPANS = new Span[0];
+
+	/**
+	 * The wrappers around the Apache OpenNLP NER taggers, by decreasing priority
+	 */
+	private final NLPNERTaggerOp[] nerTaggerOps;
+
+	/**
+	 * The cache of the entities of the sentences already tagged, or {@code null} if there is no cache
+	 */
+	private final NerCache cache;
 
 	/**
 	 * The classes of relevant {@code Attribute}s of a token
@@ -57,10 +92,51 @@ public final class OpenNLPNERFilter extends TokenFilter {
 	private final SentenceAttribute sentenceAtt = addAttribute(SentenceAttribute.class);
 
 	/**
-	 * The list of the actual attribute values for the tokens in the current sentence
+	 * The recycled copies of the attributes of the tokens in the current sentence; only the first {@code tokenCount}
+	 * ones are in use
+	 */
+	private AttributeSource[] sentenceTokens = new AttributeSource[0];
+
+	/**
+	 * The terms of the recycled copies in {@link #sentenceTokens}, in the same order
+	 */
+	private CharTermAttribute[] sentenceTerms = new CharTermAttribute[0];
+
+	/**
+	 * The number of tokens in the current sentence
+	 */
+	private int tokenCount = 0;
+
+	/**
+	 * The index of the next token of the current sentence to return
+	 */
+	private int nextToken = 0;
+
+	/**
+	 * Indicates whether the first token of the next sentence, read to find the end of the current one, is waiting in
+	 * the recycled copy right after the tokens of the current sentence
+	 */
+	private boolean boundaryToken = false;
+
+	/**
+	 * The entities in the current sentence, sorted by start position
+	 */
+	private final List<Span> entities = new ArrayList<>();
+
+	/**
+	 * The index of the next entity of the current sentence to return
+	 */
+	private int nextEntity = 0;
+
+	/**
+	 * Whether each term of the current sentence already belongs to an entity; recycled across sentences
+	 */
+	private boolean[] taken = new boolean[0];
+
+	/**
+	 * The builder of the terms of the entities; recycled across entities
 	 */
-	private final List<AttributeSource> sentenceTokens = new ArrayList<>();
-	private Iterator<AttributeSource> iterator = sentenceTokens.iterator();
+	private final StringBuilder entityTerm = new StringBuilder();
 
 	/**
 	 * Indicates whether there are more tokens in the stream
@@ -70,24 +146,59 @@ public final class OpenNLPNERFilter extends TokenFilter {
 	/**
 	 * Creates a new Named Entity Recognizer (NER) filter.
 	 *
-	 * @param input       the source of tokens for this filter.
-	 * @param nerTaggerOp the NER tagger to use.
+	 * @param input        the source of tokens for this filter.
+	 * @param nerTaggerOps the NER taggers to use, by decreasing priority, not shared with any other filter.
+	 *
+	 * @throws NullPointerException     if {@code nerTaggerOps} or any of its taggers are {@code null}.
+	 * @throws IllegalArgumentException if {@code nerTaggerOps} is empty.
 	 */
-	public OpenNLPNERFilter(TokenStream input, NLPNERTaggerOp nerTaggerOp) {
+	public OpenNLPNERFilter(TokenStream input, NLPNERTaggerOp... nerTaggerOps) {
+		this(input, null, nerTaggerOps);
+	}
+
+	/**
+	 * Creates a new Named Entity Recognizer (NER) filter which caches the entities of the sentences it tags.
+	 *
+	 * @param input        the source of tokens for this filter.
+	 * @param cache        the cache of the entities of the sentences already tagged, shared only by filters with the
+	 *                     same taggers, or {@code null} not to cache them.
+	 * @param nerTaggerOps the NER taggers to use, by decreasing priority, not shared with any other filter.
+	 *
+	 * @throws NullPointerException     if {@code nerTaggerOps} or any of its taggers are {@code null}.
+	 * @throws IllegalArgumentException if {@code nerTaggerOps} is empty.
+	 */
+	public OpenNLPNERFilter(TokenStream input, NerCache cache, NLPNERTaggerOp... nerTaggerOps) {
 		super(input);
 
-		this.nerTaggerOp = nerTaggerOp;
+		this.cache = cache;
 
-		// Forget all adaptive data collected during previous calls
-		this.nerTaggerOp.reset();
+		if (nerTaggerOps == null) {
+			throw new NullPointerException("NER taggers cannot be null.");
+		}
+
+		if (nerTaggerOps.length == 0) {
+			throw new IllegalArgumentException("At least one NER tagger is required.");
+		}
+
+		this.nerTaggerOps = nerTaggerOps.clone();
+
+		for (NLPNERTaggerOp nerTaggerOp : this.nerTaggerOps) {
+
+			if (nerTaggerOp == null) {
+				throw new NullPointerException("NER tagger cannot be null.");
+			}
+
+			// Forget all adaptive data collected during previous calls
+			nerTaggerOp.reset();
+		}
 	}
 
 	@Override
 	public final boolean incrementToken() throws IOException {
 
 		// if there is a token, copy it back to the stream
-		if (iterator.hasNext()) {
-			iterator.next().copyTo(this);
+		if (nextToken < tokenCount) {
+			emitToken();
 			return true;
 		}
 
@@ -102,8 +213,8 @@ public final class OpenNLPNERFilter extends TokenFilter {
 		}
 
 		// now there should be a token but double check, copy it back to the stream
-		if (iterator.hasNext()) {
-			iterator.next().copyTo(this);
+		if (nextToken < tokenCount) {
+			emitToken();
 			return true;
 		}
 
@@ -120,113 +231,373 @@ public final class OpenNLPNERFilter extends TokenFilter {
 	 */
 	private boolean nextSentence() throws IOException {
 
-		// empty any previous sentence
-		sentenceTokens.clear();
-		iterator = sentenceTokens.iterator();
-
-		// the attributes for the tokens in the current sentence
-		final List<AttributeSource> localAttrs = new ArrayList<>();
-
-		// the list of terms in the sentence
-		final List<String> termList = new ArrayList<>();
-
-		boolean endOfSentence = false;
+		// whether any term in the sentence may be (part of) an entity
+		boolean mayContainEntities = false;
+
+		// the index of the sentence, known once its first token has been read
+		int sentenceIndex = -1;
+
+		// the first token of this sentence has already been read while looking for the end of the previous one
+		if (boundaryToken) {
+			swapTokens(0, tokenCount);
+			tokenCount = 1;
+			sentenceIndex = sentenceTokens[0].getAttribute(SentenceAttribute.class).getSentenceIndex();
+			mayContainEntities = mayBeEntity(sentenceTerms[0]);
+			boundaryToken = false;
+		} else {
+			tokenCount = 0;
+		}
 
-		int sentenceIndex = sentenceAtt.getSentenceIndex();
+		nextToken = 0;
+		entities.clear();
+		nextEntity = 0;
 
 		// advance until  we reach either the end of a sentence or the end of the stream
-		while (!endOfSentence && (moreTokensAvailable = input.incrementToken())) {
+		while ((moreTokensAvailable = input.incrementToken())) {
+
+			// copy all the attributes for the current token into the next recycled copy, adding one if needed
+			if (tokenCount == sentenceTokens.length) {
+				final int size = sentenceTokens.length;
+				sentenceTokens = ArrayUtil.grow(sentenceTokens, size + 1);
+				sentenceTerms = ArrayUtil.growExact(sentenceTerms, sentenceTokens.length);
+				for (int i = size; i < sentenceTokens.length; i++) {
+					sentenceTokens[i] = input.cloneAttributes();
+					sentenceTerms[i] = sentenceTokens[i].getAttribute(CharTermAttribute.class);
+				}
+			}
 
-			// get the term from the current token
-			termList.add(termAtt.toString());
+			input.copyTo(sentenceTokens[tokenCount]);
 
-			// check whether the current token marks the end of the sentence
-			endOfSentence = sentenceIndex != sentenceAtt.getSentenceIndex();
+			// the token starts the next sentence: keep it, without counting it, for the next call
+			if (sentenceIndex >= 0 && sentenceIndex != sentenceAtt.getSentenceIndex()) {
+				boundaryToken = true;
+				break;
+			}
 
-			// copy all the attributes for the current token
-			localAttrs.add(input.cloneAttributes());
+			sentenceIndex = sentenceAtt.getSentenceIndex();
+			mayContainEntities = mayContainEntities || mayBeEntity(termAtt);
+			tokenCount++;
 		}
 
 		// there was no next sentence
-		if (localAttrs.isEmpty()) {
+		if (tokenCount == 0) {
 			return false;
 		}
 
-		// the identified entities, if any
-		Span[] spans = null;
-		int spanCount = 0;
+		// recognize the entities, if any
+		if (mayContainEntities) {
 
-		// Apache OpenNLP NER Tagger is not thread-safe
-		synchronized (nerTaggerOp) {
-			// recognize entities
-			spans = nerTaggerOp.getNames(termList.toArray(new String[termList.size()]));
+			final long hash = cache != null ? NerCache.hash(sentenceTerms, tokenCount) : 0;
+			final Span[] cached = cache != null ? cache.get(hash, sentenceTerms, tokenCount) : null;
+
+			if (cached != null) {
+				for (Span span : cached) {
+					entities.add(span);
+				}
+			} else {
+
+				final String[] terms = new String[tokenCount];
+				for (int i = 0; i < tokenCount; i++) {
+					terms[i] = sentenceTerms[i].toString();
+				}
+
+				findEntities(terms);
+
+				if (cache != null) {
+					cache.put(hash, terms, entities.toArray(NO_SPANS));
+				}
+			}
 		}
 
-		// go through each local token:
-		// 1) if it is (part of) an entity, merge it with the other tokens in the same entity and add it back to the stream
-		// 2) if it is not (part of) an entity add it back to the stream
-		for (int i = 0, n = localAttrs.size(); i < n; ) {
+		return true;
+	}
 
-			// the token is (part of) an entity
-			if (spanCount < spans.length && spans[spanCount].getStart() == i) {
+	/**
+	 * Swaps two of the recycled copies of the attributes, together with their terms.
+	 *
+	 * @param i the index of the first copy.
+	 * @param j the index of the second copy.
+	 */
+	private void swapTokens(final int i, final int j) {
 
-				// get the first token in the entity
-				AttributeSource as = localAttrs.get(i++);
+		final AttributeSource token = sentenceTokens[i];
+		sentenceTokens[i] = sentenceTokens[j];
+		sentenceTokens[j] = token;
 
-				StringBuilder tmp = new StringBuilder(as.getAttribute(CharTermAttribute.class).toString());
-				String entityType = spans[spanCount].getType();
-				int spannedPositions = as.getAttribute(PositionIncrementAttribute.class).getPositionIncrement();
-				int startOffset = as.getAttribute(OffsetAttribute.class).startOffset();
-				sentenceIndex = as.getAttribute(SentenceAttribute.class).getSentenceIndex();
+		final CharTermAttribute term = sentenceTerms[i];
+		sentenceTerms[i] = sentenceTerms[j];
+		sentenceTerms[j] = term;
+	}
 
-				// the entity spans multiple tokens
-				while (i < spans[spanCount].getEnd()) {
+	/**
+	 * Copies the next token of the current sentence back to the stream: if it is (part of) an entity, it is merged with
+	 * the other tokens in the same entity; otherwise, it is copied as it is.
+	 */
+	private void emitToken() {
 
-					// get the next token in the entity
-					as = localAttrs.get(i++);
+		// the token is not (part of) an entity
+		if (nextEntity == entities.size() || entities.get(nextEntity).getStart() != nextToken) {
+			sentenceTokens[nextToken++].copyTo(this);
+			return;
+		}
 
-					// append the term of the token
-					tmp.append(" ").append(as.getAttribute(CharTermAttribute.class).toString());
+		final Span entity = entities.get(nextEntity++);
 
-					// increase the count of the spanned tokens
-					spannedPositions += as.getAttribute(PositionIncrementAttribute.class).getPositionIncrement();
-				}
+		// get the first token in the entity
+		AttributeSource as = sentenceTokens[nextToken++];
 
-				int endOffset = as.getAttribute(OffsetAttribute.class).endOffset();
+		entityTerm.setLength(0);
+		entityTerm.append(as.getAttribute(CharTermAttribute.class));
+		int spannedPositions = as.getAttribute(PositionIncrementAttribute.class).getPositionIncrement();
+		final int startOffset = as.getAttribute(OffsetAttribute.class).startOffset();
+		final int sentenceIndex = as.getAttribute(SentenceAttribute.class).getSentenceIndex();
 
-				// create a new token for the entity and add it back to the stream
-				as.clearAttributes();
-				as.addAttribute(CharTermAttribute.class).append(tmp);
-				as.addAttribute(PositionIncrementAttribute.class).setPositionIncrement(1);
-				as.addAttribute(PositionLengthAttribute.class).setPositionLength(spannedPositions);
-				as.addAttribute(OffsetAttribute.class).setOffset(startOffset, endOffset);
-				as.addAttribute(TypeAttribute.class).setType(entityType);
-				as.addAttribute(KeywordAttribute.class).setKeyword(true);
-				as.addAttribute(SentenceAttribute.class).setSentenceIndex(sentenceIndex);
+		// the entity spans multiple tokens
+		while (nextToken < entity.getEnd()) {
 
-				sentenceTokens.add(as);
+			// get the next token in the entity
+			as = sentenceTokens[nextToken++];
 
-				// advance to the next span
-				spanCount++;
+			// append the term of the token
+			entityTerm.append(' ').append(as.getAttribute(CharTermAttribute.class));
 
-			} else {
-				// get the next token in the current sentence and add it back to the stream
-				sentenceTokens.add(localAttrs.get(i++));
+			// increase the count of the spanned tokens
+			spannedPositions += as.getAttribute(PositionIncrementAttribute.class).getPositionIncrement();
+		}
+
+		final int endOffset = as.getAttribute(OffsetAttribute.class).endOffset();
+
+		// create a new token for the entity and add it back to the stream
+		clearAttributes();
+		termAtt.append(entityTerm);
+		posIncrAtt.setPositionIncrement(1);
+		posLenAtt.setPositionLength(spannedPositions);
+		offsetAtt.setOffset(startOffset, endOffset);
+		typeAtt.setType(entity.getType());
+		keyAtt.setKeyword(true);
+		sentenceAtt.setSentenceIndex(sentenceIndex);
+	}
+
+	@Override
+	public void reset() throws IOException {
+
+		super.reset();
+		moreTokensAvailable = true;
+		boundaryToken = false;
+		tokenCount = 0;
+		nextToken = 0;
+		entities.clear();
+		nextEntity = 0;
+
+		// Forget all adaptive data collected during previous calls
+		for (NLPNERTaggerOp nerTaggerOp : nerTaggerOps) {
+			nerTaggerOp.reset();
+		}
+	}
+
+	/**
+	 * Recognizes the entities in a sentence with all the taggers, keeping only the non-overlapping ones.
+	 * <p>
+	 * The taggers are run by decreasing priority and an entity is discarded if any of its terms already belongs to an
+	 * entity found by a previous tagger. The entities are left in {@link #entities}, sorted by start position.
+	 *
+	 * @param terms the terms of the sentence.
+	 */
+	private void findEntities(final String[] terms) {
+
+		if (taken.length < terms.length) {
+			taken = new boolean[ArrayUtil.oversize(terms.length, 1)];
+		} else {
+			Arrays.fill(taken, 0, terms.length, false);
+		}
+
+		// the taggers belong to this filter only, so there is no need to synchronize
+		for (NLPNERTaggerOp nerTaggerOp : nerTaggerOps) {
+
+			candidates:
+			for (Span span : nerTaggerOp.getNames(terms)) {
+
+				for (int i = span.getStart(); i < span.getEnd(); i++) {
+					if (taken[i]) {
+						continue candidates;
+					}
+				}
+
+				for (int i = span.getStart(); i < span.getEnd(); i++) {
+					taken[i] = true;
+				}
+
+				entities.add(span);
 			}
+		}
 
+		if (entities.size() > 1) {
+			entities.sort(Comparator.comparingInt(Span::getStart));
 		}
+	}
 
-		// set the new iterator
-		iterator = sentenceTokens.iterator();
+	/**
+	 * Tells whether a term may be (part of) an entity, i.e. whether it starts with an upper case letter or it contains a
+	 * digit.
+	 *
+	 * @param term the term.
+	 *
+	 * @return {@code true} if the term may be (part of) an entity; {@code false} otherwise.
+	 */
+	static boolean mayBeEntity(final CharSequence term) {
 
-		return true;
+		final int n = term.length();
+
+		if (n > 0 && Character.isUpperCase(term.charAt(0))) {
+			return true;
+		}
+
+		for (int i = 0; i < n; i++) {
+			if (Character.isDigit(term.charAt(i))) {
+				return true;
+			}
+		}
+
+		return false;
 	}
 
-	@Override
-	public void reset() throws IOException {
+	/**
+	 * The filter as it was before buffering tokens into recycled attributes, kept only to compare against it in
+	 * {@link #main(String[])}: it runs a single NER model and buffers each token of a sentence into a fresh
+	 * {@code cloneAttributes()} copy, so that several models require a chain of filters, each buffering the sentence
+	 * again.
+	 */
+	private static final class CloningNERFilter extends TokenFilter {
+
+		/**
+		 * The wrapper around the Apache OpenNLP NER tagger
+		 */
+		private final NLPNERTaggerOp nerTaggerOp;
+
+		/**
+		 * The classes of relevant {@code Attribute}s of a token
+		 */
+		private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+		private final KeywordAttribute keyAtt = addAttribute(KeywordAttribute.class);
+		private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
+		private final PositionIncrementAttribute posIncrAtt = addAttribute(PositionIncrementAttribute.class);
+		private final PositionLengthAttribute posLenAtt = addAttribute(PositionLengthAttribute.class);
+		private final TypeAttribute typeAtt = addAttribute(TypeAttribute.class);
+		private final SentenceAttribute sentenceAtt = addAttribute(SentenceAttribute.class);
+
+		/**
+		 * The list of the actual attribute values for the tokens in the current sentence
+		 */
+		private final List<AttributeSource> sentenceTokens = new ArrayList<>();
+		private Iterator<AttributeSource> iterator = sentenceTokens.iterator();
+
+		/**
+		 * Indicates whether there are more tokens in the stream
+		 */
+		private boolean moreTokensAvailable = true;
+
+		/**
+		 * Creates a new filter.
+		 *
+		 * @param input       the source of tokens for this filter.
+		 * @param nerTaggerOp the NER tagger to use, not shared with any other filter.
+		 */
+		private CloningNERFilter(final TokenStream input, final NLPNERTaggerOp nerTaggerOp) {
+			super(input);
+
+			this.nerTaggerOp = nerTaggerOp;
+			this.nerTaggerOp.reset();
+		}
+
+		@Override
+		public boolean incrementToken() throws IOException {
+
+			if (!iterator.hasNext() && (!moreTokensAvailable || !nextSentence())) {
+				return false;
+			}
+
+			iterator.next().copyTo(this);
+			return true;
+		}
+
+		/**
+		 * Process the next sentence, cloning the attributes of each of its tokens.
+		 *
+		 * @return {@code true} if there is one more sentence; {@code false} otherwise.
+		 *
+		 * @throws IOException if something goes wrong while processing the tokens.
+		 */
+		private boolean nextSentence() throws IOException {
+
+			sentenceTokens.clear();
+
+			final List<AttributeSource> localAttrs = new ArrayList<>();
+			final List<String> termList = new ArrayList<>();
+
+			boolean endOfSentence = false;
+			int sentenceIndex = sentenceAtt.getSentenceIndex();
+
+			while (!endOfSentence && (moreTokensAvailable = input.incrementToken())) {
+				termList.add(termAtt.toString());
+				endOfSentence = sentenceIndex != sentenceAtt.getSentenceIndex();
+				localAttrs.add(input.cloneAttributes());
+			}
+
+			if (localAttrs.isEmpty()) {
+				iterator = sentenceTokens.iterator();
+				return false;
+			}
+
+			final Span[] spans = nerTaggerOp.getNames(termList.toArray(new String[termList.size()]));
+			int spanCount = 0;
+
+			for (int i = 0, n = localAttrs.size(); i < n; ) {
+
+				if (spanCount < spans.length && spans[spanCount].getStart() == i) {
+
+					// merge the tokens of the entity into the last of them
+					AttributeSource as = localAttrs.get(i++);
+
+					final StringBuilder tmp = new StringBuilder(as.getAttribute(CharTermAttribute.class).toString());
+					final String entityType = spans[spanCount].getType();
+					int spannedPositions = as.getAttribute(PositionIncrementAttribute.class).getPositionIncrement();
+					final int startOffset = as.getAttribute(OffsetAttribute.class).startOffset();
+					sentenceIndex = as.getAttribute(SentenceAttribute.class).getSentenceIndex();
+
+					while (i < spans[spanCount].getEnd()) {
+						as = localAttrs.get(i++);
+						tmp.append(" ").append(as.getAttribute(CharTermAttribute.class).toString());
+						spannedPositions += as.getAttribute(PositionIncrementAttribute.class).getPositionIncrement();
+					}
+
+					final int endOffset = as.getAttribute(OffsetAttribute.class).endOffset();
+
+					as.clearAttributes();
+					as.addAttribute(CharTermAttribute.class).append(tmp);
+					as.addAttribute(PositionIncrementAttribute.class).setPositionIncrement(1);
+					as.addAttribute(PositionLengthAttribute.class).setPositionLength(spannedPositions);
+					as.addAttribute(OffsetAttribute.class).setOffset(startOffset, endOffset);
+					as.addAttribute(TypeAttribute.class).setType(entityType);
+					as.addAttribute(KeywordAttribute.class).setKeyword(true);
+					as.addAttribute(SentenceAttribute.class).setSentenceIndex(sentenceIndex);
+
+					sentenceTokens.add(as);
+
+					spanCount++;
+
+				} else {
+					sentenceTokens.add(localAttrs.get(i++));
+				}
+			}
+
+			iterator = sentenceTokens.iterator();
+
+			return true;
+		}
+
+		@Override
+		public void reset() throws IOException {
 
-		// Apache OpenNLP NER Tagger is not thread-safe
-		synchronized (nerTaggerOp) {
 			super.reset();
 			moreTokensAvailable = true;
 			sentenceTokens.clear();
@@ -237,7 +608,122 @@ public final class OpenNLPNERFilter extends TokenFilter {
 		}
 	}
 
-}
+	/**
+	 * Main method of the class. Measures the memory allocated by the filter for each token of a text.
+	 * <p>
+	 * The text is analyzed, for a number of warm-up rounds and then for a number of measured rounds, by the Apache
+	 * OpenNLP tokenizer alone, by the tokenizer followed by a chain of filters which clone the attributes of each token,
+	 * one per NER model as before recycled buffers were introduced, by the tokenizer followed by the filter over the
+	 * same NER models and by the same filter with a {@link NerCache}: the difference between the tokenizer alone and
+	 * the others is the memory allocated by the filters, including the taggers.
+	 *
+	 * @param args command line arguments: the text file, the number of warm-up rounds, the number of measured rounds
+	 *             and the NER models to use.
+	 *
+	 * @throws IOException if something goes wrong while analyzing the text.
+	 */
+	public static void main(String[] args) throws IOException {
+
+		final String text = Files.readString(Paths.get(args.length > 0 ? args[0] : "./README.md"),
+				StandardCharsets.UTF_8);
+		final int warmup = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+		final int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		final String[] models = args.length > 3 ? Arrays.copyOfRange(args, 3, args.length) :
+				new String[]{"en-ner-location.bin", "en-ner-person.bin", "en-ner-organization.bin",
+						"en-ner-money.bin", "en-ner-date.bin", "en-ner-time.bin"};
+
+		final com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+		System.out.printf("%d chars, %d model(s), %d warm-up and %d measured round(s).%n", text.length(),
+				models.length, warmup, rounds);
+
+		// the allocated bytes per token of the tokenizer alone, to be subtracted from those of the filter
+		double tokenizerAllocated = 0;
+
+		for (String mode : new String[]{"tokenizer", "tokenizer + cloning NER", "tokenizer + NER",
+				"tokenizer + NER + cache"}) {
+
+			final boolean ner = !mode.equals("tokenizer");
+			final boolean cloning = mode.endsWith("cloning NER");
+			final NerCache cache = mode.endsWith("cache") ? new NerCache(10_000) : null;
+
+			final Analyzer a = new Analyzer() {
+				@Override
+				protected TokenStreamComponents createComponents(String fieldName) {
+					final Tokenizer source;
+					try {
+						source = new OpenNLPTokenizer(TokenStream.DEFAULT_TOKEN_ATTRIBUTE_FACTORY,
+								OpenNlpModels.sentenceDetector("en-sent.bin"), OpenNlpModels.tokenizer("en-token.bin"));
+					} catch (IOException e) {
+						throw new IllegalStateException(
+								String.format("Unable to create the OpenNLPTokenizer: %s.", e.getMessage()), e);
+					}
+
+					if (!ner) {
+						return new TokenStreamComponents(source);
+					}
+
+					final NLPNERTaggerOp[] taggers = new NLPNERTaggerOp[models.length];
+					for (int i = 0; i < models.length; i++) {
+						taggers[i] = OpenNlpModels.nerTagger(models[i]);
+					}
+
+					if (cloning) {
+						TokenStream tokens = source;
+						for (NLPNERTaggerOp tagger : taggers) {
+							tokens = new CloningNERFilter(tokens, tagger);
+						}
+						return new TokenStreamComponents(source, tokens);
+					}
+
+					return new TokenStreamComponents(source, new OpenNLPNERFilter(source, cache, taggers));
+				}
+			};
+
+			long tokens = 0;
+			long time = 0;
+			long allocated = 0;
+
+			for (int r = 0; r < warmup + rounds; r++) {
+
+				final long startAllocated = mx.getCurrentThreadAllocatedBytes();
+				final long start = System.nanoTime();
+
+				tokens = 0;
+
+				try (TokenStream stream = a.tokenStream("body", text)) {
+					stream.reset();
+					while (stream.incrementToken()) {
+						tokens++;
+					}
+					stream.end();
+				}
+
+				if (r >= warmup) {
+					time += System.nanoTime() - start;
+					allocated += mx.getCurrentThreadAllocatedBytes() - startAllocated;
+				}
+			}
+
+			final double seconds = time / 1e9 / rounds;
+			final double perToken = (double) allocated / rounds / tokens;
 
+			System.out.printf("%-24s %d token(s): %.3f s/round, %.0f tokens/s, %.1f bytes allocated/token%n", mode,
+					tokens, seconds, tokens / seconds, perToken);
 
+			if (ner) {
+				System.out.printf("%-24s %.1f bytes allocated/token%n", cloning ? "cloning NER filters" : "NER filter",
+						perToken - tokenizerAllocated);
+			} else {
+				tokenizerAllocated = perToken;
+			}
 
+			if (cache != null) {
+				cache.report();
+			}
+
+			a.close();
+		}
+	}
+
+}
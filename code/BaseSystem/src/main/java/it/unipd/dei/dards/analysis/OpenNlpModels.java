@@ -0,0 +1,261 @@
+/*
+ *  Copyright 2021-2022 University of Padua, Italy
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package it.unipd.dei.dards.analysis;
+
+import opennlp.tools.lemmatizer.LemmatizerModel;
+import opennlp.tools.namefind.TokenNameFinderModel;
+import opennlp.tools.postag.POSModel;
+import opennlp.tools.sentdetect.SentenceModel;
+import opennlp.tools.tokenize.TokenizerModel;
+import opennlp.tools.util.model.BaseModel;
+import org.apache.lucene.analysis.opennlp.tools.NLPLemmatizerOp;
+import org.apache.lucene.analysis.opennlp.tools.NLPNERTaggerOp;
+import org.apache.lucene.analysis.opennlp.tools.NLPPOSTaggerOp;
+import org.apache.lucene.analysis.opennlp.tools.NLPSentenceDetectorOp;
+import org.apache.lucene.analysis.opennlp.tools.NLPTokenizerOp;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide registry of the <a href="http://opennlp.apache.org/" target="_blank">Apache OpenNLP</a> models in the
+ * {@code resources} directory.
+ * <p>
+ * An OpenNLP model is heavy to load but, once loaded, it is immutable and can be shared by any number of threads;
+ * the taggers built on top of it, instead, are lightweight but keep per-call state and are not thread-safe. So each
+ * model is loaded the first time it is requested and then shared, while every call to one of the factory methods
+ * returns a new tagger of its own. Since an {@code Analyzer} creates its components once per thread, each indexing
+ * thread ends up with private taggers over the shared models and no synchronization is needed.
+ *
+ * @author DARDS
+ * @version 1.00
+ * @since 1.00
+ */
+public final class OpenNlpModels {
+
+    /**
+     * The class loader of this class. Needed for reading files from the {@code resource} directory.
+     */
+    private static final ClassLoader CL = OpenNlpModels.class.getClassLoader();
+
+    /**
+     * The models loaded so far, by file name.
+     */
+    private static final Map<String, BaseModel> MODELS = new ConcurrentHashMap<>();
+
+    /**
+     * Reads a model of a given type from a stream.
+     *
+     * @param <M> the type of the model.
+     */
+    @FunctionalInterface
+    private interface ModelReader<M extends BaseModel> {
+
+        /**
+         * Reads a model from a stream.
+         *
+         * @param in the stream containing the model.
+         * @return the model.
+         * @throws IOException if the model cannot be read.
+         */
+        M read(InputStream in) throws IOException;
+    }
+
+    /**
+     * Creates a tagger over a model.
+     *
+     * @param <M> the type of the model.
+     * @param <T> the type of the tagger.
+     */
+    @FunctionalInterface
+    private interface TaggerFactory<M extends BaseModel, T> {
+
+        /**
+         * Creates a tagger over a model.
+         *
+         * @param model the model.
+         * @return the tagger.
+         * @throws IOException if the tagger cannot be created.
+         */
+        T create(M model) throws IOException;
+    }
+
+    /**
+     * This class cannot be instantiated.
+     */
+    private OpenNlpModels() {
+        throw new AssertionError(String.format("No instances of %s allowed.", OpenNlpModels.class.getName()));
+    }
+
+    /**
+     * Returns a new POS tagger over a shared model among those available in the {@code resources} folder.
+     *
+     * @param modelFile the name of the file containing the model.
+     * @return a new POS tagger, not to be shared among threads.
+     * @throws NullPointerException     if {@code modelFile} is {@code null}.
+     * @throws IllegalArgumentException if {@code modelFile} is empty.
+     * @throws IllegalStateException    if there is any issue while loading the model.
+     */
+    public static NLPPOSTaggerOp posTagger(final String modelFile) {
+        return tagger(modelFile, POSModel.class, POSModel::new, NLPPOSTaggerOp::new);
+    }
+
+    /**
+     * Returns a new sentence detector over a shared model among those available in the {@code resources} folder.
+     *
+     * @param modelFile the name of the file containing the model.
+     * @return a new sentence detector, not to be shared among threads.
+     * @throws NullPointerException     if {@code modelFile} is {@code null}.
+     * @throws IllegalArgumentException if {@code modelFile} is empty.
+     * @throws IllegalStateException    if there is any issue while loading the model.
+     */
+    public static NLPSentenceDetectorOp sentenceDetector(final String modelFile) {
+        return tagger(modelFile, SentenceModel.class, SentenceModel::new, NLPSentenceDetectorOp::new);
+    }
+
+    /**
+     * Returns a new tokenizer over a shared model among those available in the {@code resources} folder.
+     *
+     * @param modelFile the name of the file containing the model.
+     * @return a new tokenizer, not to be shared among threads.
+     * @throws NullPointerException     if {@code modelFile} is {@code null}.
+     * @throws IllegalArgumentException if {@code modelFile} is empty.
+     * @throws IllegalStateException    if there is any issue while loading the model.
+     */
+    public static NLPTokenizerOp tokenizer(final String modelFile) {
+        return tagger(modelFile, TokenizerModel.class, TokenizerModel::new, NLPTokenizerOp::new);
+    }
+
+    /**
+     * Returns a new lemmatizer over a shared model among those available in the {@code resources} folder.
+     *
+     * @param modelFile the name of the file containing the model.
+     * @return a new lemmatizer, not to be shared among threads.
+     * @throws NullPointerException     if {@code modelFile} is {@code null}.
+     * @throws IllegalArgumentException if {@code modelFile} is empty.
+     * @throws IllegalStateException    if there is any issue while loading the model.
+     */
+    public static NLPLemmatizerOp lemmatizer(final String modelFile) {
+        // no dictionary: the lemmas come from the statistical model only
+        return tagger(modelFile, LemmatizerModel.class, LemmatizerModel::new, m -> new NLPLemmatizerOp(null, m));
+    }
+
+    /**
+     * Returns a new NER tagger over a shared model among those available in the {@code resources} folder.
+     *
+     * @param modelFile the name of the file containing the model.
+     * @return a new NER tagger, not to be shared among threads.
+     * @throws NullPointerException     if {@code modelFile} is {@code null}.
+     * @throws IllegalArgumentException if {@code modelFile} is empty.
+     * @throws IllegalStateException    if there is any issue while loading the model.
+     */
+    public static NLPNERTaggerOp nerTagger(final String modelFile) {
+        return tagger(modelFile, TokenNameFinderModel.class, TokenNameFinderModel::new, NLPNERTaggerOp::new);
+    }
+
+    /**
+     * Returns a new tagger over a shared model.
+     *
+     * @param modelFile the name of the file containing the model.
+     * @param type      the type of the model.
+     * @param reader    the reader of the model.
+     * @param factory   the factory of the tagger.
+     * @param <M>       the type of the model.
+     * @param <T>       the type of the tagger.
+     * @return a new tagger.
+     * @throws NullPointerException     if {@code modelFile} is {@code null}.
+     * @throws IllegalArgumentException if {@code modelFile} is empty or it has already been loaded as another type of
+     *                                  model.
+     * @throws IllegalStateException    if there is any issue while loading the model or creating the tagger.
+     */
+    private static <M extends BaseModel, T> T tagger(final String modelFile, final Class<M> type,
+                                                     final ModelReader<M> reader, final TaggerFactory<M, T> factory) {
+
+        final M model = model(modelFile, type, reader);
+
+        try {
+            return factory.create(model);
+        } catch (IOException e) {
+            throw new IllegalStateException(
+                    String.format("Unable to create a tagger over the model %s: %s", modelFile, e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Returns a shared model, loading it the first time it is requested.
+     *
+     * @param modelFile the name of the file containing the model.
+     * @param type      the type of the model.
+     * @param reader    the reader of the model.
+     * @param <M>       the type of the model.
+     * @return the shared model.
+     * @throws NullPointerException     if {@code modelFile} is {@code null}.
+     * @throws IllegalArgumentException if {@code modelFile} is empty or it has already been loaded as another type of
+     *                                  model.
+     * @throws IllegalStateException    if there is any issue while loading the model.
+     */
+    private static <M extends BaseModel> M model(final String modelFile, final Class<M> type,
+                                                 final ModelReader<M> reader) {
+
+        if (modelFile == null) {
+            throw new NullPointerException("Model file name cannot be null.");
+        }
+
+        if (modelFile.isEmpty()) {
+            throw new IllegalArgumentException("Model file name cannot be empty.");
+        }
+
+        final BaseModel model = MODELS.computeIfAbsent(modelFile, f -> load(f, reader));
+
+        if (!type.isInstance(model)) {
+            throw new IllegalArgumentException(
+                    String.format("Model %s is a %s and not a %s.", modelFile, model.getClass().getSimpleName(),
+                                  type.getSimpleName()));
+        }
+
+        return type.cast(model);
+    }
+
+    /**
+     * Loads a model from the {@code resources} folder.
+     *
+     * @param modelFile the name of the file containing the model.
+     * @param reader    the reader of the model.
+     * @param <M>       the type of the model.
+     * @return the model.
+     * @throws IllegalStateException if there is any issue while loading the model.
+     */
+    private static <M extends BaseModel> M load(final String modelFile, final ModelReader<M> reader) {
+
+        final InputStream stream = CL.getResourceAsStream(modelFile);
+
+        if (stream == null) {
+            throw new IllegalStateException(String.format("Unable to find the model %s.", modelFile));
+        }
+
+        try (InputStream in = new BufferedInputStream(stream)) {
+            return reader.read(in);
+        } catch (IOException e) {
+            throw new IllegalStateException(String.format("Unable to load the model %s: %s", modelFile, e.getMessage()),
+                                            e);
+        }
+    }
+
+}